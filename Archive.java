@@ -0,0 +1,365 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Archive - data files that come compressed or bundled. What a file is, is found from its first bytes
+ * rather than its name: gzip is read as it is uncompressed, and each file in a zip or tar archive
+ * (tar.gz too) is validated as a file of its own, named archive!entry. Tar is read here as a stream
+ * (ustar, GNU long names and pax path headers), only its regular files are handed out.
+ * @author Bill Lanahan
+ *
+ */
+final class Archive {
+
+	enum Kind { PLAIN, GZIP, ZIP, TAR }
+
+	private static final int BLOCK = 512; // of a tar header and of its entries' padding
+
+	private Archive() {
+		// static methods only
+	}
+
+	/*
+	 * what the stream in holds, from its first bytes; they are read between mark and reset so they are
+	 * still there for whatever reads in next
+	 */
+	static Kind kind( InputStream in ) throws IOException {
+		final byte[] head = new byte[ BLOCK ];
+
+		in.mark( BLOCK );
+		final int n = read( in, head );
+		in.reset();
+		return kind( head, n );
+	}
+
+	/*
+	 * what the file of channel holds, from its first bytes; they are read at their offset so the
+	 * position of channel doesn't move
+	 */
+	static Kind kind( FileChannel channel ) throws IOException {
+		final ByteBuffer head = ByteBuffer.allocate( BLOCK );
+
+		while ( head.hasRemaining() && channel.read( head, head.position() ) > 0 ) {
+			// a short read is not the end of the file
+		}
+		return kind( head.array(), head.position() );
+	}
+
+	private static Kind kind( byte[] head, int n ) {
+		if ( n >= 2 && (head[ 0 ] & 0xff) == 0x1f && (head[ 1 ] & 0xff) == 0x8b ) {
+			return Kind.GZIP;
+		}
+
+		if ( n >= 4 && head[ 0 ] == 'P' && head[ 1 ] == 'K' && ((head[ 2 ] == 3 && head[ 3 ] == 4) || (head[ 2 ] == 5 && head[ 3 ] == 6)) ) {
+			return Kind.ZIP;
+		}
+
+		return isTar( head, n ) ? Kind.TAR : Kind.PLAIN;
+	}
+
+	/*
+	 * the uncompressed data of in, buffered so its own kind can be looked at in turn
+	 */
+	static InputStream gunzip( InputStream in ) throws IOException {
+		return new BufferedInputStream( new GZIPInputStream( in, 65536 ), 65536 );
+	}
+
+	private static boolean isTar( byte[] head, int n ) {
+		return n == BLOCK && head[ 257 ] == 'u' && head[ 258 ] == 's' && head[ 259 ] == 't' && head[ 260 ] == 'a' && head[ 261 ] == 'r';
+	}
+
+	/*
+	 * fill b from in, less only at the end of in
+	 */
+	private static int read( InputStream in, byte[] b ) throws IOException {
+		int n = 0;
+		int r;
+
+		while ( n < b.length && (r = in.read( b, n, b.length - n )) > 0 ) {
+			n += r;
+		}
+		return n;
+	}
+
+	/*
+	 * the regular files of a tar stream, in the order they are in it
+	 */
+	static final class TarReader {
+
+		private final InputStream in;
+		private final byte[] header = new byte[ BLOCK ];
+		private long remaining = 0; // of the entry being read
+		private long padding = 0; // after it, up to the next header
+		private String longName = null; // from a GNU or pax header, for the entry that follows
+
+		TarReader( InputStream in ) {
+			this.in = in;
+		}
+
+		/*
+		 * the name of the next regular file, its data is read with entry(); null at the end
+		 */
+		String next() throws IOException {
+			skip( remaining + padding );
+			remaining = 0;
+			padding = 0;
+
+			while ( true ) {
+				final int n = read( in, header );
+
+				if ( n == 0 ) {
+					return null; // no end of archive blocks, the end of the file will do
+				} else if ( n < BLOCK ) {
+					throw new EOFException( "tar header cut short" );
+				}
+
+				if ( isZero( header ) ) {
+					return null; // end of archive
+				}
+
+				final char type = (char) header[ 156 ];
+				remaining = size();
+				padding = (BLOCK - remaining % BLOCK) % BLOCK;
+
+				if ( type == 'L' ) {
+					// GNU, the name of the next entry was too long for its header
+					longName = text( readData() );
+					continue;
+				} else if ( type == 'x' ) {
+					// pax, the path record is the name of the next entry
+					final String path = paxPath( readData() );
+					if ( path != null ) {
+						longName = path;
+					}
+					continue;
+				} else if ( type != '0' && type != '\0' && type != '7' ) {
+					// directories, links, devices and global headers have nothing to validate
+					skip( remaining + padding );
+					remaining = 0;
+					padding = 0;
+					longName = null;
+					continue;
+				}
+
+				String name = longName;
+				longName = null;
+
+				if ( name == null ) {
+					name = field( 0, 100 );
+					final String prefix = field( 345, 155 );
+					if ( prefix.length() > 0 && header[ 257 ] == 'u' ) {
+						name = prefix + "/" + name;
+					}
+				}
+
+				return name;
+			}
+		}
+
+		/*
+		 * the data of the entry next() returned, closing it leaves the archive open
+		 */
+		InputStream entry() {
+
+			return new FilterInputStream( in ) {
+				public int read() throws IOException {
+
+					if ( remaining <= 0 ) {
+						return -1;
+					}
+
+					final int b = in.read();
+					if ( b < 0 ) {
+						throw new EOFException( "tar entry cut short" );
+					}
+					remaining--;
+					return b;
+				}
+
+				public int read( byte[] b, int off, int len ) throws IOException {
+
+					if ( remaining <= 0 ) {
+						return -1;
+					}
+
+					final int n = in.read( b, off, (int) Math.min( len, remaining ) );
+					if ( n < 0 ) {
+						throw new EOFException( "tar entry cut short" );
+					}
+					remaining -= n;
+					return n;
+				}
+
+				public long skip( long n ) throws IOException {
+					final long skipped = in.skip( Math.min( n, remaining ) );
+					remaining -= skipped;
+					return skipped;
+				}
+
+				public int available() throws IOException {
+					return (int) Math.min( in.available(), remaining );
+				}
+
+				public void close() {
+					// the next entry is read from the same stream
+				}
+			};
+		}
+
+		/*
+		 * the size field, octal text or base-256 for an entry of 8GB or more
+		 */
+		private long size() throws IOException {
+
+			if ( (header[ 124 ] & 0x80) != 0 ) {
+				long size = 0;
+				for ( int i = 125; i < 136; i++ ) {
+					size = (size << 8) | (header[ i ] & 0xff);
+				}
+				return size;
+			}
+
+			final String octal = field( 124, 12 ).trim();
+
+			try {
+				return octal.length() == 0 ? 0 : Long.parseLong( octal, 8 );
+			} catch ( final NumberFormatException e ) {
+				throw new IOException( "not a tar header, size <" + octal + ">" );
+			}
+		}
+
+		private byte[] readData() throws IOException {
+
+			if ( remaining > 1 << 20 ) {
+				throw new IOException( "tar header of " + remaining + " bytes" );
+			}
+
+			final byte[] data = new byte[ (int) remaining ];
+			if ( read( in, data ) < data.length ) {
+				throw new EOFException( "tar header cut short" );
+			}
+			skip( padding );
+			remaining = 0;
+			padding = 0;
+			return data;
+		}
+
+		private void skip( long n ) throws IOException {
+
+			while ( n > 0 ) {
+				final long skipped = in.skip( n );
+
+				if ( skipped > 0 ) {
+					n -= skipped;
+				} else if ( in.read() >= 0 ) {
+					n--;
+				} else {
+					throw new EOFException( "tar entry cut short" );
+				}
+			}
+		}
+
+		/*
+		 * a NUL ended text field of the header
+		 */
+		private String field( int offset, int length ) {
+			int end = offset;
+			while ( end < offset + length && header[ end ] != 0 ) {
+				end++;
+			}
+			return text( header, offset, end - offset );
+		}
+
+		/*
+		 * the value of the path record of pax data, records are "length path=value\n" where length
+		 * counts the whole record; a record that is not is an archive that can't be read
+		 */
+		private static String paxPath( byte[] data ) throws IOException {
+			int i = 0;
+
+			while ( i < data.length ) {
+				int space = i;
+				while ( space < data.length && data[ space ] != ' ' ) {
+					space++;
+				}
+
+				int length = -1;
+				try {
+					length = Integer.parseInt( text( data, i, space - i ) );
+				} catch ( final NumberFormatException e ) {
+					// reported below
+				}
+
+				if ( length <= space - i + 1 || length > data.length - i || data[ i + length - 1 ] != '\n' ) {
+					throw new IOException( "bad pax header record at byte " + i );
+				}
+
+				final String record = text( data, space + 1, i + length - space - 2 ); // without the "\n"
+				if ( record.startsWith( "path=" ) ) {
+					return record.substring( 5 );
+				}
+				i += length;
+			}
+
+			return null;
+		}
+
+		private static String text( byte[] b ) {
+			int end = b.length;
+			while ( end > 0 && b[ end - 1 ] == 0 ) {
+				end--;
+			}
+			return text( b, 0, end );
+		}
+
+		private static String text( byte[] b, int offset, int length ) {
+			try {
+				return new String( b, offset, length, "UTF-8" );
+			} catch ( final IOException e ) {
+				throw new IllegalStateException( e ); // UTF-8 is always there
+			}
+		}
+
+		private static boolean isZero( byte[] b ) {
+			for ( final byte x : b ) {
+				if ( x != 0 ) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,244 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Checkpoint - the --tail switch. For a LINE or DELIMITED rule, how far into a data file the last run
+ * got is kept in a directory: the offset after the last whole line validated and the line number there.
+ * The next run validates only the lines added after it. A last line with no terminator yet is left for
+ * the next run. The first bytes and the bytes before the offset are kept as a hash, when the file is
+ * shorter than the offset or either hash differs (truncated, rotated or rewritten) it is validated from
+ * the start. A change to the rule starts every file over too.
+ * @author Bill Lanahan
+ *
+ */
+final class Checkpoint {
+
+	private static final String MAGIC = "validate checkpoint 1";
+	private static final int PRINT = 4096; // bytes hashed at the start of the file and before the offset
+	private static final int BLOCK = 65536; // read back from the end of the file for the last line end
+
+	private static File dir = null;
+
+	private final String key; // the rule and the file
+	long offset = 0; // where this run starts
+	int lineNumber = 0; // of the line before offset
+	long end = 0; // after the last whole line, where this run stops
+	boolean restarted = false; // the file changed under the checkpoint, so offset went back to 0
+	private String head = null;
+	private String tail = null;
+
+	private Checkpoint( String key ) {
+		this.key = key;
+	}
+
+	/*
+	 * use dirName for the run, made if it is not there; a warning and no checkpoints if it can't be
+	 */
+	static synchronized void open( String dirName ) {
+		final File d = new File( dirName );
+
+		if ( ! d.isDirectory() && ! d.mkdirs() ) {
+			System.err.println( "\nwarning: can't make the checkpoint directory <" + dirName + ">, files are validated from the start." );
+			dir = null;
+			return;
+		}
+
+		dir = d;
+	}
+
+	static synchronized void close() {
+		dir = null;
+	}
+
+	static synchronized boolean enabled() {
+		return dir != null;
+	}
+
+	/*
+	 * the checkpoint of rule for fileName, with end set to the last whole line of the file as it is now
+	 */
+	static Checkpoint load( Rule rule, String fileName ) throws IOException {
+		final File file = new File( fileName );
+		final Checkpoint c = new Checkpoint( MAGIC + "\n" + rule.getDefinitionHash() + "\n" + file.getCanonicalPath() );
+		final RandomAccessFile raf = new RandomAccessFile( file, "r" );
+
+		try {
+			final long length = raf.length();
+
+			c.read();
+
+			if ( c.offset > 0 && (c.offset > length
+					|| ! c.head.equals( hash( raf, 0, Math.min( PRINT, c.offset ) ) )
+					|| ! c.tail.equals( hash( raf, Math.max( 0, c.offset - PRINT ), c.offset ) )) ) {
+				c.offset = 0;
+				c.lineNumber = 0;
+				c.restarted = true;
+			}
+
+			c.end = lineEnd( raf, c.offset, length );
+
+			// what the next run checks the file against
+			c.head = hash( raf, 0, Math.min( PRINT, c.end ) );
+			c.tail = hash( raf, Math.max( 0, c.end - PRINT ), c.end );
+		} finally {
+			raf.close();
+		}
+
+		return c;
+	}
+
+	/*
+	 * the file was validated up to end, lineNumber is the number of the line there
+	 */
+	void save( int lineNumber ) {
+
+		if ( ! enabled() ) {
+			return;
+		}
+
+		final File entry = entry();
+		final File tmp = new File( entry.getPath() + "." + Long.toHexString( System.nanoTime() ) + Thread.currentThread().getId() + ".tmp" );
+		DataOutputStream os = null;
+
+		try {
+			os = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+			Snapshot.writeString( os, key );
+			os.writeLong( end );
+			os.writeInt( lineNumber );
+			Snapshot.writeString( os, head );
+			Snapshot.writeString( os, tail );
+			os.close();
+			os = null;
+
+			// whole or not at all
+			if ( ! tmp.renameTo( entry ) ) {
+				entry.delete();
+				if ( ! tmp.renameTo( entry ) ) {
+					throw new IOException( "could not rename <" + tmp + ">" );
+				}
+			}
+		} catch ( final IOException e ) {
+			if ( os != null ) {
+				try {
+					os.close();
+				} catch ( final IOException ignore ) {
+					// it is being thrown away
+				}
+			}
+			tmp.delete();
+			System.err.println( "\nwarning: can't keep the checkpoint of <" + key.substring( key.lastIndexOf( '\n' ) + 1 )
+					+ ">, the next run validates the same lines again. " + e.getMessage() );
+		}
+	}
+
+	/*
+	 * offset, lineNumber and the hashes from the last run, left at 0 and null if there is none
+	 */
+	private void read() {
+		final File entry = entry();
+		DataInputStream in = null;
+
+		if ( ! entry.isFile() ) {
+			return;
+		}
+
+		try {
+			in = new DataInputStream( new BufferedInputStream( new FileInputStream( entry ) ) );
+
+			if ( key.equals( Snapshot.readString( in ) ) ) {
+				final long o = in.readLong();
+				final int n = in.readInt();
+				head = Snapshot.readString( in );
+				tail = Snapshot.readString( in );
+				offset = o;
+				lineNumber = n;
+			}
+		} catch ( final IOException e ) {
+			offset = 0; // unreadable, start over
+			lineNumber = 0;
+		} finally {
+			if ( in != null ) {
+				try {
+					in.close();
+				} catch ( final IOException ignore ) {
+					// only read
+				}
+			}
+		}
+	}
+
+	private File entry() {
+		try {
+			return new File( dir, ResultCache.hash( key.getBytes( "UTF-8" ) ) );
+		} catch ( final IOException e ) {
+			throw new IllegalStateException( e ); // UTF-8 is always there
+		}
+	}
+
+	/*
+	 * the offset after the last "\n" or "\r" from start up to length, or start if there is none;
+	 * a "\r" as the very last byte may be the first half of a "\r\n" still being written
+	 */
+	private static long lineEnd( RandomAccessFile raf, long start, long length ) throws IOException {
+		final byte[] b = new byte[ BLOCK ];
+		long to = length;
+
+		while ( to > start ) {
+			final long from = Math.max( start, to - BLOCK );
+			final int n = (int) (to - from);
+
+			raf.seek( from );
+			raf.readFully( b, 0, n );
+
+			for ( int i = n - 1; i >= 0; i-- ) {
+				if ( b[ i ] == '\n' || (b[ i ] == '\r' && from + i + 1 < length) ) {
+					return from + i + 1;
+				}
+			}
+			to = from;
+		}
+
+		return start;
+	}
+
+	private static String hash( RandomAccessFile raf, long from, long to ) throws IOException {
+		final byte[] b = new byte[ (int) (to - from) ];
+		raf.seek( from );
+		raf.readFully( b );
+		return ResultCache.hash( b );
+	}
+
+}
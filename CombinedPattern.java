@@ -0,0 +1,153 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * CombinedPattern - the regexes of a LINE rule joined into one alternation, each in its own
+ * capturing group, so a line is searched once instead of once per regex. The group that took
+ * part in the match tells which regex it was. When every regex starts with ^ only the start
+ * of the line is tried.
+ * @author Bill Lanahan
+ *
+ */
+class CombinedPattern {
+
+	private final Pattern pattern;
+	private final int[] groups; // the capturing group around each regex
+	private final boolean anchored; // every regex starts with ^
+
+	private CombinedPattern ( Pattern pattern, int[] groups, boolean anchored ) {
+		this.pattern = pattern;
+		this.groups = groups;
+		this.anchored = anchored;
+	}
+
+	/*
+	 * null if the regexes can't be joined: fewer than two, a back reference (its group number
+	 * would change), a \Q with no \E, or a regex compiled with flags
+	 */
+	static CombinedPattern of( List<Pattern> patterns ) {
+
+		if ( patterns == null || patterns.size() < 2 ) {
+			return null;
+		}
+
+		final int[] groups = new int[ patterns.size() ];
+		final StringBuilder sb = new StringBuilder( 64 * patterns.size() );
+		boolean anchored = true;
+		int group = 1;
+
+		for ( int i = 0; i < patterns.size(); i++ ) {
+			final Pattern p = patterns.get( i );
+			final String regex = p.pattern();
+
+			if ( p.flags() != 0 || ! joinable( regex ) ) {
+				return null;
+			}
+
+			// a | could make ^ cover only part of the regex, so those are not taken as anchored
+			anchored = anchored && regex.startsWith( "^" ) && regex.indexOf( '|' ) < 0;
+
+			if ( i > 0 ) {
+				sb.append( '|' );
+			}
+
+			sb.append( '(' ).append( regex ).append( ')' );
+			groups[ i ] = group;
+			group += 1 + p.matcher( "" ).groupCount();
+		}
+
+		try {
+			return new CombinedPattern( PatternCache.compile( sb.toString() ), groups, anchored );
+		} catch ( final PatternSyntaxException pse ) {
+			return null; // e.g. the same named group in two regexes, each regex is tried alone
+		}
+	}
+
+	/*
+	 * false if regex has a back reference or a \Q that runs to its end
+	 */
+	private static boolean joinable( String regex ) {
+		boolean inClass = false;
+
+		for ( int i = 0; i < regex.length(); i++ ) {
+			final char c = regex.charAt( i );
+
+			if ( c == '\\' && i + 1 < regex.length() ) {
+				final char e = regex.charAt( ++i );
+
+				if ( e == 'Q' ) {
+					final int end = regex.indexOf( "\\E", i );
+
+					if ( end < 0 ) {
+						return false;
+					}
+					i = end + 1;
+				} else if ( ! inClass && (e == 'k' || (e >= '1' && e <= '9')) ) {
+					return false;
+				}
+			} else if ( c == '[' ) {
+				inClass = true; // nested classes only need the outer one
+			} else if ( c == ']' ) {
+				inClass = false;
+			}
+		}
+
+		return true;
+	}
+
+	/*
+	 * a matcher for find, one for each thread reading lines
+	 */
+	Matcher matcher() {
+		return pattern.matcher( "" );
+	}
+
+	/*
+	 * index of a regex that matches line, -1 if none does. At the first place in the line where
+	 * any regex matches, the first of them in the list is given; an earlier one in the list may
+	 * still match further along the line
+	 */
+	int find( Matcher m, String line ) {
+		m.reset( line );
+
+		if ( ! (anchored ? m.lookingAt() : m.find()) ) {
+			return -1;
+		}
+
+		for ( int i = 0; i < groups.length; i++ ) {
+			if ( m.start( groups[ i ] ) >= 0 ) {
+				return i;
+			}
+		}
+
+		return -1; // not reached, one of the groups matched
+	}
+}
@@ -0,0 +1,591 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Daemon - the server mode. "validate --server port [configFile...]" listens on the loopback
+ * interface and runs each request as if it were a command line of its own, but the config files
+ * are parsed once and kept, a config file is parsed again when it or its macro file changed.
+ * "validate --connect port ..." is the client, it sends the rest of its command line and its working
+ * directory, prints the STDOUT and STDERR of the request as they come back, then exits with the
+ * request's code. When the server runs in another directory the relative file names of the request
+ * are made absolute, so they show that way in the report.
+ * The server writes a random token to a file only its user can read, a request without it is refused,
+ * so another user of the host can't have files read or written as the server's user. Each connection
+ * is read on a thread of its own and has READ_TIMEOUT to send its request, then the requests are run
+ * one at a time, a run of the tool keeps its state in static fields.
+ * @author Bill Lanahan
+ *
+ */
+final class Daemon {
+
+	private static final String MAGIC = "validate request 2"; // change when the protocol changes
+	private static final int READ_TIMEOUT = 10000; // ms a client has to send all of its request
+	private static final int READERS = 16; // connections read at the same time, more wait to be accepted
+	private static final int END = 0; // frames of the reply: END and the return code, or STDOUT|STDERR bytes
+	private static final int STDOUT = 1;
+	private static final int STDERR = 2;
+
+	private static boolean serving = false;
+	private static final Object runLock = new Object(); // held while a request runs
+	private static PrintStream console = null; // the server's own STDERR, System.err is the request's while it runs
+	// the parsed config files, by the file name and the switches the parse depends on
+	private static final HashMap<String, Config> configs = new HashMap<String, Config>();
+
+	private Daemon() {
+		// static methods only
+	}
+
+	static boolean serving() {
+		return serving;
+	}
+
+	/*
+	 * --server port [configFile...], the config files given are parsed now rather than on their first request
+	 */
+	static void serve( String[] args ) {
+		final int port = port( args, "--server" );
+		ServerSocket server = null;
+
+		try {
+			server = new ServerSocket( port, 50, InetAddress.getLoopbackAddress() );
+		} catch ( final IOException e ) {
+			System.err.println( "\nfatal: can't listen on port <" + port + ">. " + e.getMessage() );
+			Validate.exit( 10 );
+		}
+
+		final File tokenFile = tokenFile( server.getLocalPort() );
+		String token = null;
+
+		try {
+			token = writeToken( tokenFile );
+		} catch ( final IOException e ) {
+			System.err.println( "\nfatal: can't write the token file <" + tokenFile + ">. " + e.getMessage() );
+			Validate.exit( 10 );
+		}
+
+		Runtime.getRuntime().addShutdownHook( new Thread() {
+			@Override
+			public void run() {
+				tokenFile.delete();
+			}
+		});
+
+		serving = true;
+		console = System.err;
+
+		for ( int i = 2; i < args.length; i++ ) {
+			Validate.reset();
+
+			try {
+				parse( args[ i ] );
+			} catch ( final ExitException e ) {
+				System.err.println( "\nwarning: config file <" + args[ i ] + "> did not load, return code <" + e.code + ">, it is parsed again when it is requested." );
+			}
+		}
+
+		System.out.println( "\ninfo: validate server is listening on port <" + server.getLocalPort() + ">, its token is in <" + tokenFile + ">." );
+
+		final Semaphore readers = new Semaphore( READERS );
+		final String serverToken = token;
+
+		while ( true ) {
+			readers.acquireUninterruptibly();
+
+			try {
+				final Socket socket = server.accept();
+
+				final Thread reader = new Thread( new Runnable() {
+					public void run() {
+						try {
+							handle( socket, serverToken );
+						} catch ( final IOException e ) {
+							console.println( "\nwarning: a request failed. " + e.getMessage() );
+						} finally {
+							close( socket );
+							readers.release();
+						}
+					}
+				}, "validate-request" );
+				reader.setDaemon( true );
+				reader.start();
+			} catch ( final IOException e ) {
+				readers.release();
+				console.println( "\nwarning: a request failed. " + e.getMessage() );
+			}
+		}
+	}
+
+	/*
+	 * --connect port args..., the args of the request are those after the port
+	 */
+	static void connect( String[] args ) {
+		final int port = port( args, "--connect" );
+		final String[] request = new String[ args.length - 2 ];
+		System.arraycopy( args, 2, request, 0, request.length );
+
+		Socket socket = null;
+		int code = 99;
+
+		final File tokenFile = tokenFile( port );
+		String token = null;
+
+		try {
+			token = new String( Files.readAllBytes( tokenFile.toPath() ), "UTF-8" ).trim();
+		} catch ( final IOException e ) {
+			System.err.println( "\nfatal: can't read the token of the validate server on port <" + port + "> from <" + tokenFile + ">. " + e.getMessage() );
+			Validate.exit( 10 );
+		}
+
+		try {
+			socket = new Socket( InetAddress.getLoopbackAddress(), port );
+			final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+			out.writeUTF( MAGIC );
+			out.writeUTF( token );
+			Snapshot.writeString( out, System.getProperty( "user.dir" ) );
+			out.writeInt( request.length );
+			for ( final String s : request ) {
+				Snapshot.writeString( out, s );
+			}
+			out.flush();
+
+			final DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream(), 65536 ) );
+			int frame;
+
+			while ( (frame = in.readByte()) != END ) {
+				final byte[] b = Snapshot.readBytes( in );
+				(frame == STDOUT ? System.out : System.err).write( b, 0, b.length );
+			}
+			code = in.readInt();
+
+		} catch ( final EOFException e ) {
+			System.err.println( "\nfatal: the validate server on port <" + port + "> ended the request without a return code." );
+		} catch ( final IOException e ) {
+			System.err.println( "\nfatal: can't reach the validate server on port <" + port + ">. " + e.getMessage() );
+			code = 10;
+		} finally {
+			close( socket );
+		}
+
+		Validate.exit( code );
+	}
+
+	/*
+	 * the hook in Validate.run(), installs the rules of configFile as a parse would and returns its
+	 * options; null when there is no such file, the parse then reports it as usual
+	 */
+	static Options load( String configFile ) {
+
+		if ( configFile == null || ! new File( configFile ).isFile() ) {
+			return null;
+		}
+
+		final String key = key( configFile );
+		Config config = configs.get( key );
+
+		if ( config == null || ! config.stamp.equals( stamp( configFile ) ) ) {
+			configs.remove( key );
+			config = parse( configFile );
+		}
+
+		System.out.write( config.out, 0, config.out.length );
+		System.out.flush();
+		System.err.write( config.err, 0, config.err.length );
+		System.err.flush();
+
+		// the rules report to this request
+		if ( config.ruleMap != null ) {
+			for ( final Rule rule : config.ruleMap.values() ) {
+				rule.out = System.out;
+				rule.err = System.err;
+			}
+		}
+
+		Validate.ruleMap = config.ruleMap;
+		Validate.ruleList = config.ruleList;
+		return config.opt;
+	}
+
+	/*
+	 * parse configFile and keep it, what the parse prints is kept too and printed for each request;
+	 * when the parse fails it is printed at once and the config file is not kept
+	 */
+	private static Config parse( String configFile ) {
+		final PrintStream sysOut = System.out;
+		final PrintStream sysErr = System.err;
+		final ByteArrayOutputStream out = new ByteArrayOutputStream( 1024 );
+		final ByteArrayOutputStream err = new ByteArrayOutputStream( 256 );
+		final String stamp = stamp( configFile ); // before the parse, an edit while it runs is seen next time
+
+		System.setOut( new PrintStream( out, true ) );
+		System.setErr( new PrintStream( err, true ) );
+
+		try {
+			new ParseConfig( configFile ).parse();
+		} catch ( final ExitException e ) {
+			sysOut.write( out.toByteArray(), 0, out.size() );
+			sysErr.write( err.toByteArray(), 0, err.size() );
+			throw e;
+		} finally {
+			System.setOut( sysOut );
+			System.setErr( sysErr );
+		}
+
+		final Config config = new Config( stamp, ParseConfig.opt, Validate.ruleMap, Validate.ruleList, out.toByteArray(), err.toByteArray() );
+		configs.put( key( configFile ), config );
+		return config;
+	}
+
+	/*
+	 * read one request, refuse it without the token, else run it when no other request runs and
+	 * send back its output and return code
+	 */
+	private static void handle( Socket socket, String token ) throws IOException {
+		final DataInputStream in = new DataInputStream( new BufferedInputStream( new DeadlineInputStream( socket ) ) );
+
+		if ( ! MAGIC.equals( in.readUTF() ) ) {
+			throw new IOException( "not a validate request." );
+		}
+
+		if ( ! MessageDigest.isEqual( token.getBytes( "UTF-8" ), in.readUTF().getBytes( "UTF-8" ) ) ) {
+			refuse( socket );
+			throw new IOException( "refused a request without the token." );
+		}
+
+		final String dir = Snapshot.readString( in );
+		final int count = in.readInt();
+
+		if ( count < 0 || count > 1000 ) {
+			throw new IOException( "not a validate request." );
+		}
+
+		final String[] args = new String[ count ];
+		for ( int i = 0; i < args.length; i++ ) {
+			args[ i ] = Snapshot.readString( in );
+		}
+
+		// file names are relative to the client, only when it runs elsewhere are they changed
+		if ( dir != null && ! dir.equals( System.getProperty( "user.dir" ) ) ) {
+			resolve( args, dir );
+		}
+
+		socket.setSoTimeout( 0 ); // a run takes as long as it takes
+
+		synchronized ( runLock ) {
+			run( socket, args );
+		}
+	}
+
+	/*
+	 * run the request args, its STDOUT and STDERR go to the client as they are written
+	 */
+	private static void run( Socket socket, String[] args ) throws IOException {
+		final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream(), 65536 ) );
+		final PrintStream sysOut = System.out;
+		final PrintStream sysErr = System.err;
+		int code = 0;
+
+		System.setOut( new PrintStream( new FrameOutputStream( out, STDOUT ), true ) );
+		System.setErr( new PrintStream( new FrameOutputStream( out, STDERR ), true ) );
+		System.setIn( new ByteArrayInputStream( new byte[ 0 ] ) ); // a file= of - finds no data, not the server's STDIN
+		Validate.reset();
+
+		try {
+			Validate.run( args );
+		} catch ( final ExitException e ) {
+			code = e.code;
+		} catch ( final Throwable t ) {
+			// as it would end a run of its own, the server goes on
+			System.err.print( "Exception in thread \"main\" " );
+			t.printStackTrace();
+			code = 1;
+		} finally {
+			System.out.flush();
+			System.err.flush();
+			System.setOut( sysOut );
+			System.setErr( sysErr );
+		}
+
+		synchronized ( out ) {
+			out.writeByte( END );
+			out.writeInt( code );
+			out.flush();
+		}
+	}
+
+	/*
+	 * tell the client why nothing was run
+	 */
+	private static void refuse( Socket socket ) throws IOException {
+		final DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+		final String message = "\nfatal: the validate server on port <" + socket.getLocalPort() + "> refused the request, it did not have the token in <"
+				+ tokenFile( socket.getLocalPort() ) + ">.\n";
+
+		out.writeByte( STDERR );
+		Snapshot.writeBytes( out, message.getBytes() );
+		out.writeByte( END );
+		out.writeInt( 10 );
+		out.flush();
+	}
+
+	/*
+	 * where the server on port keeps its token
+	 */
+	private static File tokenFile( int port ) {
+		return new File( new File( System.getProperty( "user.home" ), ".validate" ), "server-" + port + ".token" );
+	}
+
+	/*
+	 * a new random token in file, the file and its directory are made readable by this user only
+	 */
+	private static String writeToken( File file ) throws IOException {
+		final byte[] random = new byte[ 32 ];
+		new SecureRandom().nextBytes( random );
+
+		final StringBuilder token = new StringBuilder( 64 );
+		for ( final byte b : random ) {
+			token.append( String.format( "%02x", b & 0xff ) );
+		}
+
+		final Path dir = file.getParentFile().toPath();
+		final Path path = file.toPath();
+		Files.deleteIfExists( path );
+
+		if ( FileSystems.getDefault().supportedFileAttributeViews().contains( "posix" ) ) {
+			// made that way, so there is no moment another user could open it
+			if ( ! Files.isDirectory( dir ) ) {
+				Files.createDirectories( dir, PosixFilePermissions.asFileAttribute( PosixFilePermissions.fromString( "rwx------" ) ) );
+			}
+			Files.createFile( path, PosixFilePermissions.asFileAttribute( PosixFilePermissions.fromString( "rw-------" ) ) );
+		} else {
+			Files.createDirectories( dir );
+			Files.createFile( path );
+			file.setReadable( false, false );
+			file.setReadable( true, true );
+			file.setWritable( false, false );
+			file.setWritable( true, true );
+		}
+
+		Files.write( path, token.toString().getBytes( "UTF-8" ) );
+		return token.toString();
+	}
+
+	/*
+	 * make the file names of args that are relative absolute ones in dir, - is STDIN and stays
+	 */
+	private static void resolve( String[] args, String dir ) {
+		boolean haveDir = false;
+
+		for ( final String arg : args ) {
+			haveDir = haveDir || arg.equals( "-d" );
+		}
+
+		for ( int i = 0; i + 1 < args.length; i++ ) {
+
+			if ( args[ i ].equals( "-c" ) || args[ i ].equals( "-m" ) || args[ i ].equals( "-d" ) || args[ i ].equals( "-V" )
+					|| args[ i ].equals( "--cache" ) || args[ i ].equals( "--tail" ) ) {
+				args[ i + 1 ] = resolve( args[ i + 1 ], dir );
+				i++;
+			} else if ( args[ i ].equals( "-f" ) && ! haveDir ) {
+				// with -d the files are relative to it
+				final StringBuilder files = new StringBuilder();
+				for ( final String f : args[ i + 1 ].split( "," ) ) {
+					files.append( files.length() > 0 ? "," : "" ).append( resolve( f, dir ) );
+				}
+				args[ i + 1 ] = files.toString();
+				i++;
+			}
+		}
+	}
+
+	private static String resolve( String fileName, String dir ) {
+		return new File( fileName ).isAbsolute() || fileName.equals( "-" ) ? fileName : new File( dir, fileName ).getPath();
+	}
+
+	private static int port( String[] args, String option ) {
+		int port = -1;
+
+		if ( args.length > 1 ) {
+			try {
+				port = Integer.parseInt( args[ 1 ] );
+			} catch ( final NumberFormatException e ) {
+				port = -1;
+			}
+		}
+
+		if ( port < 0 || port > 65535 ) {
+			System.err.println( "\nerror: " + option + " switch requires a port number (0 to 65535)." );
+			Validate.exit( 10 );
+		}
+
+		return port;
+	}
+
+	// the parse depends on the switches as well as the files, and the file name as given shows in the report
+	private static String key( String configFile ) {
+		return configFile + "\n" + Validate.macrosFile + "\n" + Validate.dirPath + "\n" + Validate.fileIsCmdLine + "\n" + Validate.testMode;
+	}
+
+	// changes when the config file or the macro file is edited
+	private static String stamp( String configFile ) {
+		final File config = new File( configFile );
+		String stamp = config.lastModified() + "," + config.length();
+
+		if ( Validate.macrosFile != null ) {
+			final File macros = new File( Validate.macrosFile );
+			stamp += "," + macros.lastModified() + "," + macros.length();
+		}
+
+		return stamp;
+	}
+
+	private static void close( Socket socket ) {
+		if ( socket != null ) {
+			try {
+				socket.close();
+			} catch ( final IOException e ) {
+				// nothing more to do with it
+			}
+		}
+	}
+
+	/*
+	 * a config file as the parse left it
+	 */
+	private static final class Config {
+		final String stamp;
+		final Options opt;
+		final Map<String, Rule> ruleMap;
+		final ArrayList<String> ruleList;
+		final byte[] out;
+		final byte[] err;
+
+		Config( String stamp, Options opt, Map<String, Rule> ruleMap, ArrayList<String> ruleList, byte[] out, byte[] err ) {
+			this.stamp = stamp;
+			this.opt = opt;
+			this.ruleMap = ruleMap;
+			this.ruleList = ruleList;
+			this.out = out;
+			this.err = err;
+		}
+	}
+
+	/*
+	 * the input of a connection, all of the request has to come in READ_TIMEOUT however slowly it
+	 * comes, so a client that sends nothing only holds its own thread for that long
+	 */
+	private static final class DeadlineInputStream extends FilterInputStream {
+		private final Socket socket;
+		private final long deadline = System.currentTimeMillis() + READ_TIMEOUT;
+
+		DeadlineInputStream( Socket socket ) throws IOException {
+			super( socket.getInputStream() );
+			this.socket = socket;
+		}
+
+		@Override
+		public int read() throws IOException {
+			timeLeft();
+			return in.read();
+		}
+
+		@Override
+		public int read( byte[] b, int off, int len ) throws IOException {
+			timeLeft();
+			return in.read( b, off, len );
+		}
+
+		private void timeLeft() throws IOException {
+			final long left = deadline - System.currentTimeMillis();
+
+			if ( left <= 0 ) {
+				throw new SocketTimeoutException( "the request was not sent in time." );
+			}
+			socket.setSoTimeout( (int) left );
+		}
+	}
+
+	/*
+	 * one of the streams of a request, each write goes to the client as a frame of its own so
+	 * STDOUT and STDERR come out in the order they were written
+	 */
+	private static final class FrameOutputStream extends OutputStream {
+		private final DataOutputStream out;
+		private final int frame;
+
+		FrameOutputStream( DataOutputStream out, int frame ) {
+			this.out = out;
+			this.frame = frame;
+		}
+
+		@Override
+		public void write( int b ) throws IOException {
+			write( new byte[] { (byte) b }, 0, 1 );
+		}
+
+		@Override
+		public void write( byte[] b, int off, int len ) throws IOException {
+			if ( len == 0 ) {
+				return;
+			}
+
+			synchronized ( out ) {
+				out.writeByte( frame );
+				out.writeInt( len );
+				out.write( b, off, len );
+			}
+		}
+
+		// the socket is flushed when its buffer is full and at the end of the request
+	}
+
+}
@@ -0,0 +1,239 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * DelimitedTokenizer - finds the delimiters of a DELIMITED line in one pass and keeps their
+ * offsets, and the offsets of the fields between them, in int arrays that are reused for every
+ * line. A delimiterRegex that is one plain character is found with a char scan, a plain string
+ * with indexOf, anything else with the regex. Not thread safe, each reader makes its own.
+ * @author Bill Lanahan
+ *
+ */
+class DelimitedTokenizer {
+
+	private final char delimiterChar;
+	private final String delimiterLiteral; // null when the regex is needed
+	private final Matcher delimiterMatcher;
+
+	// delimiters of the last line given to tokenize
+	private int[] delimiterStart = new int[ 16 ];
+	private int[] delimiterEnd = new int[ 16 ];
+	private int delimiterCount = 0;
+	private int tokenizedLength = 0;
+
+	// fields of the last line given to fields
+	int[] fieldStart = new int[ 16 ];
+	int[] fieldEnd = new int[ 16 ];
+	int fieldCount = 0;
+
+	DelimitedTokenizer ( String delimiterLiteral, Pattern delimiterPattern ) {
+		this.delimiterLiteral = delimiterLiteral;
+
+		if ( delimiterLiteral != null ) {
+			delimiterChar = delimiterLiteral.charAt( 0 );
+			delimiterMatcher = null;
+		} else {
+			delimiterChar = 0;
+			delimiterMatcher = delimiterPattern.matcher( "" );
+		}
+	}
+
+	/*
+	 * the delimiterRegex as a plain string if it has no regex meaning, else null.
+	 * An escaped punctuation character, e.g. \| or \., is taken as that character
+	 */
+	static String literalOf( String regex ) {
+
+		if ( regex == null || regex.length() == 0 ) {
+			return null;
+		}
+
+		final StringBuilder sb = new StringBuilder( regex.length() );
+
+		for ( int i = 0; i < regex.length(); i++ ) {
+			char c = regex.charAt( i );
+
+			if ( c == '\\' ) {
+				if ( ++i == regex.length() ) {
+					return null;
+				}
+
+				c = regex.charAt( i );
+
+				if ( c == 't' ) {
+					c = '\t';
+				} else if ( Character.isLetterOrDigit( c ) ) {
+					return null; // a class like \s or a back reference
+				}
+			} else if ( ".$|()[]{}^?*+".indexOf( c ) >= 0 ) {
+				return null;
+			}
+
+			sb.append( c );
+		}
+
+		return sb.toString();
+	}
+
+	/*
+	 * find every delimiter in line, same as a find() loop with the delimiterRegex
+	 */
+	int tokenize( String line ) {
+		delimiterCount = 0;
+		tokenizedLength = line.length();
+
+		if ( delimiterLiteral == null ) {
+			delimiterMatcher.reset( line );
+
+			while ( delimiterMatcher.find() ) {
+				add( delimiterMatcher.start(), delimiterMatcher.end() );
+			}
+		} else if ( delimiterLiteral.length() == 1 ) {
+			final int length = line.length();
+
+			for ( int i = 0; i < length; i++ ) {
+				if ( line.charAt( i ) == delimiterChar ) {
+					add( i, i + 1 );
+				}
+			}
+		} else {
+			final int width = delimiterLiteral.length();
+			int i = 0;
+
+			while ( (i = line.indexOf( delimiterLiteral, i )) >= 0 ) {
+				add( i, i + width );
+				i += width;
+			}
+		}
+
+		return delimiterCount;
+	}
+
+	/*
+	 * the fields of line, same as String.split with trailing empty fields kept. line is the
+	 * tokenized line, or the start of it when a delimiter at EOL was trimmed off
+	 */
+	int fields( String line ) {
+		final int length = line.length();
+		int from = 0;
+		fieldCount = 0;
+
+		if ( delimiterMatcher != null && length != tokenizedLength ) {
+			// a regex can match differently once the end of the line is gone, so find them again
+			delimiterMatcher.reset( line );
+
+			while ( delimiterMatcher.find() ) {
+
+				if ( delimiterMatcher.end() == 0 ) {
+					continue; // like split, a zero width match at the start gives no empty first field
+				}
+
+				addField( from, delimiterMatcher.start() );
+				from = delimiterMatcher.end();
+			}
+		} else {
+
+			for ( int k = 0; k < delimiterCount && delimiterEnd[ k ] <= length; k++ ) {
+
+				if ( delimiterEnd[ k ] == 0 ) {
+					continue; // like split, a zero width match at the start gives no empty first field
+				}
+
+				addField( from, delimiterStart[ k ] );
+				from = delimiterEnd[ k ];
+			}
+		}
+
+		addField( from, length );
+
+		return fieldCount;
+	}
+
+	/*
+	 * the start/end of each run of non delimiter chars in the first length chars of the
+	 * tokenized line, used to place the underline of a failed field. Returns the count
+	 */
+	int runs( int[] runStart, int[] runEnd, int length ) {
+		int index = 0;
+		int from = 0;
+
+		for ( int k = 0; k < delimiterCount && index < runStart.length; k++ ) {
+
+			if ( delimiterStart[ k ] == delimiterEnd[ k ] ) {
+				continue; // nothing to mark
+			}
+
+			if ( delimiterStart[ k ] > from ) {
+				runStart[ index ] = from;
+				runEnd[ index ] = delimiterStart[ k ];
+				index++;
+			}
+
+			from = delimiterEnd[ k ];
+		}
+
+		if ( from < length && index < runStart.length ) {
+			runStart[ index ] = from;
+			runEnd[ index ] = length;
+			index++;
+		}
+
+		return index;
+	}
+
+	private void add( int start, int end ) {
+
+		if ( delimiterCount == delimiterStart.length ) {
+			delimiterStart = grow( delimiterStart );
+			delimiterEnd = grow( delimiterEnd );
+		}
+
+		delimiterStart[ delimiterCount ] = start;
+		delimiterEnd[ delimiterCount ] = end;
+		delimiterCount++;
+	}
+
+	private void addField( int start, int end ) {
+
+		if ( fieldCount == fieldStart.length ) {
+			fieldStart = grow( fieldStart );
+			fieldEnd = grow( fieldEnd );
+		}
+
+		fieldStart[ fieldCount ] = start;
+		fieldEnd[ fieldCount ] = end;
+		fieldCount++;
+	}
+
+	private static int[] grow( int[] a ) {
+		final int[] b = new int[ a.length * 2 ];
+		System.arraycopy( a, 0, b, 0, a.length );
+		return b;
+	}
+}
@@ -0,0 +1,117 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * FileChunks - splits one large data file into byte ranges that each start at the beginning
+ * of a line, so the ranges can be read and validated at the same time (-j switch).
+ * @author Bill Lanahan
+ *
+ */
+class FileChunks {
+
+	// smaller files are not worth splitting, the threads would cost more than they save
+	static final long MIN_CHUNK_SIZE = 4L * 1024 * 1024;
+
+	/*
+	 * returns the offsets where each chunk starts, plus the file length as the last entry,
+	 * or null if the file should be read in one piece
+	 */
+	static long[] split( File file, int count, Charset charset ) throws IOException {
+		final long length = file.length();
+
+		// a newline has to be one byte, the same byte, in every chunk
+		if ( ! MappedLineSource.canSplit( charset ) ) {
+			return null;
+		}
+
+		count = (int) Math.min( count, length / MIN_CHUNK_SIZE );
+		if ( count < 2 ) {
+			return null;
+		}
+
+		final long[] bounds = new long[ count + 1 ];
+		int n = 0;
+		RandomAccessFile raf = null;
+
+		try {
+			raf = new RandomAccessFile( file, "r" );
+
+			for ( int i = 1; i < count; i++ ) {
+				final long pos = nextLineStart( raf, Math.max( length * i / count, bounds[ n ] + 1 ), length );
+
+				if ( pos < length ) {
+					bounds[ ++n ] = pos;
+				}
+			}
+		} finally {
+			if ( raf != null ) {
+				raf.close();
+			}
+		}
+
+		bounds[ ++n ] = length;
+
+		if ( n < 2 ) {
+			return null; // one line was longer than the chunks
+		}
+
+		return Arrays.copyOf( bounds, n + 1 );
+	}
+
+	/*
+	 * the first offset at or after pos that follows a '\n', so a "\r\n" pair is never split
+	 */
+	private static long nextLineStart( RandomAccessFile raf, long pos, long length ) throws IOException {
+		final byte[] buf = new byte[ 8192 ];
+		long at = pos - 1;
+
+		raf.seek( at );
+		while ( at < length ) {
+			final int read = raf.read( buf );
+
+			if ( read < 0 ) {
+				break;
+			}
+
+			for ( int i = 0; i < read; i++ ) {
+				if ( buf[ i ] == '\n' ) {
+					return at + i + 1;
+				}
+			}
+
+			at += read;
+		}
+
+		return length;
+	}
+
+}
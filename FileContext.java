@@ -0,0 +1,173 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.HashSet;
+
+/**
+ * FileContext - the mutable state for validating ONE data file of a Rule. The Rule only keeps
+ * what was compiled from the config file, so the files of a Rule can be validated at the same time,
+ * each with its own FileContext, and the reports are then merged in fileList order.
+ * @author Bill Lanahan
+ *
+ */
+class FileContext {
+
+	final String fileName; // as given by file= or -f
+	String f = null; // fileName with dirPathString prepended, used in the summary
+	int lineNumber = 0;
+	int errCount = 0;
+	int errCountShared = 0; // errors already added to the rule and run totals for maxErrors
+	boolean truncated = false; // stopped early by maxErrorsPerFile, maxErrorsPerRule or maxErrors
+	boolean hadFirstError = false;
+	int rc = 0; // the highest return code the file gave, kept with its report by the result cache
+	InputStream in = null; // the data when it is not read from the file f: gzip or a file in an archive
+	FileChannel channel = null; // the file f as validateArchive opened it, read through this rather than opened again
+
+	// for fileLineContinuation
+	String tmpline = null;
+	boolean continuationState = false;
+
+	// report data, only printed when the file reaches EOF
+	ReportBuffer outInfo = new ReportBuffer( 500 );
+	ReportBuffer outUnchecked = new ReportBuffer( 100 );
+	ReportBuffer outDupsNameVar = new ReportBuffer( 100 );
+
+	// names read from a NAME_VALUE or CUSTOM file, for the duplicate and unused regex warnings
+	boolean hadName = false;
+	private final BitSet namesWithRegex = new BitSet(); // by NVP ordinal
+	private final HashSet<String> namesWithoutRegex = new HashSet<String>();
+
+	// the Matchers of this file's worker, reset for each line
+	final Matchers matchers = new Matchers();
+
+	PrintStream out = null;
+	PrintStream err = null;
+	private SpillOutputStream outBuffer = null;
+	private SpillOutputStream errBuffer = null;
+
+	FileContext( String fileName, PrintStream out, PrintStream err ) {
+		this.fileName = fileName;
+		this.out = out;
+		this.err = err;
+	}
+
+	/*
+	 * note name was read from the file, nvp is its regex or null; true if it was read before
+	 */
+	boolean nameSeen( NVP nvp, String name ) {
+		hadName = true;
+
+		if ( nvp == null ) {
+			return ! namesWithoutRegex.add( name );
+		}
+
+		if ( namesWithRegex.get( nvp.getOrdinal() ) ) {
+			return true;
+		}
+
+		namesWithRegex.set( nvp.getOrdinal() );
+		return false;
+	}
+
+	/*
+	 * true if the name of nvp was read from the file
+	 */
+	boolean nameUsed( NVP nvp ) {
+		return namesWithRegex.get( nvp.getOrdinal() );
+	}
+
+	/*
+	 * the return code of the file, and so of the run
+	 */
+	void rc( int rc ) {
+		if ( rc > this.rc ) {
+			this.rc = rc;
+		}
+		Validate.rc( rc );
+	}
+
+	/*
+	 * a file of the archive this context is for is done, its fails and return code are the archive's too
+	 */
+	void addEntry( FileContext entry ) {
+		errCount += entry.errCount;
+		truncated |= entry.truncated;
+		rc( entry.rc );
+	}
+
+	/*
+	 * when files are done in parallel the report is held until the files ahead of it are printed
+	 */
+	void buffer() {
+		outBuffer = new SpillOutputStream( 1024 );
+		errBuffer = new SpillOutputStream( 256 );
+		out = new PrintStream( outBuffer, true );
+		err = new PrintStream( errBuffer, true );
+	}
+
+	/*
+	 * the run ended before the report of the file was printed, drop it and its temporary files
+	 */
+	void discardReports() {
+		outInfo.discard();
+		outUnchecked.discard();
+		outDupsNameVar.discard();
+	}
+
+	/*
+	 * the file is not printed at all, the run ended on a file ahead of it
+	 */
+	void discard() {
+		discardReports();
+
+		if ( outBuffer != null ) {
+			outBuffer.discard();
+			outBuffer = null;
+		}
+
+		if ( errBuffer != null ) {
+			errBuffer.discard();
+			errBuffer = null;
+		}
+	}
+
+	void flush( PrintStream out, PrintStream err ) {
+		if ( outBuffer != null ) {
+			outBuffer.writeTo( out );
+			outBuffer = null;
+		}
+
+		if ( errBuffer != null ) {
+			errBuffer.writeTo( err );
+			errBuffer = null;
+		}
+	}
+
+}
@@ -0,0 +1,337 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * FileGlob - a file= or -f name with a glob in it (* ? [ ] { }, and ** to match across directories).
+ * The directory before the first glob character is walked with each directory listed on a pool of
+ * threads, while the files found so far are handed out, sorted within each directory and a directory's
+ * files before the ones of the directories after it. So validation starts as soon as the first directory
+ * is listed, and the files come in the same order every run. A ** followed by / also matches no directory
+ * at all, as in a shell. Symbolic links to directories are not followed.
+ * @author Bill Lanahan
+ *
+ */
+final class FileGlob implements Iterator<String> {
+
+	private static ExecutorService pool = null; // lists the directories, made on first use
+
+	private final String pattern; // as given
+	private final int dirLength; // of the dirPathString before it, taken off the names handed out
+	private final String base; // the directory part before the first glob character, where the walk starts
+	private final PathMatcher matcher;
+	private final PathMatcher noDirMatcher; // with each "**/" taken out, null if there is none
+	private final int maxDepth; // of the directories below the base the files can be in
+	private final PrintStream err;
+	private final ArrayDeque<Iterator<Object>> walk = new ArrayDeque<Iterator<Object>>(); // a name or the Future of a directory
+	private String next = null;
+	private int found = 0;
+
+	/*
+	 * true if name, in dir (the dirPathString or null), is a pattern rather than the name of one file:
+	 * it has a glob character and there is no file of that name, e.g. report[1].txt stays a name
+	 */
+	static boolean isGlob( String name, String dir ) {
+		return (name.indexOf( '*' ) >= 0 || name.indexOf( '?' ) >= 0 || name.indexOf( '[' ) >= 0 || name.indexOf( '{' ) >= 0)
+				&& ! new File( dir == null ? name : dir + name ).exists();
+	}
+
+	/*
+	 * the names, each glob replaced by the files it matches as they are found
+	 */
+	static Iterator<String> expand( List<String> names, String dir, final PrintStream err ) {
+		final ArrayList<Iterator<String>> parts = new ArrayList<Iterator<String>>( names.size() );
+
+		// every walk starts now
+		for ( final String name : names ) {
+			if ( isGlob( name, dir ) ) {
+				parts.add( new FileGlob( dir, name, err ) );
+			} else {
+				parts.add( Collections.singletonList( name ).iterator() );
+			}
+		}
+
+		return new Iterator<String>() {
+			private int part = 0;
+
+			public boolean hasNext() {
+				while ( part < parts.size() && ! parts.get( part ).hasNext() ) {
+					parts.set( part++, null );
+				}
+				return part < parts.size();
+			}
+
+			public String next() {
+				if ( ! hasNext() ) {
+					throw new NoSuchElementException();
+				}
+				return parts.get( part ).next();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/*
+	 * the files of dir + pattern, dir is the dirPathString or null; the names handed out are
+	 * without dir, as the files of the fileList are
+	 */
+	FileGlob( String dir, String pattern, PrintStream err ) {
+		this( dir, pattern, err, true );
+	}
+
+	/*
+	 * dir + pattern compiled but not walked, --watch tests the files that change against it
+	 */
+	static FileGlob compile( String dir, String pattern, PrintStream err ) {
+		return new FileGlob( dir, pattern, err, false );
+	}
+
+	private FileGlob( String dir, String pattern, PrintStream err, boolean walk ) {
+		final String path = dir == null ? pattern : dir + pattern;
+		this.pattern = pattern;
+		this.dirLength = path.length() - pattern.length();
+		this.err = err;
+
+		// the directory part before the first glob character is where the walk starts
+		int glob = 0;
+		while ( "*?[{".indexOf( path.charAt( glob ) ) < 0 ) {
+			glob++;
+		}
+		base = path.substring( 0, path.lastIndexOf( '/', glob ) + 1 );
+		final String rest = path.substring( base.length() );
+
+		matcher = FileSystems.getDefault().getPathMatcher( "glob:" + path );
+		noDirMatcher = path.contains( "**/" ) ? FileSystems.getDefault().getPathMatcher( "glob:" + path.replace( "**/", "" ) ) : null;
+
+		if ( rest.contains( "**" ) ) {
+			maxDepth = Integer.MAX_VALUE;
+		} else {
+			int slashes = 0;
+			for ( int i = 0; i < rest.length(); i++ ) {
+				if ( rest.charAt( i ) == '/' ) {
+					slashes++;
+				}
+			}
+			maxDepth = slashes;
+		}
+
+		final Path start = Paths.get( base.length() == 0 ? "." : base );
+		if ( walk && Files.isDirectory( start ) ) {
+			this.walk.push( Collections.<Object>singletonList( list( start, base, 0 ) ).iterator() );
+		}
+	}
+
+	/*
+	 * the directory the walk starts in, absolute
+	 */
+	Path start() {
+		return Paths.get( base.length() == 0 ? "." : base ).toAbsolutePath().normalize();
+	}
+
+	/*
+	 * true if the walk goes into dir (absolute and normalized), its files may match
+	 */
+	boolean walks( Path dir ) {
+		final Path start = start();
+		return dir.startsWith( start ) && depth( start, dir ) <= maxDepth;
+	}
+
+	/*
+	 * the name the walk hands out for file (absolute and normalized), null if it does not match
+	 */
+	String nameOf( Path file ) {
+		final Path start = start();
+
+		if ( ! file.startsWith( start ) || file.equals( start ) || depth( start, file.getParent() ) > maxDepth ) {
+			return null;
+		}
+
+		final String name = base + start.relativize( file ).toString().replace( File.separatorChar, '/' );
+		return matches( name ) ? name.substring( dirLength ) : null;
+	}
+
+	// how many directories dir is below start
+	private static int depth( Path start, Path dir ) {
+		return dir.getNameCount() - start.getNameCount();
+	}
+
+	public boolean hasNext() {
+
+		if ( next == null ) {
+			next = advance();
+			if ( next == null && found == 0 ) {
+				err.println( "\nwarning: no file matches <" + pattern + ">." );
+				found = -1; // said once
+			}
+		}
+		return next != null;
+	}
+
+	public String next() {
+
+		if ( ! hasNext() ) {
+			throw new NoSuchElementException();
+		}
+
+		final String name = next;
+		next = null;
+		return name;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/*
+	 * the next file found, waiting for its directory to be listed; null when the walk is done
+	 */
+	@SuppressWarnings( "unchecked" )
+	private String advance() {
+
+		while ( ! walk.isEmpty() ) {
+			final Iterator<Object> entries = walk.peek();
+
+			if ( ! entries.hasNext() ) {
+				walk.pop();
+				continue;
+			}
+
+			final Object entry = entries.next();
+
+			if ( entry instanceof String ) {
+				found++;
+				return ((String) entry).substring( dirLength );
+			}
+
+			try {
+				walk.push( ((Future<List<Object>>) entry).get().iterator() );
+			} catch ( final InterruptedException ie ) {
+				err.println( "\nfatal: interrupted while listing the files of <" + pattern + ">." );
+				Validate.exit( 99 );
+			} catch ( final ExecutionException ee ) {
+				err.println( "\nfatal: listing the files of <" + pattern + "> failed. " + ee.getCause() );
+				Validate.exit( 99 );
+			}
+		}
+
+		return null;
+	}
+
+	/*
+	 * list dir on the pool, name is how dir is named in the pattern (with a trailing /), depth is
+	 * how far it is below the base; the list has the names of the files that match and the Futures
+	 * of the directories to go into, in sorted order
+	 */
+	private Future<List<Object>> list( final Path dir, final String name, final int depth ) {
+
+		return getPool().submit( new Callable<List<Object>>() {
+			public List<Object> call() {
+				final ArrayList<String> names = new ArrayList<String>();
+				DirectoryStream<Path> ds = null;
+
+				try {
+					ds = Files.newDirectoryStream( dir );
+					for ( final Path p : ds ) {
+						names.add( p.getFileName().toString() );
+					}
+				} catch ( final IOException e ) {
+					err.println( "\nwarning: can't list the directory <" + dir + ">, for <" + pattern + ">. " + e.getMessage() );
+				} finally {
+					if ( ds != null ) {
+						try {
+							ds.close();
+						} catch ( final IOException ignore ) {
+							// only read
+						}
+					}
+				}
+
+				Collections.sort( names );
+				final ArrayList<Object> entries = new ArrayList<Object>( names.size() );
+
+				for ( final String n : names ) {
+					final Path p = dir.resolve( n );
+
+					if ( Files.isDirectory( p, LinkOption.NOFOLLOW_LINKS ) ) {
+						if ( depth < maxDepth ) {
+							entries.add( list( p, name + n + "/", depth + 1 ) );
+						}
+					} else if ( matches( name + n ) && Files.isRegularFile( p ) ) {
+						entries.add( name + n );
+					}
+				}
+
+				return entries;
+			}
+		});
+	}
+
+	private boolean matches( String name ) {
+		final Path p = Paths.get( name );
+		return matcher.matches( p ) || (noDirMatcher != null && noDirMatcher.matches( p ));
+	}
+
+	private static synchronized ExecutorService getPool() {
+
+		if ( pool == null ) {
+			pool = Executors.newFixedThreadPool( Math.max( 4, Validate.threads ), new ThreadFactory() {
+				public Thread newThread( Runnable r ) {
+					final Thread t = new Thread( r, "validate-walk" );
+					t.setDaemon( true );
+					return t;
+				}
+			});
+		}
+
+		return pool;
+	}
+
+}
@@ -0,0 +1,115 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * LineRanges - which regexes of a LINE rule apply to the line being checked, from the %from%to%
+ * line ranges of the REGEX block. The regexes are sorted by their from line once; as the line
+ * number goes up the list of active regexes is only rebuilt when a range starts or ends, so a
+ * line costs one compare. One reader at a time, each reader gets its own from start().
+ * @author Bill Lanahan
+ *
+ */
+class LineRanges {
+
+	private final int[] from; // first line of each regex, 0 and 1 are the first line
+	private final int[] to; // last line of each regex, 0 is the end of the file
+	private final Integer[] byFrom; // regex indexes in order of from
+
+	// the regexes that apply to the current line, in REGEX block order
+	final int[] active;
+	int activeCount = 0;
+
+	private int started = 0; // regexes of byFrom whose range has started
+	private int nextChange = Integer.MIN_VALUE; // next line where a range starts or ends
+
+	LineRanges ( List<Integer> fromLines, List<Integer> toLines ) {
+		final int size = fromLines.size();
+
+		from = new int[ size ];
+		to = new int[ size ];
+		byFrom = new Integer[ size ];
+
+		for ( int i = 0; i < size; i++ ) {
+			from[ i ] = fromLines.get( i );
+			to[ i ] = toLines.get( i );
+			byFrom[ i ] = i;
+		}
+
+		Arrays.sort( byFrom, new Comparator<Integer>() {
+			public int compare( Integer a, Integer b ) {
+				return from[ a ] < from[ b ] ? -1 : (from[ a ] == from[ b ] ? 0 : 1);
+			}
+		} );
+
+		active = new int[ size ];
+	}
+
+	// same ranges, a new reader starting before the first line
+	private LineRanges ( LineRanges ranges ) {
+		from = ranges.from;
+		to = ranges.to;
+		byFrom = ranges.byFrom;
+		active = new int[ from.length ];
+	}
+
+	/*
+	 * a copy for one reader, before its first line
+	 */
+	LineRanges start() {
+		return new LineRanges( this );
+	}
+
+	/*
+	 * move to lineNumber, which is never less than the last one given
+	 */
+	void advance( int lineNumber ) {
+
+		if ( lineNumber < nextChange ) {
+			return; // no range starts or ends here
+		}
+
+		while ( started < byFrom.length && from[ byFrom[ started ] ] <= lineNumber ) {
+			started++;
+		}
+
+		nextChange = started < byFrom.length ? from[ byFrom[ started ] ] : Integer.MAX_VALUE;
+		activeCount = 0;
+
+		for ( int i = 0; i < from.length; i++ ) {
+			if ( from[ i ] <= lineNumber && (to[ i ] == 0 || lineNumber <= to[ i ]) ) {
+				active[ activeCount++ ] = i;
+
+				if ( to[ i ] != 0 && to[ i ] + 1 < nextChange ) {
+					nextChange = to[ i ] + 1;
+				}
+			}
+		}
+	}
+}
@@ -68,6 +68,7 @@ class Macros {
 	private static BufferedReader br = null;
 	private static Pattern patternMacroSubstitution = null; // for <macro> kind of parse
 	private static Matcher matcherMacroSubstitution = null;
+	private static String undefinedMacro = null; // set by expand() when a macro name is not defined
 	private static boolean bug = false;
 	private static short macroCount = 0;
 				
@@ -77,6 +78,8 @@ class Macros {
 	 */
 	Macros( String file, String start, String end ) {
 		
+		macrosHM.clear(); // from a config file parsed before, in the server mode
+
 		StringBuilder item = new StringBuilder();
 		item.append( start ).append( "(" ).append("\\w+").append( ")" ).append( end );
 				
@@ -85,12 +88,13 @@ class Macros {
 		//***** careful - we manipulate and toggle between 2 different patterns and matchers
 		//*****
 		try {
-			patternMacroSubstitution = Pattern.compile( item.toString() );
-			patternMacroInput = Pattern.compile( "^\\s*(\\w+)\\s*=(.*)$" ); 
+			patternMacroSubstitution = PatternCache.compile( item.toString() );
+			matcherMacroSubstitution = patternMacroSubstitution.matcher( "" );
+			patternMacroInput = PatternCache.compile( "^\\s*(\\w+)\\s*=(.*)$" ); 
 			
 		} catch (final Exception e) {
 			System.err.println( "\nerror: macro failed to compile pattern.");
-			System.exit( 19 );
+			Validate.exit( 19 );
 		}
 		
 		if ( (file = Validate.macrosFile) != null ) {
@@ -123,12 +127,12 @@ class Macros {
 		
 		if ( (start.length() == 0) || (end.length() == 0) ) {
 			System.err.println( "\nfatal: macro start and end tags must be non-null " + suffix );
-			System.exit( 19 );
+			Validate.exit( 19 );
 		}
 		
 		if ( start.equals( end ) ) {
 			System.err.println( "\nfatal: macro start and end tags must be different " + suffix );
-			System.exit( 19 );
+			Validate.exit( 19 );
 		}
 		
 		/*
@@ -139,11 +143,12 @@ class Macros {
 		item.append( start ).append( "(" ).append("\\w+").append( ")" ).append( end );
 										
 		try {
-			patternMacroSubstitution = Pattern.compile( item.toString() );
+			patternMacroSubstitution = PatternCache.compile( item.toString() );
+			matcherMacroSubstitution = patternMacroSubstitution.matcher( "" ); // reset for each line of the REGEX block
 					
 		} catch (final Exception e) {
 			System.err.println( "\nerror: macro failed to compile pattern.");
-			System.exit( 19 );
+			Validate.exit( 19 );
 		}
 		
 		startTag = start; // set the private values for this class
@@ -159,35 +164,45 @@ class Macros {
 		/*
 		 * the line passed in can have various formats: Name=Value, delimited, etc
 		 * what ever it is we search for macro start and end tags and lookup the string in 
-		 * the middle and do substitution if found
+		 * the middle and do substitution if found; the tag pattern was compiled by setMacroFormat
 		 */
-		StringBuilder item = new StringBuilder();
-		item.append( startTag ).append( "(" ).append("\\w+").append( ")" ).append( endTag );
-				
-		try {
-			patternMacroSubstitution = Pattern.compile( item.toString() ); // for macros within macros	
-		} catch (final Exception e) {
-			System.err.println( "\nerror: macro failed to compile pattern.");
-			System.exit( 19 );
+		final String newLine = expand( line );
+
+		if ( newLine == null ) {
+			System.err.println( "\nerror: macro NAME <" + undefinedMacro + "> on line <" + lineNumber + "> was never defined.");
+			Validate.exit( 19 );
 		}
-			 				
-		matcherMacroSubstitution = patternMacroSubstitution.matcher( line );
 		
-		// found a start tag and an end tag so do all substitutions // NOTE perfect could have < < < name >
+		return newLine;
+	}
+
+	/*
+	 * expand - one pass left to right over text, each macro found is replaced by its value. A value
+	 * is stored already expanded when the macro is defined, so what is put in is not searched again.
+	 * Returns null, with the name in undefinedMacro, if a macro was never defined.
+	 */
+	private static String expand( String text ) {
+		final Matcher m = matcherMacroSubstitution.reset( text );
+
+		if ( ! m.find() ) {
+			return text; // most lines have no macros
+		}
+
+		final StringBuilder sb = new StringBuilder( text.length() + 64 );
+		int from = 0;
 		String value = null;
-						
-		while ( matcherMacroSubstitution.find() ) {
-			
-			if ( (value = macrosHM.get( matcherMacroSubstitution.group( 1 ))) != null ) {
-				line = line.replace( matcherMacroSubstitution.group( 0 ), value);
-			} else {
-				System.err.println( "\nerror: macro NAME <" + matcherMacroSubstitution.group( 1 ) + "> on line <" + lineNumber + "> was never defined.");
-				System.exit( 19 );
+
+		do {
+			if ( (value = macrosHM.get( m.group( 1 ) )) == null ) {
+				undefinedMacro = m.group( 1 );
+				return null;
 			}
-					
-		}
-		
-		return line;
+
+			sb.append( text, from, m.start() ).append( value );
+			from = m.end();
+		} while ( m.find() );
+
+		return sb.append( text, from, text.length() ).toString();
 	}
 	
 	/*
@@ -202,7 +217,7 @@ class Macros {
 	
 		if ( file == null ) {
 			System.err.println( "\nfatal: readMacroFile called with a null file name" );
-			System.exit( 100 );
+			Validate.exit( 100 );
 		}
 		
 		try {
@@ -217,7 +232,7 @@ class Macros {
 							
 				lineNumberIndex++;
 					                        								
-				if ( line.matches("^\\s*#.*$|^\\s*$")) {
+				if ( PatternCache.matches( "^\\s*#.*$|^\\s*$", line )) {
 					// comment or blank - skip it
 					continue;
 				}
@@ -290,22 +305,9 @@ class Macros {
 					// see if the RightHandSide (RHS) has macros to be expanded e.g. ADDR <CITY>,<STATE> <ZIP>
 					final String LHS = matcherMacroInput.group( 1 ); // name
 					
-					matcherMacroSubstitution = patternMacroSubstitution.matcher( RHS );		// reusing a previous matcherMacroInput!			
-					
-					while ( matcherMacroSubstitution.find() ) {
-						// loop since could be more than one
-						// make sure key is defined
-						String value;
-						
-						if ( (value = macrosHM.get( matcherMacroSubstitution.group( 1 )) ) != null ) {
-							RHS = RHS.replace( matcherMacroSubstitution.group( 0 ) , value );
-						} else {
-							System.err.println( "\nfatal: a macro definition included other macros which were not defined in <" + file + "> line <" + lineNumberIndex + ">.");
-							System.exit( 18 );
-						}
-						
-						matcherMacroSubstitution.reset( RHS );
-						
+					if ( (RHS = expand( RHS )) == null ) {
+						System.err.println( "\nfatal: a macro definition included other macros which were not defined in <" + file + "> line <" + lineNumberIndex + ">.");
+						Validate.exit( 18 );
 					}
 					
 					macrosHM.put( LHS, RHS );
@@ -323,20 +325,20 @@ class Macros {
 			}
 			
 			if ( bug ) {
-				System.exit( 17 );
+				Validate.exit( 17 );
 			}
 			
 			if ( macroCount == 0 ) {
 				System.err.println( "\nfatal: a macro file was given, but no macros were found in it");
-				System.exit( 18 );
+				Validate.exit( 18 );
 			//}
 			}
 		} catch (final FileNotFoundException e) {
 			System.err.println( "\nfatal: can't find macro file from -m switch <" + file + ">.");
-			System.exit( 18 );
+			Validate.exit( 18 );
 		} catch (final IOException e) {
 			System.err.println( "\nfatal: can't read macro file from -m switch <" + file + ">. " + e.getMessage());
-			System.exit( 18 );
+			Validate.exit( 18 );
 		} finally {
 			try {
 				if ( br != null ) {
@@ -344,7 +346,7 @@ class Macros {
 				}
 			} catch (final IOException e) {
 				System.err.println( "\nfatal: There was an error closing macros file, cleaning up resources." );
-				System.exit( 13 );
+				Validate.exit( 13 );
 			}
 		}
 		
@@ -364,14 +366,14 @@ class Macros {
 		 */
 		if ( line == null ) {
 			System.err.println( "\nfatal: a macro was declared on line <" + lineNumber + ">, but the macro value was null");
-			System.exit( 18 );
+			Validate.exit( 18 );
 		}
 				
 		matcherMacroInput = patternMacroInput.matcher( line );
 		
 		if  ( matcherMacroInput == null)  {
 			System.err.println("\nfatal: null matcherMacroInput in MACROS, line is <" + line + ">");
-			System.exit( 18 );
+			Validate.exit( 18 );
 		}
 				
 		if ( matcherMacroInput.find() ) {
@@ -383,7 +385,7 @@ class Macros {
 			if ( opt.getWarnMacroOverRide() ) {
 				// they want a warning so we need to pre-check
 				if ( (tmpMacroValue = macrosHM.get( matcherMacroInput.group( 1 )))  != null ) {
-					System.out.println( "\nwarning: macro <" + matcherMacroInput.group( 1 ) + "> value of <" + tmpMacroValue + "> is now over-written with <" + matcherMacroSubstitution.group( 2 ) + "> from line <" + lineNumber + ">." );
+					System.out.println( "\nwarning: macro <" + matcherMacroInput.group( 1 ) + "> value of <" + tmpMacroValue + "> is now over-written with <" + matcherMacroInput.group( 2 ) + "> from line <" + lineNumber + ">." );
 				}
 			}
 			
@@ -396,22 +398,9 @@ class Macros {
 			String RHS = matcherMacroInput.group( 2 );
 			final String LHS = matcherMacroInput.group( 1 );
 								
-			matcherMacroSubstitution = patternMacroSubstitution.matcher( RHS );		// reusing a previous matcherMacroInput!			
-			
-			while ( matcherMacroSubstitution.find() ) {
-				// loop since could be more than one
-				// make sure key is defined
-				String value;
-				
-				if ( (value = macrosHM.get( matcherMacroSubstitution.group( 1 )) ) != null  ) {
-					RHS = RHS.replace( matcherMacroSubstitution.group( 0 ) , value);
-				} else {
-					System.err.println( "\nfatal: a macro definition included other macros which were not defined in <" + file + "> line <" + lineNumber + ">.");
-					System.exit( 18 );
-				}
-				
-				matcherMacroSubstitution.reset( RHS );
-				
+			if ( (RHS = expand( RHS )) == null ) {
+				System.err.println( "\nfatal: a macro definition included other macros which were not defined in <" + file + "> line <" + lineNumber + ">.");
+				Validate.exit( 18 );
 			}
 			
 			macrosHM.put( LHS, RHS );
@@ -428,12 +417,12 @@ class Macros {
 		}
 			
 		if ( bug ) {
-			System.exit( 17 );
+			Validate.exit( 17 );
 		}
 		
 		if ( macroCount == 0 ) {
 			System.err.println( "\nfatal: a macro file was given, but no macros were found in it");
-			System.exit( 18 );
+			Validate.exit( 18 );
 		}
 		
 		return;
@@ -0,0 +1,179 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * MappedLineSource - reads lines out of a memory mapped file (fileReader=mapped).
+ * The file is mapped one window at a time so files over 2GB work. Bytes are copied from
+ * the window in blocks and a line is decoded with the given charset straight from the block,
+ * so there is no char buffer in between. Lines end at "\n", "\r\n" or "\r" just like
+ * BufferedReader.readLine().
+ * @author Bill Lanahan
+ *
+ */
+class MappedLineSource implements LineSource {
+
+	static final int WINDOW_SIZE = 64 * 1024 * 1024;
+	private static final int BLOCK_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+	private final boolean closes; // false when the channel is someone else's to close
+	private final Charset charset;
+	private final long end; // where this source stops, the file length or the end of a chunk
+	private MappedByteBuffer window = null;
+	private long nextWindow; // file offset of the window after this one
+	private byte[] block = new byte[ BLOCK_SIZE ];
+	private int pos = 0; // start of the next line in block
+	private int count = 0; // bytes in block
+
+	/*
+	 * only a charset that encodes '\r' and '\n' as those single bytes can be split into lines
+	 * (or chunks) without decoding it first
+	 */
+	static boolean canSplit( Charset charset ) {
+		return Arrays.equals( "\r\n".getBytes( charset ), new byte[] { '\r', '\n' } );
+	}
+
+	/*
+	 * reads the bytes from start up to end of the file
+	 */
+	MappedLineSource( File file, Charset charset, long start, long end ) throws IOException {
+		this( new RandomAccessFile( file, "r" ).getChannel(), true, charset, start, end );
+	}
+
+	/*
+	 * reads the bytes from start up to end of the file channel is open on, it is left open
+	 */
+	MappedLineSource( FileChannel channel, Charset charset, long start, long end ) {
+		this( channel, false, charset, start, end );
+	}
+
+	private MappedLineSource( FileChannel channel, boolean closes, Charset charset, long start, long end ) {
+		this.channel = channel;
+		this.closes = closes;
+		this.charset = charset;
+		this.end = end;
+		this.nextWindow = start;
+	}
+
+	public String readLine() throws IOException {
+		int i = pos;
+		byte b = 0;
+
+		while ( true ) {
+
+			while ( i < count ) {
+				b = block[ i ];
+				if ( b == '\n' || b == '\r' ) {
+					break;
+				}
+				i++;
+			}
+
+			if ( i < count ) {
+
+				// a "\r" on the last byte might be the first half of a "\r\n", so read more and look again
+				if ( b == '\r' && i + 1 == count ) {
+					final int scanned = i - pos;
+					if ( fill() ) {
+						i = pos + scanned;
+						continue;
+					}
+				}
+
+				final String line = new String( block, pos, i - pos, charset );
+				i++;
+				if ( b == '\r' && i < count && block[ i ] == '\n' ) {
+					i++;
+				}
+				pos = i;
+				return line;
+			}
+
+			// no terminator yet, the line goes on past the block
+			final int scanned = i - pos;
+			if ( ! fill() ) {
+				if ( pos == count ) {
+					return null; // no more lines
+				}
+
+				// last line has no terminator
+				final String line = new String( block, pos, count - pos, charset );
+				pos = count;
+				return line;
+			}
+			i = pos + scanned;
+		}
+	}
+
+	/*
+	 * move the unread part of the block to the front and add bytes from the window after it,
+	 * mapping the next window when this one is used up; false when there is nothing more to add
+	 */
+	private boolean fill() throws IOException {
+
+		if ( window == null || ! window.hasRemaining() ) {
+			if ( nextWindow >= end ) {
+				return false;
+			}
+			final long size = Math.min( WINDOW_SIZE, end - nextWindow );
+			window = channel.map( FileChannel.MapMode.READ_ONLY, nextWindow, size );
+			nextWindow += size;
+		}
+
+		final int unread = count - pos;
+
+		if ( unread == block.length ) {
+			// one line fills the whole block
+			block = Arrays.copyOf( block, block.length * 2 );
+		}
+
+		System.arraycopy( block, pos, block, 0, unread );
+		pos = 0;
+		count = unread;
+
+		final int n = Math.min( window.remaining(), block.length - count );
+		window.get( block, count, n );
+		count += n;
+		return true;
+	}
+
+	public void close() throws IOException {
+		window = null;
+
+		if ( closes ) {
+			channel.close(); // and the file it was opened from
+		}
+	}
+
+}
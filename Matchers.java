@@ -0,0 +1,57 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.util.IdentityHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matchers - one Matcher per Pattern, reset for each line instead of a new Matcher for each line.
+ * A Matcher is not thread safe, so a Matchers belongs to the worker validating one file (or one
+ * chunk of a file) through its FileContext, and is never shared.
+ * @author Bill Lanahan
+ *
+ */
+class Matchers {
+
+	private final IdentityHashMap<Pattern, Matcher> matchers = new IdentityHashMap<Pattern, Matcher>();
+
+	/*
+	 * the Matcher of pattern, reset to input; it stays valid until pattern is reset again
+	 */
+	Matcher reset( Pattern pattern, CharSequence input ) {
+		Matcher m = matchers.get( pattern );
+
+		if ( m == null ) {
+			m = pattern.matcher( input );
+			matchers.put( pattern, m );
+			return m;
+		}
+
+		return m.reset( input );
+	}
+
+}
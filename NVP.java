@@ -38,7 +38,7 @@ class NVP {
 	private String value = null;
 	private short lineNumber = 0;
 	private Pattern valuePattern = null;
-	private Matcher m = null;
+	private int ordinal = 0; // position in the rule's nvpHM, set before the files are read
 	
 	
 	NVP (String name, String value, short lineNumber) {
@@ -53,7 +53,7 @@ class NVP {
 	boolean compilePattern() {
 		// take the value (which is the regex from the conf file) and compile and save it
 		try {
-			valuePattern = Pattern.compile( value ); 
+			valuePattern = PatternCache.compile( value ); 
 			return true;
 		} catch ( final PatternSyntaxException pse ) {
 			System.err.println( "\nerror: NAME <" + name 
@@ -70,13 +70,22 @@ class NVP {
 	String getValue() {
 		return this.value;
 	}
+
+	int getOrdinal() {
+		return this.ordinal;
+	}
+
+	void setOrdinal( int ordinal ) {
+		this.ordinal = ordinal;
+	}
 	
 		
 	// test the regex stored in this object against the valve from name=value read
 	// in from the property file or config file
-	boolean validateValueWithRegex( String valueToTest ) {
+	// the matcher comes from the caller's Matchers so one NVP can be used by files validated at the same time
+	boolean validateValueWithRegex( Matchers matchers, String valueToTest ) {
 			
-		m = valuePattern.matcher( valueToTest );
+		final Matcher m = matchers.reset( valuePattern, valueToTest );
 		
 		if ( m.find() ) {
 			return true;
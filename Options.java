@@ -24,7 +24,11 @@
 
 package validate;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.regex.PatternSyntaxException;
@@ -39,9 +43,9 @@ import java.util.regex.PatternSyntaxException;
 
 class Options implements Cloneable {
 
-	private final Pattern truePattern = Pattern.compile( "^(?:\"?)(TRUE|T|YES|Y|1|ON)(?:\"?)$", Pattern.CASE_INSENSITIVE );
-	private final Pattern falsePattern = Pattern.compile( "^(?:\"?)(FALSE|F|NO|N|0|OFF)(?:\"?)$", Pattern.CASE_INSENSITIVE );
-	private final Pattern optionsWithNullValueAllowed = Pattern.compile( "lineSkipRegex|linePrefixRegex|Regex|lineCheckRegex|dir(ectory)?PathString", Pattern.CASE_INSENSITIVE );
+	private static final Pattern truePattern = PatternCache.compile( "^(?:\"?)(TRUE|T|YES|Y|1|ON)(?:\"?)$", Pattern.CASE_INSENSITIVE );
+	private static final Pattern falsePattern = PatternCache.compile( "^(?:\"?)(FALSE|F|NO|N|0|OFF)(?:\"?)$", Pattern.CASE_INSENSITIVE );
+	private static final Pattern optionsWithNullValueAllowed = PatternCache.compile( "lineSkipRegex|linePrefixRegex|Regex|lineCheckRegex|dir(ectory)?PathString", Pattern.CASE_INSENSITIVE );
 	private Matcher m = null;
 	
 	private boolean errorFieldUnderline;
@@ -70,6 +74,12 @@ class Options implements Cloneable {
 	private String lineSuffixRegex;
 	private String lineReplaceRegex;
 	private String lineReplaceDelimiterRegex;
+	private Charset fileCharset;
+	private String fileReader;
+	private boolean streamReport;
+	private int maxErrorsPerFile;
+	private int maxErrorsPerRule;
+	private int maxErrors;
 	
 	private boolean warnDuplicates;
 	private boolean warnExtraFields;
@@ -116,12 +126,115 @@ class Options implements Cloneable {
 		lineSuffixRegex = null;
 		lineReplaceDelimiterRegex = "/";
 		lineReplaceRegex = null;
+		fileCharset = Charset.defaultCharset();
+		fileReader = "mapped";
+		streamReport = false;
+		maxErrorsPerFile = 0; // 0 is no limit
+		maxErrorsPerRule = 0;
+		maxErrors = 0;
 	}
 
 	@Override
 	public Object clone() throws CloneNotSupportedException {
 		return super.clone();
 	}
+
+	/*
+	 * a Snapshot stores the options of each RULE block, field by field; change Snapshot.MAGIC when
+	 * a field is added, removed or retyped
+	 */
+	void writeTo( DataOutputStream out ) throws IOException {
+		out.writeBoolean( errorFieldUnderline );
+		out.writeBoolean( validLineUnderline );
+		out.writeBoolean( useMacros );
+		out.writeBoolean( useLineRangeRestrictions );
+		Snapshot.writeString( out, regexCommentRegex );
+		out.writeBoolean( regexLineContinuation );
+		out.writeBoolean( fileLineContinuation );
+		Snapshot.writeString( out, delimiterRegex );
+		Snapshot.writeString( out, macroStartString );
+		Snapshot.writeString( out, macroEndString );
+		Snapshot.writeString( out, regexEndBlockRegex );
+		Snapshot.writeString( out, dirPathString );
+		out.writeBoolean( showValidData );
+		out.writeBoolean( showToolTitle );
+		Snapshot.writeString( out, EOLdelimiter );
+		out.writeShort( extraFieldCount );
+		out.writeChar( errorReportDetails );
+		out.writeChar( errorReportSummary );
+		Snapshot.writeString( out, lineSkipRegex );
+		Snapshot.writeString( out, lineCheckRegex );
+		out.writeBoolean( lineShow );
+		Snapshot.writeString( out, linePrefixRegex );
+		Snapshot.writeString( out, lineSuffixRegex );
+		Snapshot.writeString( out, lineReplaceRegex );
+		Snapshot.writeString( out, lineReplaceDelimiterRegex );
+		Snapshot.writeString( out, fileCharset.name() );
+		Snapshot.writeString( out, fileReader );
+		out.writeBoolean( streamReport );
+		out.writeInt( maxErrorsPerFile );
+		out.writeInt( maxErrorsPerRule );
+		out.writeInt( maxErrors );
+		out.writeBoolean( warnDuplicates );
+		out.writeBoolean( warnExtraFields );
+		out.writeBoolean( warnUncheckedName );
+		out.writeBoolean( warnRegexUnused );
+		out.writeBoolean( warnInvalidOption );
+		out.writeBoolean( warnRuleWithoutFile );
+		out.writeBoolean( warnMacroOverRide );
+	}
+
+	/*
+	 * the options as writeTo wrote them; only values are read, no class named in the file is loaded
+	 */
+	static Options readFrom( DataInputStream in ) throws IOException {
+		final Options o = new Options();
+		o.errorFieldUnderline = in.readBoolean();
+		o.validLineUnderline = in.readBoolean();
+		o.useMacros = in.readBoolean();
+		o.useLineRangeRestrictions = in.readBoolean();
+		o.regexCommentRegex = Snapshot.readString( in );
+		o.regexLineContinuation = in.readBoolean();
+		o.fileLineContinuation = in.readBoolean();
+		o.delimiterRegex = Snapshot.readString( in );
+		o.macroStartString = Snapshot.readString( in );
+		o.macroEndString = Snapshot.readString( in );
+		o.regexEndBlockRegex = Snapshot.readString( in );
+		o.dirPathString = Snapshot.readString( in );
+		o.showValidData = in.readBoolean();
+		o.showToolTitle = in.readBoolean();
+		o.EOLdelimiter = Snapshot.readString( in );
+		o.extraFieldCount = in.readShort();
+		o.errorReportDetails = in.readChar();
+		o.errorReportSummary = in.readChar();
+		o.lineSkipRegex = Snapshot.readString( in );
+		o.lineCheckRegex = Snapshot.readString( in );
+		o.lineShow = in.readBoolean();
+		o.linePrefixRegex = Snapshot.readString( in );
+		o.lineSuffixRegex = Snapshot.readString( in );
+		o.lineReplaceRegex = Snapshot.readString( in );
+		o.lineReplaceDelimiterRegex = Snapshot.readString( in );
+
+		try {
+			o.fileCharset = Charset.forName( Snapshot.readString( in ) );
+		} catch ( final IllegalArgumentException e ) {
+			throw new IOException( "not a charset, " + e.getMessage() );
+		}
+
+		o.fileReader = Snapshot.readString( in );
+		o.streamReport = in.readBoolean();
+		o.maxErrorsPerFile = in.readInt();
+		o.maxErrorsPerRule = in.readInt();
+		o.maxErrors = in.readInt();
+		o.warnDuplicates = in.readBoolean();
+		o.warnExtraFields = in.readBoolean();
+		o.warnUncheckedName = in.readBoolean();
+		o.warnRegexUnused = in.readBoolean();
+		o.warnInvalidOption = in.readBoolean();
+		o.warnRuleWithoutFile = in.readBoolean();
+		o.warnMacroOverRide = in.readBoolean();
+		return o;
+	}
 	
 	/* following are setters and getters of the options. They can override default or in the case of
 	 * a rules block modify that value for just the block of code.
@@ -393,6 +506,54 @@ class Options implements Cloneable {
 		return this.extraFieldCount;
 	}
 	
+	public Charset getFileCharset() {
+		return this.fileCharset;
+	}
+
+	public void setFileCharset( Charset fileCharset ) {
+		this.fileCharset = fileCharset;
+	}
+
+	public String getFileReader() {
+		return this.fileReader;
+	}
+
+	public void setFileReader( String fileReader ) {
+		this.fileReader = fileReader;
+	}
+
+	public boolean getStreamReport() {
+		return this.streamReport;
+	}
+
+	public void setStreamReport( boolean streamReport ) {
+		this.streamReport = streamReport;
+	}
+
+	public int getMaxErrorsPerFile() {
+		return this.maxErrorsPerFile;
+	}
+
+	public void setMaxErrorsPerFile( int maxErrorsPerFile ) {
+		this.maxErrorsPerFile = maxErrorsPerFile;
+	}
+
+	public int getMaxErrorsPerRule() {
+		return this.maxErrorsPerRule;
+	}
+
+	public void setMaxErrorsPerRule( int maxErrorsPerRule ) {
+		this.maxErrorsPerRule = maxErrorsPerRule;
+	}
+
+	public int getMaxErrors() {
+		return this.maxErrors;
+	}
+
+	public void setMaxErrors( int maxErrors ) {
+		this.maxErrors = maxErrors;
+	}
+
 	public static boolean getMacroContinuation() {
 		return Options.macroContinuation;
 	}
@@ -416,13 +577,13 @@ class Options implements Cloneable {
 					
 		if ( m.find() && value == null ) {
 			System.err.println( "\nwarning: option <" + name + "> cannot have a null value, on line <" + lineNumber + ">.");
-							System.exit( 55 );
+							Validate.exit( 55 );
 		}
 		 		
 		//
 		// warnInvalidOption
 		//
-		if ( name.matches( "(?i)warn(ing)?InvalidOption" ) ) { 
+		if ( PatternCache.matches( "(?i)warn(ing)?InvalidOption", name ) ) { 
 			value = deQuote( value );
 
 			m = truePattern.matcher ( value );
@@ -445,7 +606,7 @@ class Options implements Cloneable {
 			
 
 
-		} else 	if ( name.matches( "(?i)warn(ing)?RegexUnused" ) ) { 
+		} else 	if ( PatternCache.matches( "(?i)warn(ing)?RegexUnused", name ) ) { 
 			//
 			// warnRegexUnused
 			//
@@ -470,7 +631,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 				
-		} else 	if ( name.matches( "(?i)warn(ing)?RuleWithoutFile" ) ) { 
+		} else 	if ( PatternCache.matches( "(?i)warn(ing)?RuleWithoutFile", name ) ) { 
 			//
 			// warnRuleWithoutFile
 			//
@@ -495,7 +656,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 			
-		} else 	if ( name.matches( "(?i)lineShow" ) ) { 
+		} else 	if ( PatternCache.matches( "(?i)lineShow", name ) ) { 
 			//
 			// lineShow
 			//
@@ -520,7 +681,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)warn(ing)?Duplicates" ) ) { 
+		} else if ( PatternCache.matches( "(?i)warn(ing)?Duplicates", name ) ) { 
 			//
 			// warnDuplicateName
 			//
@@ -545,7 +706,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)useLineRangeRestrictions?" ) ) { 
+		} else if ( PatternCache.matches( "(?i)useLineRangeRestrictions?", name ) ) { 
 			//
 			// useLineRangeRestrictions
 			//
@@ -569,7 +730,7 @@ class Options implements Cloneable {
 				System.out.println( "\nwarning: OPTION <useLineRangeRestrictions> has an invalid VALUE <" + value + "> on line <" + lineNumber + ">." );
 				return lineNumber;
 			}	
-		} else if ( name.matches( "(?i)warn(ing)?ExtraFields" ) ) { 
+		} else if ( PatternCache.matches( "(?i)warn(ing)?ExtraFields", name ) ) { 
 			//
 			// warnExtraFields
 			//
@@ -595,7 +756,7 @@ class Options implements Cloneable {
 			}	
 			
 		
-		} else if ( name.matches( "(?i)warn(ing)?UncheckedName" ) ) { 
+		} else if ( PatternCache.matches( "(?i)warn(ing)?UncheckedName", name ) ) { 
 			//
 			// warnUncheckedName
 			//
@@ -620,7 +781,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 		
-		} else if ( name.matches( "(?i)errorFieldUnderline" ) ) {
+		} else if ( PatternCache.matches( "(?i)errorFieldUnderline", name ) ) {
 			//
 			// errorFieldUnderline
 			//
@@ -645,7 +806,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)validLineUnderline" ) ) {
+		} else if ( PatternCache.matches( "(?i)validLineUnderline", name ) ) {
 			//
 			// validLineUnderline
 			//
@@ -670,7 +831,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)useMacros?" ) ) {
+		} else if ( PatternCache.matches( "(?i)useMacros?", name ) ) {
 			//
 			// useMacros
 			//
@@ -695,7 +856,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)warn(ing)?MacroOverRide" ) ) {
+		} else if ( PatternCache.matches( "(?i)warn(ing)?MacroOverRide", name ) ) {
 			//
 			// warnMacroOverRide
 			//
@@ -720,7 +881,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)macroStartString" ) ) {
+		} else if ( PatternCache.matches( "(?i)macroStartString", name ) ) {
 			//
 			// macroStartString
 			//
@@ -729,7 +890,7 @@ class Options implements Cloneable {
 			this.macroStartString = value;
 			return lineNumber;
 						
-		} else if ( name.matches( "(?i)macroEndString" ) ) {
+		} else if ( PatternCache.matches( "(?i)macroEndString", name ) ) {
 			//
 			// macroEndString
 			//
@@ -739,13 +900,13 @@ class Options implements Cloneable {
 				if ( this.warnInvalidOption ) {
 					System.out.println( "\nwarning: OPTION <macroEndString> cannot be null, on line <" + lineNumber + ">." );
 				}
-				System.exit( 11 );
+				Validate.exit( 11 );
 			} else {
 				this.macroEndString = value;
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)EOLdelimiter" ) ) {
+		} else if ( PatternCache.matches( "(?i)EOLdelimiter", name ) ) {
 			//
 			// EOLdelimiter
 			//
@@ -765,7 +926,7 @@ class Options implements Cloneable {
 			
 			m = null;
 			
-			if ( value.matches( "(?i)optional" )  ) {
+			if ( PatternCache.matches( "(?i)optional", value )  ) {
 				setEOLdelimiter( "optional" );
 				return lineNumber;
 			} else { 
@@ -773,7 +934,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)extraFieldCount" ) ) {
+		} else if ( PatternCache.matches( "(?i)extraFieldCount", name ) ) {
 			//
 			// extraFieldCount
 			//
@@ -783,10 +944,10 @@ class Options implements Cloneable {
 				setExtraFieldCount( Short.parseShort( value ) );
 			} catch( NumberFormatException e ) {
 				System.out.println( "\nerror: OPTION <extraFieldCount> value on line <" + lineNumber + "> must be -1, 0, 1..." );
-				System.exit(99);
+				Validate.exit(99);
 			}
 						
-		} else if ( name.matches( "(?i)regexLineContinuation" ) ) {
+		} else if ( PatternCache.matches( "(?i)regexLineContinuation", name ) ) {
 			//
 			// regexLineContinuation
 			//
@@ -811,7 +972,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)macroContinuation" ) ) {
+		} else if ( PatternCache.matches( "(?i)macroContinuation", name ) ) {
 			//
 			// macroContinuation
 			//
@@ -836,7 +997,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)fileLineContinuation" ) ) {
+		} else if ( PatternCache.matches( "(?i)fileLineContinuation", name ) ) {
 			//
 			// fileLineContinuation
 			//
@@ -861,7 +1022,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)regexCommentRegex" ) ) {
+		} else if ( PatternCache.matches( "(?i)regexCommentRegex", name ) ) {
 			
 			//
 			// regexCommentRegexRegex
@@ -870,7 +1031,7 @@ class Options implements Cloneable {
 			this.regexCommentRegex = value;
 			return lineNumber;
 			
-		} else if ( name.matches( "(?i)regexEndBlockRegex" ) ) {
+		} else if ( PatternCache.matches( "(?i)regexEndBlockRegex", name ) ) {
 			//
 			// regexEndBlockRegex
 			//
@@ -878,13 +1039,13 @@ class Options implements Cloneable {
 				if ( this.warnInvalidOption ) {
 					System.err.println( "\nfatal: OPTION <" + name + "> cannot be null, on line <" + lineNumber + ">." );
 				}
-				System.exit( 11 );
+				Validate.exit( 11 );
 			} else {
 				this.regexEndBlockRegex = value;
 				return lineNumber;
 			}
 			
-		} else if ( name.matches( "(?i)dir(ectory)?PathString" ) ) {
+		} else if ( PatternCache.matches( "(?i)dir(ectory)?PathString", name ) ) {
 			//
 			// dirPathString
 			//
@@ -904,7 +1065,7 @@ class Options implements Cloneable {
 					return lineNumber;
 				} else {
 					System.err.println( "\nfatal: invalid directory specified by dirPathString <" + value + "> on line <" + lineNumber + ">.");
-					System.exit( 11 );	
+					Validate.exit( 11 );	
 				}
 			} else {
 				this.dirPathString = value;
@@ -913,7 +1074,7 @@ class Options implements Cloneable {
 			
 			dirPathObj = null; // no longer needed
 			
-		} else if ( name.matches( "(?i)errorReportDetails?" ) ) {
+		} else if ( PatternCache.matches( "(?i)errorReportDetails?", name ) ) {
 			//
 			// errorReportDetails
 			//
@@ -921,21 +1082,21 @@ class Options implements Cloneable {
 			
 			value = value.toLowerCase();
 			
-			if ( value.matches( "(?i)l\\w*" ) ) {
+			if ( PatternCache.matches( "(?i)l\\w*", value ) ) {
 				this.errorReportDetails = 'l';
 				return lineNumber;
-			} else if ( value.matches( "(?i)n\\w*" ) ) {
+			} else if ( PatternCache.matches( "(?i)n\\w*", value ) ) {
 				this.errorReportDetails = 'n';
 				return lineNumber;
-			} else if ( value.matches( "(?i)a\\w*" ) ) {
+			} else if ( PatternCache.matches( "(?i)a\\w*", value ) ) {
 				this.errorReportDetails = 'a';
 				return lineNumber;
 			} else {
 				System.err.println( "\nfatal: invalid VALUE <" + value + "> for <errorReportDetails> on line <" + lineNumber + ">.");
-				System.exit( 44 );
+				Validate.exit( 44 );
 			}
 			
-		} else if ( name.matches( "(?i)errorReportSummary" ) ) {
+		} else if ( PatternCache.matches( "(?i)errorReportSummary", name ) ) {
 			//
 			// errorReportSummary
 			//
@@ -943,18 +1104,18 @@ class Options implements Cloneable {
 			
 			value = value.toLowerCase();
 			
-			if ( value.matches( "(?i)a\\w*|(?i)y\\w*" ) ) {
+			if ( PatternCache.matches( "(?i)a\\w*|(?i)y\\w*", value ) ) {
 				this.errorReportSummary = 'a';
 				return lineNumber;
-			} else if ( value.matches( "(?i)f\\w*" ) ) {
+			} else if ( PatternCache.matches( "(?i)f\\w*", value ) ) {
 				this.errorReportSummary = 'f';
 				return lineNumber;
 			} else {
 				System.err.println( "\nfatal: invalid VALUE " + value + "> for <errorReportSummary> on line <" + lineNumber + ">.");
-				System.exit( 44 );
+				Validate.exit( 44 );
 			}
 			
-		} else if ( name.matches( "(?i)lineSkipRegex" ) ) {
+		} else if ( PatternCache.matches( "(?i)lineSkipRegex", name ) ) {
 			//
 			// lineSkipRegex
 			//
@@ -965,10 +1126,10 @@ class Options implements Cloneable {
 				if ( this.warnInvalidOption ) {
 					System.err.println( "\nfatal: VALUE <lineSkipRegex> can't be null on line <" + lineNumber + ">.");
 				}
-				System.exit( 11 );
+				Validate.exit( 11 );
 			}
 			
-		} else if ( name.matches( "(?i)lineCheckRegex" ) ) {
+		} else if ( PatternCache.matches( "(?i)lineCheckRegex", name ) ) {
 			//
 			// lineCheckRegex
 			//
@@ -976,17 +1137,17 @@ class Options implements Cloneable {
 				lineCheckRegex = value;
 				
 				try {
-					Pattern.compile( lineCheckRegex );
+					PatternCache.compile( lineCheckRegex );
 				} catch (final PatternSyntaxException e) {
 					System.err.println("\nerror: option <lineCheckRegex>, on line <" + lineNumber + "> did not compile. "
 									+ e.getMessage());
-					System.exit(15);
+					Validate.exit(15);
 				}
 			}
 				
 			return lineNumber;
 			
-		} else if ( name.matches( "(?i)linePrefixRegex" ) ) {
+		} else if ( PatternCache.matches( "(?i)linePrefixRegex", name ) ) {
 			//
 			// linePrefixRegex
 			//
@@ -994,38 +1155,30 @@ class Options implements Cloneable {
 				linePrefixRegex = value;
 				
 				try {
-					Pattern.compile( linePrefixRegex );
+					PatternCache.compile( linePrefixRegex );
 				} catch (final PatternSyntaxException e) {
 					System.err.println("\nerror: option <linePrefixRegex>, on line <" + lineNumber + "> did not compile. "
 									+ e.getMessage());
-					System.exit(15);
+					Validate.exit(15);
 				}
 			}
 				
 			return lineNumber;
 			
-		} else if ( name.matches( "(?i)lineReplaceRegex" ) ) {
+		} else if ( PatternCache.matches( "(?i)lineReplaceRegex", name ) ) {
 			//
 			// lineReplaceRegex
 			//
 			if ( value == null ) {
 				System.err.println("\nerror: option <lineReplaceRegex>, on line <" + lineNumber + "> cannot be null. ");
-				System.exit(15);
+				Validate.exit(15);
 			}
 			
-			lineReplaceRegex = value;
-				
-			try {
-				Pattern.compile( linePrefixRegex );
-			} catch (final PatternSyntaxException e) {
-				System.err.println("\nerror: option <linePrefixRegex>, on line <" + lineNumber + "> did not compile. "
-								+ e.getMessage());
-				System.exit(15);
-			}
+			lineReplaceRegex = value; // compiled by checkLineReplaceRegex(), once its delimiter is known
 			
 			return lineNumber;
 			
-		} else if ( name.matches( "(?i)lineReplaceDelimiterRegex" ) ) {
+		} else if ( PatternCache.matches( "(?i)lineReplaceDelimiterRegex", name ) ) {
 			//
 			// lineReplaceDelimiterRegex
 			//
@@ -1033,16 +1186,16 @@ class Options implements Cloneable {
 			lineReplaceDelimiterRegex = value;
 
 			try {
-				Pattern.compile( linePrefixRegex );
+				PatternCache.compile( lineReplaceDelimiterRegex );
 			} catch (final PatternSyntaxException e) {
-				System.err.println("\nerror: option <linePrefixRegex>, on line <" + lineNumber + "> did not compile. "
+				System.err.println("\nerror: option <lineReplaceDelimiterRegex>, on line <" + lineNumber + "> did not compile. "
 						+ e.getMessage());
-				System.exit(15);
+				Validate.exit(15);
 			}
 
 			return lineNumber;
 			
-		} else if ( name.matches( "(?i)lineSuffixRegex" ) ) {
+		} else if ( PatternCache.matches( "(?i)lineSuffixRegex", name ) ) {
 			//
 			// lineSuffixRegex
 			//
@@ -1051,33 +1204,118 @@ class Options implements Cloneable {
 				lineSuffixRegex = value;
 				
 				try {
-					Pattern.compile( lineSuffixRegex );
+					PatternCache.compile( lineSuffixRegex );
 				} catch (final PatternSyntaxException e) {
 					System.err.println("\nerror: option <lineSuffixRegex>, on line <" + lineNumber + "> did not compile. "
 									+ e.getMessage());
-					System.exit(15);
+					Validate.exit(15);
 				}
 			}
 				
 			return lineNumber;
 			
-		} else if ( name.matches( "(?i)delimiterRegex" ) ) {
+		} else if ( PatternCache.matches( "(?i)delimiterRegex", name ) ) {
 			//
 			// delimiterRegex
 			//
 			
 			try {
-				Pattern.compile( value );
+				PatternCache.compile( value );
 			} catch ( final PatternSyntaxException pse ) {
 				System.err.println( "\nfatal: VALUE for delimiterRegex on line <" + lineNumber + "> did not compile.");
-				System.exit( 11 );
+				Validate.exit( 11 );
 			}
 
 			delimiterRegex = value;
 			
 			return lineNumber;
 			
-		} else if ( name.matches( "(?i)showValidData" ) ) {
+		} else if ( PatternCache.matches( "(?i)fileCharset", name ) ) {
+			//
+			// fileCharset
+			//
+			value = deQuote( value );
+
+			try {
+				setFileCharset( Charset.forName( value ) );
+			} catch ( final IllegalArgumentException iae ) {
+				// covers both an illegal and an unsupported charset name
+				System.err.println( "\nfatal: VALUE for fileCharset <" + value + "> on line <" + lineNumber + "> is not a supported charset.");
+				Validate.exit( 11 );
+			}
+
+			return lineNumber;
+
+		} else if ( PatternCache.matches( "(?i)fileReader", name ) ) {
+			//
+			// fileReader
+			//
+			value = deQuote( value );
+
+			if ( PatternCache.matches( "(?i)mapped", value ) ) {
+				setFileReader( "mapped" );
+			} else if ( PatternCache.matches( "(?i)buffered", value ) ) {
+				setFileReader( "buffered" );
+			} else if ( this.warnInvalidOption ) {
+				System.out.println( "\nwarning: OPTION <" + name + "> has an invalid VALUE <" + value + "> on line <" + lineNumber + ">." );
+			}
+
+			return lineNumber;
+
+		} else if ( PatternCache.matches( "(?i)maxErrors(PerFile|PerRule)?", name ) ) {
+			//
+			// maxErrorsPerFile, maxErrorsPerRule and maxErrors (the whole run, -e switch)
+			//
+			value = deQuote( value );
+			int max = -1;
+
+			try {
+				max = Integer.parseInt( value );
+			} catch( NumberFormatException e ) {
+				// reported below
+			}
+
+			if ( max < 0 ) {
+				System.out.println( "\nerror: OPTION <" + name + "> value on line <" + lineNumber + "> must be 0 (no limit), 1, 2..." );
+				Validate.exit(99);
+			}
+
+			if ( PatternCache.matches( "(?i)maxErrorsPerFile", name ) ) {
+				setMaxErrorsPerFile( max );
+			} else if ( PatternCache.matches( "(?i)maxErrorsPerRule", name ) ) {
+				setMaxErrorsPerRule( max );
+			} else {
+				setMaxErrors( max );
+			}
+
+			return lineNumber;
+
+		} else if ( PatternCache.matches( "(?i)streamReport", name ) ) {
+			//
+			// streamReport
+			//
+			value = deQuote( value );
+
+			m = truePattern.matcher ( value );
+			if ( m.find() ) {
+				setStreamReport( true );
+				return lineNumber;
+			}
+
+			m = falsePattern.matcher ( value );
+			if ( m.find() ) {
+				setStreamReport( false );
+				return lineNumber;
+			}
+
+			m = null;
+			if ( this.warnInvalidOption ) {
+				System.out.println( "\nwarning: OPTION <streamReport> has an invalid VALUE <" + value + "> on line <" + lineNumber + ">." );
+			}
+
+			return lineNumber;
+
+		} else if ( PatternCache.matches( "(?i)showValidData", name ) ) {
 			//
 			// showValidData
 			//
@@ -1102,7 +1340,7 @@ class Options implements Cloneable {
 				return lineNumber;
 			}	
 			
-		} else if ( name.matches( "(?i)showToolTitle" ) ) {
+		} else if ( PatternCache.matches( "(?i)showToolTitle", name ) ) {
 			//
 			// showToolTitle
 			//
@@ -1138,6 +1376,24 @@ class Options implements Cloneable {
 	} // end of optNameValue()
 	
 	
+	// the search part of lineReplaceRegex, before its lineReplaceDelimiterRegex, is the regex the RULE compiles;
+	// checked when the RULE block's options are done, as either option can be given first
+	void checkLineReplaceRegex( short lineNumber ) {
+
+		if ( lineReplaceRegex == null || lineReplaceDelimiterRegex == null ) {
+			return;
+		}
+
+		try {
+			PatternCache.compile( PatternCache.split( lineReplaceDelimiterRegex, lineReplaceRegex, 2 )[0] );
+		} catch (final PatternSyntaxException e) {
+			System.err.println("\nerror: option <lineReplaceRegex>, of the RULE block that ends on line <" + lineNumber + "> did not compile. "
+					+ e.getMessage());
+			Validate.exit(15);
+		}
+	}
+
+	
 	// strip off quotes is they start and end the string
 	static String deQuote( String value ) {
 		
@@ -64,8 +64,8 @@ class ParseConfig {
 	private BufferedReader br;
 
 	// we do the  patterns here so they can be reused without recompiling
-	private final Pattern blankAndCommentPattern = Pattern.compile( "^\\s*#|^\\s*$" );
-	private final Pattern optionPattern = Pattern.compile( "^\\s*(\\w+)(?:\\s*=\\s*)(.*)$" );
+	private final Pattern blankAndCommentPattern = PatternCache.compile( "^\\s*#|^\\s*$" );
+	private final Pattern optionPattern = PatternCache.compile( "^\\s*(\\w+)(?:\\s*=\\s*)(.*)$" );
 	private Pattern lineNumberPrefixPattern;
 	 
 	private Matcher m = null;
@@ -79,18 +79,20 @@ class ParseConfig {
 
 	//*********************************************************************************************************
 	// we'll instantiate Options even if no option block as other blocks may
-	// use the default data
-	static Options opt = new Options();  
+	// use the default data, made again for each config file parsed (the server parses many)
+	static Options opt = null;
 	// build Macro object for built-in and may be more
-	static Macros macros = new Macros( Validate.macrosFile, opt.getMacroStartString(), opt.getMacroEndString() );
+	static Macros macros = null;
 	//***********************************************************************************************************	
 	
 	ParseConfig() {
 		System.out.println( "\nfatal: programming error ParseConfigFile needs a non-default constructor." );
-		System.exit( 12 );
+		Validate.exit( 12 );
 	}
 
 	ParseConfig( String configFileName ) {
+		opt = new Options();
+		macros = new Macros( Validate.macrosFile, opt.getMacroStartString(), opt.getMacroEndString() );
 		setFileName( configFileName );
 	}
 	
@@ -100,10 +102,10 @@ class ParseConfig {
 	void parse() {
 
 		try {
-			lineNumberPrefixPattern = Pattern.compile( "^\\s*%(\\d+)%(\\d+)%(.*)$" );
+			lineNumberPrefixPattern = PatternCache.compile( "^\\s*%(\\d+)%(\\d+)%(.*)$" );
 		} catch ( PatternSyntaxException e ) {
 			System.err.println( "\nerror: failed to compile lineNumberPrefixPattern, programming error \n" );
-			System.exit(55);
+			Validate.exit(55);
 		}
 		
 		try {
@@ -122,7 +124,7 @@ class ParseConfig {
 				}
 
 				// need to swallow lines UNLESS we see a line that starts with "startBlock" (%%)
-				if ( ! line.matches( "^\\s*" + Validate.blkStart + "\\s*\\w+.*$" ) ) {
+				if ( ! PatternCache.matches( "^\\s*" + Validate.blkStart + "\\s*\\w+.*$", line ) ) {
 					// swallow lines NOT within blocks
 					continue;
 				} else {
@@ -130,41 +132,41 @@ class ParseConfig {
 					m = Validate.blkEndPattern.matcher( line );
 					if ( m.find() ) {
 						System.out.println( "\nfatal: blkEnd was found on line <" + lineNumber + "> before any block was begun." );
-						System.exit( 12 );
+						Validate.exit( 12 );
 					}
 				}
 
 				// ok now we need to see which block we are in
-				line = line.trim().replaceFirst("^\\s*" + Validate.blkStart + "\\s*", "");
-				tokens = line.split(  "\\s+" );
+				line = PatternCache.compile( "^\\s*" + Validate.blkStart + "\\s*" ).matcher( line.trim() ).replaceFirst( "" );
+				tokens = PatternCache.split( "\\s+", line, 0 );
 								
 				// we know 0 is the blkStart string
-				if ( (tokens.length > 0) && tokens[0].toUpperCase().matches("OPTIONS?")) {
+				if ( (tokens.length > 0) && PatternCache.matches( "OPTIONS?", tokens[0].toUpperCase() )) {
 					if ( haveOptionBlock != 0 ) {
 						System.out.println( "\nfatal: a second OPTION block was found on line <" + lineNumber + ">." );
-						System.exit( 12 );
+						Validate.exit( 12 );
 					}
 
 					if ( (haveMacroBlock > 0) || (haveRuleBlock > 0) ) {
 						System.out.println( "\nfatal: the OPTION block on line <" + lineNumber + "> must preceed the MACRO and RULE blocks." );
-						System.exit( 12 );
+						Validate.exit( 12 );
 					}
 
 					doParseOPTIONS();
-				} else if ( (tokens.length == 1) && tokens[0].toUpperCase().matches("MACROS?") ) {
+				} else if ( (tokens.length == 1) && PatternCache.matches( "MACROS?", tokens[0].toUpperCase() ) ) {
 					doParseMACROS();
-				} else if ( (tokens.length == 2) && tokens[0].toUpperCase().matches("RULES?") ) {
+				} else if ( (tokens.length == 2) && PatternCache.matches( "RULES?", tokens[0].toUpperCase() ) ) {
 					doParseRULES( tokens[1] );
 				} else {
 					System.err.println( "\nfatal: invalid format on line <" + lineNumber + "> of config file <" + fileName + ">. line=" +line);
-					System.exit( 12 );
+					Validate.exit( 12 );
 				}
 
 			}
 			
 		} catch (final IOException e) {
 			System.err.println( "\nfatal: can't read config file <" + fileName + ">." );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		} finally {
 			br = null;
 			inputFile = null;
@@ -225,7 +227,7 @@ class ParseConfig {
 			}
 		} catch ( final IOException e ) {
 			System.err.println( "\nfatal: problem reading config file <" + fileName + "> " + e.getMessage() );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		}
 
 	}
@@ -239,27 +241,27 @@ class ParseConfig {
 		// we have some inconsistent values that could not be tested on the fly
 		if ( opt.getMacroStartString().equals( opt.getMacroEndString() ) ) {
 			System.err.println( "\nerror: OPTION <macroStartString> cannot be the same as <macroEndString>." );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		}
 
 		if ( opt.getRegexEndBlockRegex().equals( opt.getCommentRegex() ) ) {
 			System.err.println( "\nerror: OPTION <regexEndBlockRegex> cannot be the same as <regexCommentExpression>." );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		}
 
 		if ( Validate.blkEnd.equals( opt.getCommentRegex() ) ) {
 			System.err.println( "\nfatal: OPTION <commentRegex> cannot be the same as command line option <blkEnd>." );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		}
 
 		if ( Validate.blkStart.equals( opt.getCommentRegex() ) ) {
 			System.err.println( "\nfatal: OPTION <commenrRegex> cannot be the same as command line option <blkStart>." );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		}
 
 		if ( Validate.blkEnd.equals( opt.getCommentRegex() ) ) {
 			System.err.println( "\nfatal: OPTION <commentRegex> cannot be the same as command line option <blkEnd>." );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		}
 
 	}
@@ -346,7 +348,7 @@ class ParseConfig {
 			}
 		} catch ( final IOException e ) {
 			System.err.println( "\nfatal: problem reading config file <" + fileName + "> " + e.getMessage() );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		}
 
 	}
@@ -361,13 +363,13 @@ class ParseConfig {
 	 */
 	void doParseRULES( String ruleID ) {
 		haveRuleBlock = 1;
-		final Pattern nameValuePattern = Pattern.compile( "^NameValue(?:Pair)?$|^NVP?$", Pattern.CASE_INSENSITIVE );
-		final Pattern delimitedValuePattern = Pattern.compile( "^Delimited$|^Fields?$|^[DF]$", Pattern.CASE_INSENSITIVE );
-		final Pattern javaValuePattern = Pattern.compile( "^Java(?:Properties)?$|^JP?$", Pattern.CASE_INSENSITIVE );
-		final Pattern customValuePattern = Pattern.compile( "^Custom$|^C$", Pattern.CASE_INSENSITIVE );
-		final Pattern lineValuePattern = Pattern.compile( "^Lines?$|^L$", Pattern.CASE_INSENSITIVE );
-		final Pattern lineValueCmdLinePattern = Pattern.compile( "^ValueLines?$|^VL$", Pattern.CASE_INSENSITIVE );
-		final Pattern delimitedValueCmdLinePattern = Pattern.compile( "^ValueDelimited$|^ValueFields$|^V[DF]$", Pattern.CASE_INSENSITIVE );
+		final Pattern nameValuePattern = PatternCache.compile( "^NameValue(?:Pair)?$|^NVP?$", Pattern.CASE_INSENSITIVE );
+		final Pattern delimitedValuePattern = PatternCache.compile( "^Delimited$|^Fields?$|^[DF]$", Pattern.CASE_INSENSITIVE );
+		final Pattern javaValuePattern = PatternCache.compile( "^Java(?:Properties)?$|^JP?$", Pattern.CASE_INSENSITIVE );
+		final Pattern customValuePattern = PatternCache.compile( "^Custom$|^C$", Pattern.CASE_INSENSITIVE );
+		final Pattern lineValuePattern = PatternCache.compile( "^Lines?$|^L$", Pattern.CASE_INSENSITIVE );
+		final Pattern lineValueCmdLinePattern = PatternCache.compile( "^ValueLines?$|^VL$", Pattern.CASE_INSENSITIVE );
+		final Pattern delimitedValueCmdLinePattern = PatternCache.compile( "^ValueDelimited$|^ValueFields$|^V[DF]$", Pattern.CASE_INSENSITIVE );
 
 
 		tmpRule = null;
@@ -379,7 +381,7 @@ class ParseConfig {
 			// special case if we have -M switch and have now read macros we can display
 			if ( Validate.showMacros ) {
 				Macros.showMacros();
-				System.exit( 0 );
+				Validate.exit( 0 );
 			}
 					
 			Validate.ruleMap = new HashMap<String, Rule>(); // will save all Rule objects for run time
@@ -391,9 +393,9 @@ class ParseConfig {
 			// then its not a previously "seen" ruleID so save it IF the format is good
 			
 			// make sure ruleID is valid and non-existent
-			if ( ! ruleID.matches( "[a-zA-Z_0-9\\./\\$]+" ) ) {
+			if ( ! PatternCache.matches( "[a-zA-Z_0-9\\./\\$]+", ruleID ) ) {
 				System.err.println( "\nfatal: invalid format for the ID for the RULE block on line <" + lineNumber + "> of config file <" + fileName + ">.");
-				System.exit( 12 );
+				Validate.exit( 12 );
 			}
 
 			// later we will CLONE the OPTIONS object so that each RULE block can have its
@@ -404,7 +406,7 @@ class ParseConfig {
 				ruleOption = (Options) opt.clone();
 			} catch ( final CloneNotSupportedException ex ) {
 				System.err.println( "Cloneable should be implemented." );
-				System.exit( 12 );
+				Validate.exit( 12 );
 			}
 			
 			// this comes late because we had to finish OPTION block and only print it once.
@@ -424,12 +426,12 @@ class ParseConfig {
 				Validate.ruleList.add( ruleID ); // so we can execute in order
 			} else {
 				System.out.println( "\nfatal: the ruleID <" + ruleID + "> on line <" + lineNumber + "> could not be placed in ruleMap " );
-				System.exit( 12 );	
+				Validate.exit( 12 );	
 			}
 
 		} else {
 			System.out.println( "\nfatal: the ruleID <" + ruleID + "> on line <" + lineNumber + "> is a duplicate. " );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		}
 
 
@@ -457,16 +459,16 @@ class ParseConfig {
 					// see if its a block end or a REGEX block start
 					 
 					
-					line = line.trim().replaceFirst("^" + Validate.blkStart + "\\s*", "");
+					line = PatternCache.compile( "^" + Validate.blkStart + "\\s*" ).matcher( line.trim() ).replaceFirst( "" );
 					// all that is left is the TITLE + trailing junk (maybe)
 					
-					tokens = line.split( "\\s+" );
+					tokens = PatternCache.split( "\\s+", line, 0 );
 										
 					// we know 0 is the blkStart string
-					  if ( tokens.length == 1 &&  tokens[0].toUpperCase().matches("REGEX(ES)?")) {
+					  if ( tokens.length == 1 &&  PatternCache.matches( "REGEX(ES)?", tokens[0].toUpperCase() )) {
 						 if ( haveRegexBlock != 0 ) {
 							System.out.println( "\nfatal: a second REGEX block was found on line <" + lineNumber + "> for this RULE block." );
-							System.exit( 12 );
+							Validate.exit( 12 );
 						} 
 
 						// this RULE block has a REGEX, so we need to parse it
@@ -476,7 +478,7 @@ class ParseConfig {
 						haveRuleBlock = 2;
 					} else {
 						System.err.println( "\nfatal: unknown/expected format line on line <" + lineNumber + ">.");
-						System.exit( 12 );
+						Validate.exit( 12 );
 					}
 
 					// endBlk we are done here
@@ -558,7 +560,7 @@ class ParseConfig {
 						}
 
 						System.err.println( "\nfatal: unknown value <" + ruleValue + "> for <format> option on line <" + lineNumber + ">." );
-						System.exit( 12 );
+						Validate.exit( 12 );
 						
 					} else if ( ruleOpt.equals( "file" ) ) {
 													
@@ -569,7 +571,7 @@ class ParseConfig {
 						// 2 approaches for file: file=xxx, or file={\nxxx\nyyy}\n
 						//
 														
-						 if ( ruleValue.matches( "\\{$" ) ) {
+						 if ( PatternCache.matches( "\\{$", ruleValue ) ) {
 				              // we assume this is the start of a block
 				              ///tmpRule.fileAdd( ruleValue );
 
@@ -591,7 +593,7 @@ class ParseConfig {
 				                }
 
 				                // what's left we expect is a file name or the end of the block
-				                if ( line.matches( "^\\s*}\\s*$" )) {
+				                if ( PatternCache.matches( "^\\s*}\\s*$", line )) {
 				                  // end of block, swallow the end marker
 				                  lineNumber++;
 				                  break;
@@ -627,40 +629,43 @@ class ParseConfig {
 
 				} // end of option checking
 
-				if ( line.matches("^\\s*" + Validate.blkStart + "\\s*\\w+.*") ) {
+				if ( PatternCache.matches( "^\\s*" + Validate.blkStart + "\\s*\\w+.*", line ) ) {
 					// possibly REGEX lets check
-					line = line.trim().replaceFirst("^" + Validate.blkStart + "\\s*", "");
-					tokens = line.split(  "\\s+" );
+					line = PatternCache.compile( "^" + Validate.blkStart + "\\s*" ).matcher( line.trim() ).replaceFirst( "" );
+					tokens = PatternCache.split( "\\s+", line, 0 );
 
 					// we know 0 is the blkStart string
-					if ( (tokens.length == 1) && tokens[0].toUpperCase().matches("REGEX(ES)?") ) {
+					if ( (tokens.length == 1) && PatternCache.matches( "REGEX(ES)?", tokens[0].toUpperCase() ) ) {
 						if ( haveRegexBlock != 0 ) {
 							System.out.println( "\nfatal: a second REGEX block was found on line <" + lineNumber + ">." );
-							System.exit( 12 );
+							Validate.exit( 12 );
 						} else {
 							
 							if ( tmpRule.getFormat() == null ) {
 								System.err.println( "\nerror: RULE block that ends on line <" + lineNumber + "> requires format=<option>.");
-								System.exit( 12 );
+								Validate.exit( 12 );
 							}
+
+							ruleOption.checkLineReplaceRegex( lineNumber );
+
 							// we can now parse the regex line that are NOT comments
 							lineNumber = parseRegexBlock( ruleOption, ruleID, lineNumber );
 							return; // reached the end of REGEX and therefore RULE
 						}
 					} else {
 						System.err.println( "\nfatal: invalid block start line <" + line + "> in RULE block, line <" + lineNumber + ">.");
-						System.exit( 12 );
+						Validate.exit( 12 );
 					}
 
 				} else {
 					System.err.println( "\nfatal: invalid line <" + line.trim() + "> in RULE block, line <" + lineNumber + ">.");
-					System.exit( 12 );
+					Validate.exit( 12 );
 				}
 
 			} // while end
 		}  catch (final IOException e) {
 			System.err.println( "\nfatal: problem reading config file: " + e.getMessage() );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		}
 		
 
@@ -684,14 +689,14 @@ class ParseConfig {
 		try {
 				
 			if ( ruleOption.getCommentRegex() != null ) {
-				regexCommentPattern = Pattern.compile( ruleOption.getCommentRegex() );
+				regexCommentPattern = PatternCache.compile( ruleOption.getCommentRegex() );
 				haveRegexCommentExpression = true;
 			}
 
 			if ( ruleOption.getRegexEndBlockRegex() != null ) {
-				regexEndBlockPattern = Pattern.compile( ruleOption.getRegexEndBlockRegex() );
+				regexEndBlockPattern = PatternCache.compile( ruleOption.getRegexEndBlockRegex() );
 			} else {
-				regexEndBlockPattern = Pattern.compile( Validate.blkEnd );
+				regexEndBlockPattern = PatternCache.compile( Validate.blkEnd );
 			}
 			
 			// 2 var * 2 combination for line continuation
@@ -729,7 +734,7 @@ class ParseConfig {
 
 						} catch ( NumberFormatException e ) {
 							System.err.println("\nerror, fromLine and toLine must be integers >= zero on line <" + lineNumber + ">");
-							System.exit(77);
+							Validate.exit(77);
 						}
 
 						line = lnpMatcher.group(3);
@@ -737,12 +742,12 @@ class ParseConfig {
 						// need this because above does NOT catch negatives
 						if ( fromLine < 0 || toLine < 0 ) {
 							System.err.println("\nerror, fromLine and toLine must be integers >= zero on line <" + lineNumber + ">");
-							System.exit(77);
+							Validate.exit(77);
 						}
 
 						if ( toLine != 0 && toLine < fromLine ) {
 							System.err.println("\nerror, toLine must be greater >= fromLine unless toLine == 0 <" + lineNumber + ">");
-							System.exit(77);
+							Validate.exit(77);
 						}
 					}
 				}
@@ -815,10 +820,10 @@ class ParseConfig {
 			
 		} catch (final IOException e) {
 			System.err.println( "\nfatal: problem reading config file <" + fileName + ">: " + e.getMessage() );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		} catch ( final PatternSyntaxException pse ) {
 			System.err.println( "\nfatal: regex compile issue line <" + lineNumber + "> in config file <" + fileName +  "> "  + pse.getMessage() );
-			System.exit( 12 );
+			Validate.exit( 12 );
 		}
 		
 		
@@ -857,7 +862,7 @@ class ParseConfig {
 		}
 
 		if ( exitFlag ) {
-			System.exit( 12 );
+			Validate.exit( 12 );
 		}
 	
 		
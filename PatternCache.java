@@ -0,0 +1,154 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * PatternCache - one compiled Pattern for each (regex, flags) in the run. RULE blocks often share
+ * their regexes, mostly through macros, and the config parsing tests the same option and block
+ * names on every line, so each distinct regex is compiled once and the same Pattern is handed out
+ * after that. A Pattern is immutable and thread safe, only its Matchers are not. At most MAX_SIZE
+ * are kept, the least recently used goes first: the server mode (--server) parses a config file
+ * again each time it changes, and the test modes compile whatever regex a request brings.
+ * @author Bill Lanahan
+ *
+ */
+final class PatternCache {
+
+	static final int MAX_SIZE = 4096;
+
+	// in access order, guarded by itself; a Pattern is compiled outside the lock
+	private static final LinkedHashMap<Key, Pattern> patterns = new LinkedHashMap<Key, Pattern>( 256, 0.75f, true ) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry( Map.Entry<Key, Pattern> eldest ) {
+			return size() > MAX_SIZE;
+		}
+	};
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+	private static final AtomicLong compileNanos = new AtomicLong();
+
+	private PatternCache() {
+		// static methods only
+	}
+
+	static Pattern compile( String regex ) throws PatternSyntaxException {
+		return compile( regex, 0 );
+	}
+
+	/*
+	 * the Pattern for regex and flags, compiled on its first use; a regex that does not compile
+	 * throws PatternSyntaxException every time, just as Pattern.compile does
+	 */
+	static Pattern compile( String regex, int flags ) throws PatternSyntaxException {
+		final Key key = new Key( regex, flags );
+		Pattern p = null;
+
+		synchronized ( patterns ) {
+			p = patterns.get( key );
+		}
+
+		if ( p != null ) {
+			hits.incrementAndGet();
+			return p;
+		}
+
+		misses.incrementAndGet();
+		final long start = System.nanoTime();
+
+		try {
+			p = Pattern.compile( regex, flags );
+		} finally {
+			compileNanos.addAndGet( System.nanoTime() - start );
+		}
+
+		// two threads may compile the same regex, both get the Pattern stored first
+		synchronized ( patterns ) {
+			final Pattern stored = patterns.get( key );
+
+			if ( stored != null ) {
+				return stored;
+			}
+			patterns.put( key, p );
+			return p;
+		}
+	}
+
+	/*
+	 * same as input.matches( regex ), without compiling regex each time
+	 */
+	static boolean matches( String regex, CharSequence input ) {
+		return compile( regex ).matcher( input ).matches();
+	}
+
+	/*
+	 * same as input.split( regex, limit ), without compiling regex each time
+	 */
+	static String[] split( String regex, CharSequence input, int limit ) {
+		return compile( regex ).split( input, limit );
+	}
+
+	static String stats() {
+		return "regexes compiled <" + misses.get() + ">, reused <" + hits.get() + ">, compile time <"
+				+ (compileNanos.get() / 1000000) + "ms>";
+	}
+
+	/*
+	 * the regex and its flags, the same regex with other flags is another Pattern
+	 */
+	private static final class Key {
+		private final String regex;
+		private final int flags;
+		private final int hash;
+
+		Key( String regex, int flags ) {
+			this.regex = regex;
+			this.flags = flags;
+			this.hash = regex.hashCode() * 31 + flags;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals( Object o ) {
+			if ( ! (o instanceof Key) ) {
+				return false;
+			}
+			final Key k = (Key) o;
+			return flags == k.flags && regex.equals( k.regex );
+		}
+	}
+
+}
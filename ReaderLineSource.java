@@ -0,0 +1,146 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * ReaderLineSource - the LineSource that decodes the file as a stream, used for
+ * fileReader=buffered and for any charset where a newline is not a single byte.
+ * @author Bill Lanahan
+ *
+ */
+class ReaderLineSource implements LineSource {
+
+	private final BufferedReader br;
+
+	/*
+	 * reads the bytes from start up to end of the file
+	 */
+	ReaderLineSource( File file, Charset charset, long start, long end ) throws IOException {
+		final FileInputStream fin = new FileInputStream( file );
+
+		try {
+			fin.getChannel().position( start );
+		} catch ( final IOException ioe ) {
+			fin.close();
+			throw ioe;
+		}
+
+		// the stream stops at the end of the chunk, not the end of the file
+		br = new BufferedReader( new InputStreamReader( new RangeInputStream( fin, end - start, true ), charset ) );
+	}
+
+	/*
+	 * reads the bytes from start up to end of the file channel is open on, it is left open
+	 */
+	ReaderLineSource( FileChannel channel, Charset charset, long start, long end ) throws IOException {
+		channel.position( start );
+		br = new BufferedReader( new InputStreamReader( new RangeInputStream( Channels.newInputStream( channel ), end - start, false ), charset ) );
+	}
+
+	/*
+	 * reads all of a stream, e.g. STDIN
+	 */
+	ReaderLineSource( InputStream in, Charset charset ) {
+		br = new BufferedReader( new InputStreamReader( in, charset ), 65536 );
+	}
+
+	public String readLine() throws IOException {
+		return br.readLine();
+	}
+
+	public void close() throws IOException {
+		br.close();
+	}
+
+	/*
+	 * stops reading at the end of the chunk
+	 */
+	private static class RangeInputStream extends FilterInputStream {
+
+		private long remaining;
+		private final boolean closes; // false when in is someone else's to close
+
+		RangeInputStream( InputStream in, long remaining, boolean closes ) {
+			super( in );
+			this.remaining = remaining;
+			this.closes = closes;
+		}
+
+		public int read() throws IOException {
+
+			if ( remaining <= 0 ) {
+				return -1;
+			}
+
+			final int b = in.read();
+			if ( b >= 0 ) {
+				remaining--;
+			}
+			return b;
+		}
+
+		public int read( byte[] b, int off, int len ) throws IOException {
+
+			if ( remaining <= 0 ) {
+				return -1;
+			}
+
+			final int read = in.read( b, off, (int) Math.min( len, remaining ) );
+			if ( read > 0 ) {
+				remaining -= read;
+			}
+			return read;
+		}
+
+		public long skip( long n ) throws IOException {
+			final long skipped = in.skip( Math.min( n, remaining ) );
+			remaining -= skipped;
+			return skipped;
+		}
+
+		public int available() throws IOException {
+			return (int) Math.min( in.available(), remaining );
+		}
+
+		public void close() throws IOException {
+
+			if ( closes ) {
+				in.close();
+			}
+		}
+	}
+
+}
@@ -48,8 +48,6 @@ class RegexBlock {
 	private String ruleId = null;
 	private ArrayList<Pattern> patternList = null;
 	private ArrayList<String> patternStringList = null;
-	private final StringBuilder sb = new StringBuilder();
-	private Pattern fullDelimitedLinePattern = null;
 	private boolean hadFailedRegex = false;
 	private Rule myRule = null;
 		 
@@ -100,10 +98,10 @@ class RegexBlock {
 
 			Pattern p = null;
 			try {
-				p = Pattern.compile( line );
+				p = PatternCache.compile( line );
 			} catch ( PatternSyntaxException e ) {
 				System.err.println( "\nerror: failed to compile <" + line + " > from line <" + lineNumber + ">");
-				System.exit(55);
+				Validate.exit(55);
 			}
 
 			myRule.lineFormatRegexList.add( p );
@@ -135,7 +133,7 @@ class RegexBlock {
 				return;
 			}
 			
-			nvArray = line.trim().split("\\s*=", 2);
+			nvArray = RulePlan.NAME_VALUE_SPLIT.split( line.trim(), 2 );
 						
 			if ( nvArray.length > 2 ) {
 				System.err.println("\nerror: invalid format for regex on line <" + lineNumber + ">  <" + line + ">");
@@ -189,13 +187,13 @@ class RegexBlock {
 
 			if ( delimiter == null ) { 
 				System.err.println( "\nerror: RULE with ruleID <" + ruleId + "> format=DELIMITED, so a delimiter is required.");
-				System.exit( 14 );
+				Validate.exit( 14 );
 			}
 
 			// we just check each non-comment like and store its pattern
 			try {
 				// regex better have been well tested 
-				pattern = Pattern.compile( line );
+				pattern = PatternCache.compile( line );
 			} catch ( final PatternSyntaxException pe ) {
 				System.err.println( "\nerror: invalid regex on line <" + lineNumber + "> " + pe.getMessage() );
 				hadFailedRegex = true;
@@ -214,15 +212,9 @@ class RegexBlock {
 
 			// store compiled patterns by column position
 			patternList.add( pattern );
-			// store string version
+			// store string version, RulePlan joins them into a regex for the ENTIRE line
 			patternStringList.add( line );
 
-			// build up a regex that will match the ENTIRE line with grouping 
-			// e.g. (regex1)(delimiter) ........
-			//** FUTURE: might insert non-matching group symbol - needs more thought and testing
-			//sb.append("(?:").append(line).append(")(").append(delimiter).append(")");
-			sb.append("(").append(line).append(")(").append(delimiter).append(")");
-
 			break;
 			
 		case CUSTOM:
@@ -242,7 +234,7 @@ class RegexBlock {
 				return;
 			}
 			
-			nvArray = line.trim().split("\\s*=", 2);
+			nvArray = RulePlan.NAME_VALUE_SPLIT.split( line.trim(), 2 );
 						
 			if ( nvArray.length > 2 ) {
 				System.err.println("\nerror: invalid format for regex on line <" + lineNumber + "> <" + line + ">");
@@ -291,7 +283,7 @@ class RegexBlock {
 					
 		default:
 			System.err.println( "\nfatal: programming error this should never be called in RegexBlock.java");
-			System.exit( 14 );
+			Validate.exit( 14 );
 		}
 		
 		return;
@@ -308,7 +300,7 @@ class RegexBlock {
 		case VALUE_LINE:
 			
 			if ( hadFailedRegex ) {
-				System.exit( 12 );
+				Validate.exit( 12 );
 			}
 			
 			// what we were sent is supposed to be a regex so check it
@@ -323,24 +315,16 @@ class RegexBlock {
 		case VALUE_DELIMITED:
 			
 			if ( hadFailedRegex ) {
-				System.exit( 14 );
+				Validate.exit( 14 );
 			}
 			
 			if ( patternList == null ) {
 				System.err.println( "\nerror: RULE with ruleID <" + tmprule.getRuleID() + "> has <format=DELIMITED>, but no Regexes." );
-				System.exit( 14 );
-			}
-			
-			try {
-				fullDelimitedLinePattern = Pattern.compile(  sb.toString() );
-			} catch ( final PatternSyntaxException pse ) {
-				System.err.println( "\nerror: invalid regex when all were concatenated for a full line match. " + pse.getMessage() );
-				System.exit( 14 );
+				Validate.exit( 14 );
 			}
 			
 			tmprule.patternListArray = patternList.toArray(); // passed as Object Array
 			tmprule.patternStringListArray = patternStringList.toArray(); // passed as Object Array
-			tmprule.fullDelimitedLinePattern = fullDelimitedLinePattern;
 			patternList = null;
 			break;
 			
@@ -349,14 +333,14 @@ class RegexBlock {
 		case CUSTOM:
 						
 			if ( hadFailedRegex ) {
-				System.exit( 14 );
+				Validate.exit( 14 );
 			}
 			break;
 			
 						
 		default:
 			System.err.println( "\nfatal: programming error this should never be called case in RegexBlock.java");
-			System.exit( 14 );
+			Validate.exit( 14 );
 		}
 	}
 }
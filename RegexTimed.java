@@ -110,7 +110,7 @@ class RegexTimed {
 					
 					if ( regexMultiLine && REGEX.length() < 1) {
 						System.err.println("fatal: -M used but no line continuation found in REGEX\n");
-						System.exit(100);
+						Validate.exit(100);
 					}
 					
 					pattern = Pattern.compile( REGEX );
@@ -122,13 +122,13 @@ class RegexTimed {
 
 			} catch ( final PatternSyntaxException pe ) {
 				System.out.println("\nfatal: " + REGEX + " Did not compile correctly, check REGEX syntax.");
-				System.exit( 12 );
+				Validate.exit( 12 );
 			} catch ( final FileNotFoundException e ) {
 				System.err.println( "\nfatal: could not locate file <" + fileNameRegex + ">." );
-				System.exit( 12 );
+				Validate.exit( 12 );
 			} catch (final IOException ioe) {
 				System.out.println("\nfatal: I/O error " + ioe.getMessage() );
-				System.exit( 13 );
+				Validate.exit( 13 );
 			}
 
 						
@@ -154,13 +154,13 @@ class RegexTimed {
 
 			} catch (final IOException e) {
 				System.err.println( "\nfatal: problem reading <" + fileNameRegex + ">. + ge.getMessage()" );
-				System.exit( 13 );
+				Validate.exit( 13 );
 			} finally {
 				try {
 					buffReader.close();
 				} catch (final IOException e) {
 					System.err.println( "\nfatal: There was an error, cleaning up resources." );
-					System.exit( 13 );
+					Validate.exit( 13 );
 				}	
 			}
 
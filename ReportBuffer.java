@@ -0,0 +1,402 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * ReportBuffer - collects the report text for a data file, like a StringBuilder. When a file is
+ * validated in chunks a chunk does not know how many lines came before it, so its line numbers
+ * are kept apart from the text and only added in when the chunk is appended to the file report.
+ * Once more than SPILL_SIZE chars are held the text goes on to a temporary file, and once more than
+ * MARK_SIZE line numbers are held they go to one of their own, so a report on a very large file or
+ * chunk takes no more memory than a report on a small one. With streamReport=true
+ * the text is printed as it is found instead, and the summary of the file follows it.
+ * @author Bill Lanahan
+ *
+ */
+class ReportBuffer {
+
+	static final int SPILL_SIZE = 1 << 20; // chars held in memory before the report goes to a file
+	static final int STREAM_SIZE = 8192; // chars held before they are printed when streaming
+	static final int MARK_SIZE = 16384; // deferred line numbers held in memory before they go to a file
+	private static final Charset SPILL_CHARSET = Charset.forName( "UTF-8" );
+
+	private final StringBuilder sb;
+	private boolean deferred = false; // line numbers are relative to the start of a chunk
+	private long[] marks = null; // where in the report each relative line number goes
+	private int[] lines = null;
+	private int markCount = 0;
+
+	// the first deferred line numbers once there were too many for memory, marks holds the rest
+	private File markFile = null;
+	private DataOutputStream markSpill = null;
+	private int marksSpilled = 0;
+
+	// the start of the report once it got too big for memory, sb holds the rest
+	private File spillFile = null;
+	private Writer spill = null;
+	private long spilled = 0; // or printed, when streaming
+
+	// streamReport=true
+	private PrintStream sink = null;
+	private String heading = null; // printed before the first text of the report
+
+	ReportBuffer( int capacity ) {
+		sb = new StringBuilder( capacity );
+	}
+
+	/*
+	 * from now on the text is printed to sink as it comes, after the heading
+	 */
+	void stream( PrintStream sink, String heading ) {
+		this.sink = sink;
+		this.heading = heading;
+	}
+
+	boolean isStreaming() {
+		return sink != null;
+	}
+
+	/*
+	 * from now on line numbers are held back until append( ReportBuffer, int ) is called
+	 */
+	void defer() {
+		deferred = true;
+		marks = new long[ 64 ];
+		lines = new int[ 64 ];
+	}
+
+	ReportBuffer append( String s ) {
+		sb.append( s );
+		return spillIfFull();
+	}
+
+	ReportBuffer append( CharSequence s ) {
+		sb.append( s );
+		return spillIfFull();
+	}
+
+	ReportBuffer append( char c ) {
+		sb.append( c );
+		return spillIfFull();
+	}
+
+	ReportBuffer append( int i ) {
+		sb.append( i );
+		return spillIfFull();
+	}
+
+	/*
+	 * a line number of the data file, use this rather than append( int ) so chunks can be renumbered
+	 */
+	ReportBuffer appendLineNumber( int lineNumber ) {
+
+		if ( ! deferred ) {
+			sb.append( lineNumber );
+			return spillIfFull();
+		}
+
+		if ( markCount == MARK_SIZE ) {
+			spillMarks();
+		} else if ( markCount == marks.length ) {
+			final long[] tmpMarks = new long[ markCount * 2 ];
+			final int[] tmpLines = new int[ markCount * 2 ];
+			System.arraycopy( marks, 0, tmpMarks, 0, markCount );
+			System.arraycopy( lines, 0, tmpLines, 0, markCount );
+			marks = tmpMarks;
+			lines = tmpLines;
+		}
+
+		marks[ markCount ] = length();
+		lines[ markCount ] = lineNumber;
+		markCount++;
+		return this;
+	}
+
+	/*
+	 * append the report of a chunk, its line numbers are moved up by the lines before the chunk.
+	 * The chunk is used up
+	 */
+	ReportBuffer append( ReportBuffer chunk, int linesBefore ) {
+		final Reader in = chunk.openSpill();
+		final DataInputStream markIn = chunk.openMarks();
+		final char[] buf = new char[ 8192 ];
+		long from = 0;
+
+		try {
+			for ( int i = 0; i < chunk.marksSpilled; i++ ) {
+				final long mark = markIn.readLong();
+				copy( chunk, in, buf, from, mark );
+				appendLineNumber( markIn.readInt() + linesBefore );
+				from = mark;
+			}
+
+			for ( int i = 0; i < chunk.markCount; i++ ) {
+				copy( chunk, in, buf, from, chunk.marks[ i ] );
+				appendLineNumber( chunk.lines[ i ] + linesBefore );
+				from = chunk.marks[ i ];
+			}
+
+			copy( chunk, in, buf, from, chunk.length() );
+		} catch ( final IOException ioe ) {
+			fatal( chunk.spillFile != null ? chunk.spillFile : chunk.markFile, ioe );
+		} finally {
+			chunk.discard( in, markIn );
+		}
+
+		return this;
+	}
+
+	long length() {
+		return spilled + sb.length();
+	}
+
+	/*
+	 * print the whole report to out, the report is used up
+	 */
+	void writeTo( PrintStream out ) {
+
+		if ( sink != null ) {
+			drain();
+			return;
+		}
+
+		final Reader in = openSpill();
+
+		try {
+			if ( in != null ) {
+				final char[] buf = new char[ 8192 ];
+				int n;
+
+				while ( (n = in.read( buf )) > 0 ) {
+					out.append( CharBuffer.wrap( buf, 0, n ) );
+				}
+			}
+
+			out.append( sb );
+		} catch ( final IOException ioe ) {
+			fatal( spillFile, ioe );
+		} finally {
+			discard( in, null );
+		}
+	}
+
+	/*
+	 * copy the chars from..to of chunk, the part of them in its spill file is read from in
+	 */
+	private void copy( ReportBuffer chunk, Reader in, char[] buf, long from, long to ) throws IOException {
+
+		while ( from < to && from < chunk.spilled ) {
+			final int n = in.read( buf, 0, (int) Math.min( buf.length, Math.min( to, chunk.spilled ) - from ) );
+
+			if ( n < 0 ) {
+				throw new IOException( "unexpected end of file" );
+			}
+
+			sb.append( buf, 0, n );
+			spillIfFull();
+			from += n;
+		}
+
+		if ( from < to ) {
+			sb.append( chunk.sb, (int) (from - chunk.spilled), (int) (to - chunk.spilled) );
+			spillIfFull();
+		}
+	}
+
+	private ReportBuffer spillIfFull() {
+
+		if ( sink != null ) {
+			if ( sb.length() >= STREAM_SIZE ) {
+				drain();
+			}
+			return this;
+		}
+
+		if ( sb.length() < SPILL_SIZE ) {
+			return this;
+		}
+
+		try {
+			if ( spill == null ) {
+				spillFile = File.createTempFile( "validate", ".report" );
+				spill = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( spillFile ), SPILL_CHARSET ), 65536 );
+			}
+
+			spill.append( sb );
+			spilled += sb.length();
+			sb.setLength( 0 );
+		} catch ( final IOException ioe ) {
+			fatal( spillFile, ioe );
+		}
+
+		return this;
+	}
+
+	/*
+	 * the deferred line numbers held go on to the mark file, each as the long where it goes and the int
+	 */
+	private void spillMarks() {
+
+		try {
+			if ( markSpill == null ) {
+				markFile = File.createTempFile( "validate", ".marks" );
+				markSpill = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( markFile ), 65536 ) );
+			}
+
+			for ( int i = 0; i < markCount; i++ ) {
+				markSpill.writeLong( marks[ i ] );
+				markSpill.writeInt( lines[ i ] );
+			}
+
+			marksSpilled += markCount;
+			markCount = 0;
+		} catch ( final IOException ioe ) {
+			fatal( markFile, ioe );
+		}
+	}
+
+	/*
+	 * print what is held, the heading first if nothing was printed yet
+	 */
+	private void drain() {
+
+		if ( sb.length() == 0 ) {
+			return;
+		}
+
+		if ( heading != null ) {
+			sink.println( heading );
+			heading = null;
+		}
+
+		sink.append( sb );
+		spilled += sb.length();
+		sb.setLength( 0 );
+	}
+
+	/*
+	 * a reader for the spilled part of the report, null if nothing was spilled
+	 */
+	private Reader openSpill() {
+
+		if ( spill == null ) {
+			return null;
+		}
+
+		try {
+			spill.close();
+			return new InputStreamReader( new FileInputStream( spillFile ), SPILL_CHARSET );
+		} catch ( final IOException ioe ) {
+			fatal( spillFile, ioe );
+			return null; // not reached
+		}
+	}
+
+	/*
+	 * a stream of the spilled line numbers, null if none were spilled
+	 */
+	private DataInputStream openMarks() {
+
+		if ( markSpill == null ) {
+			return null;
+		}
+
+		try {
+			markSpill.close();
+			return new DataInputStream( new BufferedInputStream( new FileInputStream( markFile ), 65536 ) );
+		} catch ( final IOException ioe ) {
+			fatal( markFile, ioe );
+			return null; // not reached
+		}
+	}
+
+	/*
+	 * drop what is held, the report is not printed (the run ended before it); the temporary files
+	 * are deleted here, a server or --watch runs on after it
+	 */
+	void discard() {
+		discard( null, null );
+	}
+
+	private void discard( Reader in, DataInputStream markIn ) {
+		close( in );
+		close( markIn );
+		close( spill );
+		close( markSpill );
+
+		if ( spillFile != null ) {
+			spillFile.delete();
+		}
+
+		if ( markFile != null ) {
+			markFile.delete();
+		}
+
+		spill = null;
+		spillFile = null;
+		spilled = 0;
+		sb.setLength( 0 );
+		markSpill = null;
+		markFile = null;
+		marksSpilled = 0;
+		markCount = 0;
+	}
+
+	private static void close( Closeable c ) {
+
+		if ( c != null ) {
+			try {
+				c.close();
+			} catch ( final IOException ioe ) {
+				// we are done with it anyway
+			}
+		}
+	}
+
+	private void fatal( File file, IOException ioe ) {
+		System.err.println( "\nfatal: can't use the temporary report file <" + file + ">. " + ioe.getMessage() );
+		discard();
+		Validate.exit( 50 );
+	}
+
+}
@@ -0,0 +1,386 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * ResultCache - the --cache switch. What the validation of a file printed is kept in a directory,
+ * with the return code and the fails it gave, under a key of the rule (its options and regexes),
+ * the name the file is reported by and a SHA-256 of the file's contents, so a file made to look
+ * like another can't get its report. A later run that validates
+ * the same contents with the same rule prints what was kept rather than reading the file again.
+ * The directory is kept under -DcacheSize megabytes (default 256), the entries used longest ago
+ * are removed first. --no-cache turns it off.
+ * @author Bill Lanahan
+ *
+ */
+final class ResultCache {
+
+	private static final String MAGIC = "validate result 2"; // change when the report of a file changes
+	private static final int MAX_ENTRY = 1 << 20; // a bigger report is not kept
+	private static final long maxBytes = Long.getLong( "cacheSize", 256 ) << 20;
+
+	private static File dir = null;
+	private static String version = null; // a hash of the validate classes, a new build does not use old reports
+	private static long totalBytes = -1; // of the directory, counted at the first store of the run
+
+	private ResultCache() {
+		// static methods only
+	}
+
+	/*
+	 * use dirName for the run, made if it is not there; a warning and no cache if it can't be
+	 */
+	static synchronized void open( String dirName ) {
+		final File d = new File( dirName );
+
+		if ( ! d.isDirectory() && ! d.mkdirs() ) {
+			System.err.println( "\nwarning: can't make the cache directory <" + dirName + ">, the cache is not used." );
+			dir = null;
+			return;
+		}
+
+		try {
+			version = version( new File( ResultCache.class.getProtectionDomain().getCodeSource().getLocation().toURI() ) );
+		} catch ( final Exception e ) {
+			System.err.println( "\nwarning: can't find the validate classes to tell their build, the cache is not used." );
+			dir = null;
+			return;
+		}
+
+		dir = d;
+		totalBytes = -1;
+	}
+
+	static synchronized void close() {
+		dir = null;
+	}
+
+	static synchronized boolean enabled() {
+		return dir != null;
+	}
+
+	/*
+	 * the key of the report of rule for fileName as it is now; null if the file can't be read,
+	 * the rule then reports that as usual
+	 */
+	static String key( Rule rule, String fileName ) {
+		final File file = new File( fileName );
+
+		if ( ! file.isFile() ) {
+			return null;
+		}
+
+		try {
+			final MessageDigest md = sha256();
+			update( md, file );
+
+			return MAGIC + "\n" + version + "\n" + Charset.defaultCharset().name() + "\n" + rule.getDefinitionHash() + "\n"
+					+ fileName + "\n" + hex( md.digest() );
+		} catch ( final IOException e ) {
+			return null;
+		}
+	}
+
+	/*
+	 * print the kept report of key into ctx; false if there is none
+	 */
+	static boolean replay( String key, FileContext ctx ) {
+		final File entry = entry( key );
+		DataInputStream in = null;
+
+		if ( ! entry.isFile() ) {
+			return false;
+		}
+
+		try {
+			in = new DataInputStream( new BufferedInputStream( new FileInputStream( entry ), 65536 ) );
+
+			if ( ! key.equals( Snapshot.readString( in ) ) ) {
+				return false; // another key with the same hash
+			}
+
+			final int rc = in.readInt();
+			final int errors = in.readInt();
+			final byte[] out = Snapshot.readBytes( in );
+			final byte[] err = Snapshot.readBytes( in );
+
+			ctx.out.write( out, 0, out.length );
+			ctx.out.flush();
+			ctx.err.write( err, 0, err.length );
+			ctx.err.flush();
+			ctx.errCount = errors;
+			ctx.rc( rc );
+			Validate.saveTotalFails( errors );
+
+			entry.setLastModified( System.currentTimeMillis() ); // used now, removed last
+			return true;
+
+		} catch ( final IOException e ) {
+			return false; // validate it again
+		} finally {
+			close( in );
+		}
+	}
+
+	/*
+	 * the report of ctx is copied as it is printed, from here until store()
+	 */
+	static Recording record( FileContext ctx ) {
+		final Recording recording = new Recording();
+		ctx.out = new PrintStream( new CopyOutputStream( ctx.out, recording.out ), true );
+		ctx.err = new PrintStream( new CopyOutputStream( ctx.err, recording.err ), true );
+		return recording;
+	}
+
+	/*
+	 * keep the report of ctx under key
+	 */
+	static void store( String key, FileContext ctx, Recording recording ) {
+		ctx.out.flush();
+		ctx.err.flush();
+
+		if ( recording.out.size() + recording.err.size() > MAX_ENTRY || ! enabled() ) {
+			return;
+		}
+
+		final File entry = entry( key );
+		final File tmp = new File( entry.getPath() + "." + Long.toHexString( System.nanoTime() ) + Thread.currentThread().getId() + ".tmp" );
+		DataOutputStream os = null;
+
+		try {
+			os = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ), 65536 ) );
+			Snapshot.writeString( os, key );
+			os.writeInt( ctx.rc );
+			os.writeInt( ctx.errCount );
+			Snapshot.writeBytes( os, recording.out.toByteArray() );
+			Snapshot.writeBytes( os, recording.err.toByteArray() );
+			os.close();
+			os = null;
+
+			// whole or not at all, other runs may be reading it
+			if ( ! tmp.renameTo( entry ) ) {
+				entry.delete();
+				if ( ! tmp.renameTo( entry ) ) {
+					throw new IOException( "could not rename <" + tmp + ">" );
+				}
+			}
+		} catch ( final IOException e ) {
+			close( os );
+			tmp.delete();
+			return; // the file is validated again next time
+		}
+
+		added( entry.length() );
+	}
+
+	/*
+	 * hash of b, the same kind used for the file contents
+	 */
+	static String hash( byte[] b ) {
+		return hex( sha256().digest( b ) );
+	}
+
+	/*
+	 * hash of the classes of validate in classes, a jar or the directory holding validate/; the bytes
+	 * rather than the time stamp, javac writing into a class directory does not change it
+	 */
+	private static String version( File classes ) throws IOException {
+		final MessageDigest md = sha256();
+
+		if ( classes.isFile() ) {
+			update( md, classes );
+		} else {
+			final File[] files = new File( classes, "validate" ).listFiles();
+
+			if ( files == null ) {
+				throw new IOException( "no validate classes in <" + classes + ">." );
+			}
+
+			Arrays.sort( files );
+
+			for ( final File f : files ) {
+				if ( f.getName().endsWith( ".class" ) ) {
+					md.update( f.getName().getBytes( "UTF-8" ) );
+					update( md, f );
+				}
+			}
+		}
+
+		return hex( md.digest() );
+	}
+
+	private static void update( MessageDigest md, File file ) throws IOException {
+		final InputStream in = new FileInputStream( file );
+
+		try {
+			final byte[] buf = new byte[ 65536 ];
+			int n;
+			while ( (n = in.read( buf )) > 0 ) {
+				md.update( buf, 0, n );
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance( "SHA-256" );
+		} catch ( final NoSuchAlgorithmException e ) {
+			throw new IllegalStateException( e ); // every JVM has SHA-256
+		}
+	}
+
+	private static String hex( byte[] b ) {
+		final StringBuilder sb = new StringBuilder( b.length * 2 );
+
+		for ( final byte x : b ) {
+			sb.append( Character.forDigit( (x >> 4) & 0xf, 16 ) ).append( Character.forDigit( x & 0xf, 16 ) );
+		}
+
+		return sb.toString();
+	}
+
+	private static File entry( String key ) {
+		try {
+			return new File( dir, hash( key.getBytes( "UTF-8" ) ) );
+		} catch ( final IOException e ) {
+			throw new IllegalStateException( e ); // UTF-8 is always there
+		}
+	}
+
+	/*
+	 * count a new entry, and remove the ones used longest ago when the directory is over its size
+	 */
+	private static synchronized void added( long bytes ) {
+		File[] entries = null;
+
+		if ( totalBytes < 0 ) {
+			// first store since open, size up what earlier runs left behind
+			entries = dir.listFiles();
+			totalBytes = 0;
+			for ( int i = 0; entries != null && i < entries.length; i++ ) {
+				totalBytes += entries[ i ].length();
+			}
+		} else {
+			totalBytes += bytes;
+		}
+
+		if ( totalBytes <= maxBytes ) {
+			return;
+		}
+
+		if ( entries == null && (entries = dir.listFiles()) == null ) {
+			return;
+		}
+
+		// oldest first, down to 90% so this is not done again for every file stored
+		Arrays.sort( entries, new Comparator<File>() {
+			public int compare( File a, File b ) {
+				final long d = a.lastModified() - b.lastModified();
+				return d < 0 ? -1 : (d > 0 ? 1 : 0);
+			}
+		});
+
+		for ( int i = 0; i < entries.length && totalBytes > maxBytes / 10 * 9; i++ ) {
+			final long length = entries[ i ].length();
+			if ( entries[ i ].delete() ) {
+				totalBytes -= length;
+			}
+		}
+	}
+
+	private static void close( Closeable c ) {
+		if ( c != null ) {
+			try {
+				c.close();
+			} catch ( final IOException e ) {
+				// nothing more to do with it
+			}
+		}
+	}
+
+	/*
+	 * the copy of one file's report
+	 */
+	static final class Recording {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream( 1024 );
+		final ByteArrayOutputStream err = new ByteArrayOutputStream( 256 );
+	}
+
+	/*
+	 * writes to the real stream and keeps a copy, until the copy is too big to be kept
+	 */
+	private static final class CopyOutputStream extends OutputStream {
+		private final OutputStream out;
+		private final ByteArrayOutputStream copy;
+
+		CopyOutputStream( OutputStream out, ByteArrayOutputStream copy ) {
+			this.out = out;
+			this.copy = copy;
+		}
+
+		@Override
+		public void write( int b ) throws IOException {
+			out.write( b );
+			if ( copy.size() <= MAX_ENTRY ) {
+				copy.write( b );
+			}
+		}
+
+		@Override
+		public void write( byte[] b, int off, int len ) throws IOException {
+			out.write( b, off, len );
+			if ( copy.size() <= MAX_ENTRY ) {
+				copy.write( b, off, Math.min( len, MAX_ENTRY + 1 - copy.size() ) );
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+	}
+
+}
@@ -27,18 +27,36 @@
 package validate;
 
 import validate.Validate.format;
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileInputStream;
-import java.io.FileReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.regex.PatternSyntaxException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 /*
  * Rule will be an instance for each RULE with an ID in the config file. There must be at least 1 for a working program.
@@ -48,57 +66,33 @@ import java.util.regex.PatternSyntaxException;
 
 class Rule {
 
+	// everything below is set up from the config file, or once per run of the rule, the state of
+	// reading a single data file is kept in a FileContext so the files can be done in parallel
+	static final String STDIN = "-"; // the file name (-f or file=) for data read from STDIN
 	private final ArrayList<String> fileList = new ArrayList<String>();
-	private ArrayList<String> nvRegexUsed = new ArrayList<String>();
 	private Options ruleOption = null;
-	private int errCount;
-	private int lineNumber = 0;
-	private File inputFile = null;
-	private BufferedReader br = null;
-	private String dir = null;
-	private String f = null;
 	private String ruleID = null;
-	private String line = null;
-	private String tmpline = null;
 	private String configFileName = null;
-	private String lineCheckRegex = null;
-	private String lineSkipRegex = null;
-	private boolean continuationState = false;
-	boolean lineSkipRegexExists = false;
-	boolean lineCheckRegexExists = false;
-	
-	// for genericLineEdits
-	StringBuilder linePrefixSuffixRegex = new StringBuilder ( 50 );
-	String linePrefixRegex = null;
-	String lineSuffixRegex = null;
-	String lineReplaceRegex = null;
-	boolean linePrefixRegexExists = false;
-	boolean lineSuffixRegexExists = false;
-	Pattern linePrefixSuffixPattern = null;
-	boolean lineReplaceFlag = false;
-	String[] replaceArray = null;
-	String replaceRegex = null;
-	Matcher m = null;
+	private RulePlan plan = null; // built from ruleOption the first time the rule runs
+	private LineRanges lineRanges = null; // built with the plan from fromLineList and toLineList
+	private final AtomicInteger ruleErrors = new AtomicInteger(); // errors of this RULE so far, for maxErrorsPerRule
+	private String definitionHash = null; // of the options and regexes, made the first time the result cache needs it
+	private List<String> only = null; // the files to validate rather than those of the fileList, null for all of them
 		
 	ArrayList<Pattern> lineFormatRegexList = new ArrayList<Pattern>(); // used with LINE format
 	ArrayList<Integer> fromLineList = new ArrayList<Integer>(); // used with LINE format
 	ArrayList<Integer> toLineList = new ArrayList<Integer>(); // used with LINE format
-	private Pattern lineSkipPattern = null;
-	private Pattern lineCheckPattern = null;
-	private Matcher lineSkipMatcher = null;
 	
 	Object[] patternStringListArray; // used in delimited format
-	Pattern fullDelimitedLinePattern;
-	Matcher lineCheckMatcher = null;
-	boolean hadFirstError = false;
 	format ruleFormat  = null;
 	HashMap<String, NVP> nvpHM = null ; // gets defined in RegexBlock
-	NVP nvp = null;
-	// next 3 NOT private used by RegexBlock
+	NVP nvp = null; // used by RegexBlock while parsing
+	// NOT private used by RegexBlock
 	StringBuilder outDups = new StringBuilder(100);
-	StringBuilder outInfo = null;
-	StringBuilder outUnchecked = null;
 	Object[] patternListArray = null;
+	// where the report goes, the RuleExecutor swaps these for buffers when rules run in parallel
+	PrintStream out = System.out;
+	PrintStream err = System.err;
 		
 	Rule () {
 		// default not used
@@ -129,6 +123,43 @@ class Rule {
 	public void fileAdd( String ruleValue ) {
 		fileList.add( new String(ruleValue ) );
 	}
+
+	void fileClear() {
+		fileList.clear();
+	}
+
+	/*
+	 * the file names as given by file= or -f, with each glob replaced by the files it matches
+	 */
+	Iterator<String> fileNames() {
+		return FileGlob.expand( fileList, ruleOption.getDirPathString(), err );
+	}
+
+	/*
+	 * the name fileName is opened by, with the dirPathString prepended
+	 */
+	String path( String fileName ) {
+		final String dir = ruleOption.getDirPathString();
+
+		if ( dir != null && ! STDIN.equals( fileName ) ) {
+			return dir + fileName;
+		}
+		return fileName;
+	}
+
+	/*
+	 * validate only the files in only, named as fileNames() names them; --watch calls it for the files
+	 * that changed, so no glob is walked again
+	 */
+	void checkIt( List<String> only ) {
+		this.only = only;
+
+		try {
+			checkIt();
+		} finally {
+			this.only = null;
+		}
+	}
 	
 	// this actually does the validation
 	void checkIt ( ) {
@@ -156,485 +187,870 @@ class Rule {
 				doValueDelimited();
 				break;
 			default:
-				System.err.println( "\nfatal: invalid <format=value> found in rule class.");
-				System.exit ( 15 );
+				err.println( "\nfatal: invalid <format=value> found in rule class.");
+				Validate.exit ( 15 );
 		}
 	}
 
 	/*
-	 * a delimited file gets a regex for each column in the data
-	 * after any COMMENT lines are skipped over
+	 * the per rule set up is done, so validate every file of the fileList. With -j the files are
+	 * done in parallel, each report is held and printed in fileList order. The files of a glob are
+	 * validated as the walk finds them
 	 */
-	private void doDelimited() {
+	private void runFiles() {
+		final Iterator<String> names = only != null ? only.iterator() : fileNames();
+		final Iterator<FileContext> contexts = new Iterator<FileContext>() {
+			private String next = null;
+
+			public boolean hasNext() {
+				if ( next == null ) {
+					next = names.hasNext() ? names.next() : null; // may wait for the walk of a glob
+				}
+				return next != null;
+			}
 
-		lineSkipRegexExists = false;
-		lineCheckRegexExists = false;
-		boolean errorFieldUnderline = ruleOption.getErrorFieldUnderline();
-		char[] errorUnderline = null;
-		char[] temp = null;
-		String 	lineCheckRegex = null;
-		lineCheckPattern = null;
-		m = null;
+			public FileContext next() {
+				if ( ! hasNext() ) {
+					throw new NoSuchElementException();
+				}
+				final FileContext ctx = new FileContext( next, out, err );
+				next = null;
+				return ctx;
+			}
 
-		if ( (lineSkipRegex = ruleOption.getLineSkipRegex()) != null ) {
-			lineSkipRegexExists = true;
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		ruleErrors.set( 0 );
+
+		// with an error limit the files are read in order, so it is the first errors that are reported
+		final boolean many = only != null ? only.size() > 1
+				: fileList.size() > 1 || (fileList.size() == 1 && FileGlob.isGlob( fileList.get( 0 ), ruleOption.getDirPathString() ));
+
+		if ( Validate.threads > 1 && ! hasErrorLimit() && many ) {
+			RuleExecutor.runFiles( this, contexts );
+		} else {
+			while ( contexts.hasNext() ) {
+				validateFile( contexts.next() );
+			}
 		}
+	}
+
+	/*
+	 * validate one file, may be called by several threads at once so only the
+	 * FileContext can be changed
+	 */
+	void validateFile( FileContext ctx ) {
 
-		if ( (lineCheckRegex = ruleOption.getLineCheckRegex()) != null ) {
-			lineCheckRegexExists = true;
-			lineCheckPattern = Pattern.compile( lineCheckRegex ); // already tested in options
+		if ( ctx.fileName == null ) {
+			if ( ruleOption.getWarnRuleWithoutFile() ) {
+				ctx.err.println( "\nwarning: RULE with id <" + ruleID + "> has no <file=> specified; RULE is skipped.");
+			}
+			return; // nothing else we can do with no file
 		}
 
-		
-		// 	do the rest for EVERY file given		
-		for (final String fileName : fileList) {
-			errCount = 0;
-			
-			if ( fileName == null ) {
-				if ( ruleOption.getWarnRuleWithoutFile() ) {
-					System.err.println( "\nwarning: RULE with id <" + ruleID + "> has no <file=> specified; RULE is skipped.");
+		ctx.f = path( ctx.fileName );
+
+		// a file the rule validated before, unchanged, gets the report it got then (--cache); not with an
+		// error limit, where the report depends on the files before it, or with --tail, which reports new lines only
+		String cacheKey = null;
+		ResultCache.Recording recording = null;
+
+		if ( ResultCache.enabled() && ! STDIN.equals( ctx.f ) && ! hasErrorLimit() && ! tails( ctx ) ) {
+			cacheKey = ResultCache.key( this, ctx.f );
+
+			if ( cacheKey != null ) {
+				if ( ResultCache.replay( cacheKey, ctx ) ) {
+					return;
 				}
-				continue; // nothing else we can do with no file
+				recording = ResultCache.record( ctx );
 			}
+		}
+
+		validateArchive( ctx );
+
+		if ( recording != null ) {
+			ResultCache.store( cacheKey, ctx, recording );
+		}
+	}
 
-			if ( (dir = ruleOption.getDirPathString()) != null ) {
-				f = dir + fileName;  
+	/*
+	 * validate the file of ctx by what its first bytes show it is: a gzip file as it is uncompressed,
+	 * each file in a zip or tar archive as a file of its own, named archive!entry, else the file as it is.
+	 * The file is opened once and its first bytes are looked at without taking them from what is validated:
+	 * a regular file is read at their offset and then through ctx.channel, STDIN, a pipe or a device is
+	 * read through a buffered stream they are kept in
+	 */
+	private void validateArchive( FileContext ctx ) {
+		FileInputStream fin = null;
+		InputStream in = null; // null while a regular file is read through its channel
+
+		try {
+			if ( STDIN.equals( ctx.f ) ) {
+				in = new BufferedInputStream( stdin(), 65536 );
 			} else {
-				f = fileName;
-			}
-
-			lineNumber = 0;
-
-			try {
-
-				int expectedFieldCount = patternListArray.length; // number or Regexes in block
-				// set size appropriately, but if extra fields are found java will grow size
-				int ArrayListInitialSize = expectedFieldCount + 1 +  ruleOption.getExtraFieldCount();
-				int actualFieldCount;
-				boolean hadError = false;
-				final StringBuilder delimiterRegexInParens = new StringBuilder();
-				delimiterRegexInParens.append( "(" ).append( ruleOption.getDelimiterRegex() ).append( ")" );
-				final Pattern delimiterPattern = Pattern.compile( delimiterRegexInParens.toString() );
-				ArrayList<Integer> delimiterStart = new ArrayList<Integer>( ArrayListInitialSize );
-				ArrayList<Integer> delimiterEnd = new ArrayList<Integer>( ArrayListInitialSize );
-				int delimiterIndex = 0;
-				int lineLength = 0;
-
-				StringBuilder fields;
-				String[] lineArray = null;
-				lineSkipPattern = Pattern.compile( lineSkipRegex );
-				Matcher delimiterMatcher = null;
-				inputFile = new File(f);
-				br = new BufferedReader(new FileReader(inputFile));
-				outInfo = new StringBuilder( 500 );
-				errCount = 0;
-				lineNumber = 0;
-				String EOLdelimiterAtEOL = ruleOption.getDelimiterRegex() + '$'; 
-				Pattern EOLPat = Pattern.compile( EOLdelimiterAtEOL ); // will use on every non-null (non-comment too) line of input
-
-				// handle editing
-				// gets all options for prefix, suffix, replace
-				genericLineEdittingPrep();
-
-				while ( true ) {		// read all the lines in the file to validate
-					fields = new StringBuilder( 500 );
-
-					hadError = false;
-					actualFieldCount = 0;
-					lineLength = 0;
-
-					line = br.readLine();
-
-					if ( line == null ) {
-						// file is done lets close and then check status
-						checkEOFstatus( outInfo.toString(), lineNumber, errCount, "", f); // sends the DATA file
-						outInfo = new StringBuilder( 500 );
-						break;
-					}
+				try {
+					fin = new FileInputStream( ctx.f );
+				} catch ( final FileNotFoundException e ) {
+					validateData( ctx ); // the format reports a file it can't open as it always has
+					return;
+				}
 
-					// see if we should skip lines
-					if ( lineSkipRegexExists ) {
-						lineSkipMatcher = lineSkipPattern.matcher( line );
-						if ( lineSkipMatcher.find() ) {
-							continue;
-						}
-					}
+				if ( new File( ctx.f ).isFile() ) {
+					ctx.channel = fin.getChannel();
+				} else {
+					in = new BufferedInputStream( fin, 65536 ); // what is read of a pipe is gone, it can't be opened again
+				}
+			}
 
-					/*
-					 * use of genericLineEdditing to adjust line before validation
-					 */
+			Archive.Kind kind = in != null ? Archive.kind( in ) : Archive.kind( ctx.channel );
 
-					if ( lineReplaceFlag ) {
-						//line = line.replaceAll( replaceArray[0], replaceArray[1]);
-						Pattern p = Pattern.compile( replaceArray[0] );
-						Matcher mm = p.matcher( line );
-						if ( mm.find() ) {
-							line = mm.replaceAll( replaceRegex );
-						}
-					}
+			if ( kind == Archive.Kind.GZIP ) {
+				in = Archive.gunzip( in != null ? in : fin );
+				ctx.channel = null;
+				kind = Archive.kind( in ); // a tar.gz or a zip that was gzipped
+			}
 
-					/*
-					 *  we can trim off the start and/or end of each line BEFORE we look at the remainder "nv" pair
-					 */
-					if ( linePrefixRegexExists || lineSuffixRegexExists ) {
-						m = linePrefixSuffixPattern.matcher( line );
-						line = m.replaceAll( "" );
+			switch ( kind ) {
+				case ZIP:
+					if ( in == null ) {
+						validateZip( ctx );
+					} else {
+						validateZip( ctx, new ZipInputStream( in ) );
 					}
+					break;
+				case TAR:
+					validateTar( ctx, new Archive.TarReader( in != null ? in : new BufferedInputStream( fin, 65536 ) ) );
+					break;
+				default:
+					ctx.in = in; // gzip in gzip is data too
+					validateData( ctx );
+			}
+		} catch ( final IOException ioe ) {
+			ctx.err.println( "\nfatal: can't read input file <" + ctx.fileName + ">, RULE with id <" + ruleID + ">. " + ioe.getMessage() );
+			Validate.exit( 15 );
+		} finally {
+			ctx.in = null;
+			ctx.channel = null;
+			closeReader( in );
+			closeReader( fin );
+		}
+	}
 
-					/*
-					 * OK but we could still have more than we are interested in so last global check
-					 * determines if we really parse the line
-					 */
-					//  use it to decide skip it or check it
-					if ( lineCheckRegexExists ) {
+	/*
+	 * the files of a zip archive, with -j at the same time as the files of a rule are
+	 */
+	private void validateZip( FileContext ctx ) throws IOException {
+		final ZipFile zip = new ZipFile( ctx.f );
 
-						lineCheckMatcher = lineCheckPattern.matcher( line );
-						if (! lineCheckMatcher.find() ) {
-							continue;
-						}
-					}
-					// end of genericLineEditting
+		try {
+			final ArrayList<ZipEntry> zipEntries = new ArrayList<ZipEntry>();
+			final ArrayList<FileContext> entries = new ArrayList<FileContext>();
 
-					//  use it to decide skip it or check it
-					if ( lineCheckRegexExists ) {
+			for ( final Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements(); ) {
+				final ZipEntry zipEntry = e.nextElement();
 
-						lineCheckMatcher = lineCheckPattern.matcher( line );
-						if ( ! lineCheckMatcher.find() ) {
-							continue;
-						}
-					}
+				if ( ! zipEntry.isDirectory() ) {
+					final FileContext entry = new FileContext( ctx.fileName, ctx.out, ctx.err );
+					entry.f = ctx.f + "!" + zipEntry.getName();
+					zipEntries.add( zipEntry );
+					entries.add( entry );
+				}
+			}
 
-					lineNumber++;
+			if ( entries.isEmpty() ) {
+				ctx.err.println( "\nwarning: archive <" + ctx.f + "> has no files, RULE with id <" + ruleID + ">." );
+			}
 
-					// for debugging let user see what is being checked
-					if ( (ruleOption.getLineShow() == true)) {
-						outInfo.append("\nvalidating: <").append(lineNumber).append(">: ").append(line);
-					}
+			if ( Validate.threads > 1 && entries.size() > 1 && ! hasErrorLimit() ) {
+				RuleExecutor.runEntries( this, ctx, zip, zipEntries, entries );
+			} else {
+				for ( int i = 0; i < entries.size(); i++ ) {
+					validateEntry( entries.get( i ), zip, zipEntries.get( i ) );
+					ctx.addEntry( entries.get( i ) );
+				}
+			}
+		} finally {
+			zip.close();
+		}
+	}
 
-					lineLength = line.length();
-					delimiterMatcher = delimiterPattern.matcher( line );
-
-					/*
-					 * expectedFieldCount=the number or regexes we have, thus the number of fields=actualFieldCount we expect
-					 * BUT
-					 * we have multiple end of line delimiter situations e.g.
-					 * expectedFieldCount=2 so we expect 2 fields, we could have
-					 * ONE:TWO
-					 * ONE:TWO:
-					 * less than 1 : would be an error TOO FEW FIELDS
-					 * more than 2 : would be an error TOO MANY
-					 * if : = 1 EOLdelimiter=false OK
-					 * if : = 2 EOLdelimiter=true OK
-					 * if : = 1 or 2 AND EOLdelimiter=optional OK
-					 */
-
-					// lets see what the input line ends with
-
-					Matcher EOLmatch = EOLPat.matcher( line );
-
-					if ( EOLmatch.find() ) {
-						// if here line ends in a delimiter
-						if ( "false".equals(ruleOption.getEOLdelimiter() ) ) {
-							// line is no good since no EOLdelimiter wanted and its there
-							outInfo.append("\n").append(lineNumber).append("\n").append(line).append("\n  <error, final delimiter not expected>\n");
-							errCount++;
-							hadError = true;
-							Validate.rc( 2 ); // record error
-						}
+	/*
+	 * the files of a zip archive that can only be read as a stream, one after the other
+	 */
+	private void validateZip( FileContext ctx, ZipInputStream zip ) throws IOException {
+		ZipEntry zipEntry = null;
+		int files = 0;
+
+		while ( (zipEntry = zip.getNextEntry()) != null ) {
+			if ( ! zipEntry.isDirectory() ) {
+				final FileContext entry = new FileContext( ctx.fileName, ctx.out, ctx.err );
+				entry.f = ctx.f + "!" + zipEntry.getName();
+				entry.in = zip;
+				validateData( entry );
+				ctx.addEntry( entry );
+				files++;
+			}
+		}
 
-						// if here: we had an EOLdelimiter lets trim it off - but the line might not be correct
-						line = line.replaceAll( EOLdelimiterAtEOL, "");
+		if ( files == 0 ) {
+			ctx.err.println( "\nwarning: archive <" + ctx.f + "> has no files, RULE with id <" + ruleID + ">." );
+		}
+	}
 
-					} else {
-						// EOLdelimiter is NOT there: if optional its ok, but if required its error
-						if ( "true".equals( ruleOption.getEOLdelimiter() ) ) {
-							outInfo.append("\n").append(lineNumber).append(":\n").append(line).append("\n  <error, final delimiter missing>\n");
-							errCount++;
-							hadError = true;
-							Validate.rc( 2 ); // record error
-						}
-					}
+	/*
+	 * validate one file of a zip archive, called by RuleExecutor.runEntries
+	 */
+	void validateEntry( FileContext entry, ZipFile zip, ZipEntry zipEntry ) {
 
-					EOLmatch = null;
+		try {
+			entry.in = zip.getInputStream( zipEntry );
+			validateData( entry );
+		} catch ( final IOException ioe ) {
+			entry.err.println( "\nfatal: can't read input file <" + entry.f + ">, RULE with id <" + ruleID + ">. " + ioe.getMessage() );
+			Validate.exit( 15 );
+		} finally {
+			closeReader( entry.in );
+		}
+	}
 
-					// since EOL is taken care of now we need to be concerned with actual fields of data
-					// ***** so the rest below is ONLY needed if we have NOT had an error
-					boolean fieldErr = false;
+	/*
+	 * the files of a tar archive, one after the other as the archive is a stream
+	 */
+	private void validateTar( FileContext ctx, Archive.TarReader tar ) throws IOException {
+		String name = null;
+		int files = 0;
+
+		while ( (name = tar.next()) != null ) {
+			final FileContext entry = new FileContext( ctx.fileName, ctx.out, ctx.err );
+			entry.f = ctx.f + "!" + name;
+			entry.in = tar.entry();
+			validateData( entry );
+			ctx.addEntry( entry );
+			files++;
+		}
 
-					if ( hadError == false ) {
-						delimiterIndex = 0;
+		if ( files == 0 ) {
+			ctx.err.println( "\nwarning: archive <" + ctx.f + "> has no files, RULE with id <" + ruleID + ">." );
+		}
+	}
 
-						if ( errorFieldUnderline ) {
-							temp = new char[ lineLength ];
-							Arrays.fill( temp,  '0' ); 
-						}
+	/*
+	 * validate the data of ctx with the format of the rule
+	 */
+	private void validateData( FileContext ctx ) {
 
-						delimiterIndex = 0;
-						while ( delimiterMatcher.find() ) { // get the start and end of each delimiter
+		if ( plan.streamReport ) {
+			// print the report as it is found, the summary of the file follows it
+			ctx.outInfo.stream( ctx.out, "\n% ID: " + ruleID + " FILE: " + ctx.f );
+		}
 
-							delimiterStart.add( delimiterMatcher.start() );
-							delimiterEnd.add( delimiterMatcher.end() );
+		try {
+			switch ( ruleFormat ) {
+				case NAME_VALUE:
+					doNameValueFile( ctx );
+					break;
+				case JAVA:
+					doJavaFile( ctx );
+					break;
+				case DELIMITED:
+					doDelimitedFile( ctx );
+					break;
+				case CUSTOM:
+					doCustomFile( ctx );
+					break;
+				case LINE:
+					doLineFile( ctx );
+					break;
+				default:
+					ctx.err.println( "\nfatal: invalid <format=value> found in rule class.");
+					Validate.exit ( 15 );
+			}
+		} catch ( final ExitException e ) {
+			ctx.discardReports(); // a report spilled to a file before the run ended
+			throw e;
+		}
+	}
 
-							if ( errorFieldUnderline ) {
-								Arrays.fill( temp, delimiterStart.get(delimiterIndex), delimiterEnd.get(delimiterIndex), '1');
-							}	
+	/*
+	 * validate the lines from start up to end of the file in ctx, called by RuleExecutor.runChunks
+	 */
+	void validateChunk( FileContext ctx, long start, long end ) {
+		LineSource br = null;
 
-							delimiterIndex++;
-						}
+		try {
+			br = openLineSource( ctx, start, end );
 
-						lineArray = line.split( ruleOption.getDelimiterRegex(), delimiterIndex + 1);
+			if ( ruleFormat == format.DELIMITED ) {
+				doDelimitedReader( ctx, br );
+			} else {
+				doLineReader( ctx, br );
+			}
+		} catch ( final IOException ioe ) {
+			ctx.err.println( "\nfatal: can't read input file <" + ctx.fileName + ">, RULE with id <" + ruleID + ">. " + ioe.getMessage() );
+			ctx.discardReports();
+			Validate.exit( ruleFormat == format.DELIMITED ? 50 : 15 );
+		} catch ( final ExitException e ) {
+			ctx.discardReports();
+			throw e;
+		} finally {
+			closeReader( br );
+		}
+	}
 
-						// from the delimiterArray we can build a str + start/end arrays needed only for underline
-						int[] stringStart = null;
-						int[] stringEnd = null;
+	/*
+	 * true if the file in ctx is read from where the last run stopped (--tail), only LINE and DELIMITED files
+	 * are; not STDIN, and not a charset whose line ends can't be found as bytes
+	 */
+	private boolean tails( FileContext ctx ) {
+		return Checkpoint.enabled() && (ruleFormat == format.LINE || ruleFormat == format.DELIMITED)
+				&& ! STDIN.equals( ctx.f ) && ctx.in == null && MappedLineSource.canSplit( ruleOption.getFileCharset() );
+	}
 
-						boolean done = false;
-						actualFieldCount = lineArray.length;
+	/*
+	 * the --tail checkpoint of the file in ctx, with the line number set to where it starts;
+	 * null when the file is read from the start
+	 */
+	private Checkpoint checkpoint( FileContext ctx ) throws IOException {
 
-						/*
-						 * because we allow a trailing field in certain cases of EOL we need to 
-						 * check more that actual and expected count
-						 */
+		if ( ! tails( ctx ) ) {
+			return null;
+		}
 
-						if ( actualFieldCount < expectedFieldCount ) {
-							// failure
-							// add a test in case it was just whitespace
+		final Checkpoint checkpoint = Checkpoint.load( this, ctx.f );
 
-							// only in the "all case"
-							if ( ruleOption.getErrorReportDetails() == 'a' ) {
+		if ( checkpoint.restarted ) {
+			ctx.err.println( "\nwarning: input file <" + ctx.f + "> was truncated or replaced since the last --tail run, it is validated from the start." );
+		}
 
-								if ( line.matches("\\s*") ) {
-									outInfo.append("\n\n").append(lineNumber).append(
-											":  << error, input is just whitespace, therefore less fields than expected for the give regexes. Consider adding to lineSkipRegex. >>\n");
-								} else {
-									outInfo.append("\n\n").append(lineNumber).append(":\n").append(line).append("\n  <error, less fields than expected for the given regexes>\n");
-								}
+		ctx.lineNumber = checkpoint.lineNumber;
+		return checkpoint;
+	}
 
-							}
+	/*
+	 * a LINE or DELIMITED file can be split into chunks when -j is used and no line depends
+	 * on the lines before it: no line continuation and no line range restrictions
+	 * returns null when the file should be read in one piece
+	 */
+	private long[] chunkBounds( FileContext ctx ) throws IOException {
 
-							errCount++;
-							hadError = true;
-							Validate.rc( 2 ); // record error
-							done = true;
+		if ( Validate.threads < 2 || ruleOption.getFileLineContinuation() || hasErrorLimit() || STDIN.equals( ctx.f ) || ctx.in != null ) {
+			return null;
+		}
 
-						} else if ( actualFieldCount == expectedFieldCount ) {
-							; // perfect just check fields
-						} else {
-							// so actual is greater
-							// special case: the user could want extra end fields but not test them
-
-							if ( ruleOption.getExtraFieldCount() >= 1 ) { 
-								if ( actualFieldCount > expectedFieldCount + ruleOption.getExtraFieldCount() ) {
-									// too many call it an error
-									// only in the "all case"
-									if ( ruleOption.getErrorReportDetails() == 'a' ) {
-										outInfo.append("\n").append(lineNumber).append(":\n").append(line).append("\n  <error, <").append(
-												actualFieldCount - expectedFieldCount).append("> extra field(s) exceed the count of <").append(
-														ruleOption.getExtraFieldCount() ).append("> that was specified>");
-									}
-
-									errCount++;
-									hadError = true;
-									Validate.rc( 2 );
+		if ( ruleFormat == format.LINE && hasLineRanges() ) {
+			return null;
+		}
 
-								} else {
-									if (ruleOption.getWarnExtraFields() == true ) {
-										outInfo.append("\n").append(lineNumber).append(":\n").append(line).append("\n  <warning, <").append(
-												actualFieldCount - expectedFieldCount).append("> extra field(s), only the first <").append(
-														expectedFieldCount).append("> are validated>");
+		if ( ! new File( ctx.f ).isFile() ) {
+			return null; // only a regular file can be read from the middle
+		}
 
-									}
-									Validate.rc( 1 );
-								}
+		return FileChunks.split( new File( ctx.f ), Validate.threads, ruleOption.getFileCharset() );
+	}
 
+	/*
+	 * true if a regex of a LINE rule has a %from%to% line range
+	 */
+	private boolean hasLineRanges() {
 
-							} else if ( ruleOption.getExtraFieldCount() < 0 ) {
-								; // just ignore them without warning
-							} else {
-								// by default extra == 0 so the user has an error to deal with
+		for ( int i = 0; i < fromLineList.size(); i++ ) {
+			if ( fromLineList.get( i ) > 1 || toLineList.get( i ) != 0 ) {
+				return true;
+			}
+		}
 
-								// only in the "all case"
-								if ( ruleOption.getErrorReportDetails() == 'a' ) {
-									outInfo.append("\n").append(lineNumber).append(":\n").append(
-											line).append("  <error, too many fields for the given regexes> ");
-								}
+		return false;
+	}
 
-								errCount++;
-								hadError = true;
-								Validate.rc( 2 ); // record error
-								done = true;
+	/*
+	 * true if maxErrorsPerFile, maxErrorsPerRule or maxErrors (-e) may stop a file before its end
+	 */
+	private boolean hasErrorLimit() {
+		return plan.maxErrorsPerFile > 0 || plan.maxErrorsPerRule > 0 || Validate.maxErrors > 0;
+	}
 
-							} 
+	/*
+	 * adds the errors found in ctx since the last call to the RULE and run totals
+	 */
+	private void countErrors( FileContext ctx ) {
+		final int errors = ctx.errCount - ctx.errCountShared;
 
+		if ( errors > 0 ) {
+			ctx.errCountShared = ctx.errCount;
+			ruleErrors.addAndGet( errors );
+			Validate.errorsCounted.addAndGet( errors );
+		}
+	}
 
-						} // end of if for had delimiter
+	/*
+	 * called before each line (or property) is read, true once an error limit is used up; the
+	 * caller stops reading and the summary of the file is marked TRUNCATED
+	 */
+	private boolean errorLimitReached( FileContext ctx ) {
 
-						// before we check if each field matched we want to know the position of strings IF
-						// the user wants underlining else don't bother
+		if ( ! hasErrorLimit() ) {
+			return false;
+		}
 
+		countErrors( ctx );
 
-						// we had the right delimiter state above so need to do fields
-						if ( ! done ) {
+		if ( (plan.maxErrorsPerFile > 0 && ctx.errCount >= plan.maxErrorsPerFile)
+				|| (plan.maxErrorsPerRule > 0 && ruleErrors.get() >= plan.maxErrorsPerRule)
+				|| (Validate.maxErrors > 0 && Validate.errorsCounted.get() >= Validate.maxErrors) ) {
+			ctx.truncated = true;
+			Validate.truncated = true;
+			return true;
+		}
 
-							if ( errorFieldUnderline ) {
-								errorUnderline = new char[ lineLength ];
-								Arrays.fill( errorUnderline, ' ' ); // start clean and update to ^ as needed
-								stringStart = new int[ lineArray.length ]; 
-								stringEnd = new int[ lineArray.length ];
-								int index = 0;
-								boolean marking = false;
-								int p = 0;
+		return false;
+	}
 
+	/*
+	 * the lines of the file in ctx from start up to end, mapped unless the user chose fileReader=buffered
+	 * or the charset can't be split into lines as bytes, or the file is - (STDIN) or not a regular file
+	 */
+	private LineSource openLineSource( FileContext ctx, long start, long end ) throws IOException {
+		final File file = new File( ctx.f );
+		final Charset charset = ruleOption.getFileCharset();
 
-								for ( p = 0; p < lineLength; p++ ) {
-									// walk the temp[] and set string start/end values
-									if ( marking == false ) {
-										if ( temp != null && temp[ p ] == '0' ) {
-											marking = true;
-											stringStart[ index ] = p;
-										}
-									} else {
-										// marking = true
-										if ( temp[ p ] == '1' ) {
-											stringEnd[ index ] = p;
-											marking = false;
-											index++;
-										}
-									}
-								}
+		if ( ctx.in != null ) {
+			// uncompressed as it is read, it can't be mapped or split
+			return new ReaderLineSource( unclosed( ctx.in ), charset );
+		}
 
-								if ( marking == true ) {
-									// need to close the stringEnd
-									stringEnd[ index ] = p;
-								}
+		if ( end < 0 ) {
+			end = file.length();
+		}
+
+		if ( ctx.channel != null ) {
+			// the file validateArchive has open, it closes it
+			if ( "mapped".equals( ruleOption.getFileReader() ) && MappedLineSource.canSplit( charset ) ) {
+				return new MappedLineSource( ctx.channel, charset, start, end );
+			} else {
+				return new ReaderLineSource( ctx.channel, charset, start, end );
+			}
+		}
+
+		if ( "mapped".equals( ruleOption.getFileReader() ) && MappedLineSource.canSplit( charset ) ) {
+			return new MappedLineSource( file, charset, start, end );
+		} else {
+			return new ReaderLineSource( file, charset, start, end );
+		}
+	}
+
+	/*
+	 * a delimited file gets a regex for each column in the data
+	 * after any COMMENT lines are skipped over
+	 */
+	private void doDelimited() {
 
-							} // end if errorFieldUnderline
+		// every pattern and option the lines need, compiled once
+		buildPlan();
 
-							// go field by field
-							// we will still use the groups captured to determine string lengths
-							int j = 0;
-							for ( ; j < expectedFieldCount; j++ ) {
+		// 	do the rest for EVERY file given		
+		runFiles();
 
-								boolean justNull = false;
-								m = ((Pattern)patternListArray[ j ]).matcher( lineArray[ j ] ); // reset the matcher for the next pattern
+	}
 
-								if ( ! m.find() ) { // NO-Match=error
+	private void doDelimitedFile( FileContext ctx ) {
 
-									fieldErr = true;
-									Validate.rc( 2 ); // record error
+		LineSource br = null;
 
-									if ( fields.length() > 0 ) {
-										fields.append( "," );
-									} else {
-										fields.append( ":" );
-									}
+		try {
+			final Checkpoint checkpoint = checkpoint( ctx );
+			final long[] chunks = checkpoint == null ? chunkBounds( ctx ) : null;
 
-									// special case mark a null field that failed
-									if ( lineArray[j].length() == 0 ) {
-										justNull = true;
-										fields.append( "^" );
-									}
+			if ( checkpoint != null ) {
+				// only the lines added since the last run (--tail)
+				br = openLineSource( ctx, checkpoint.offset, checkpoint.end );
+				doDelimitedReader( ctx, br );
 
-									fields.append( j + 1 ); // increment field so we count from 1 not Zero
+				if ( ! ctx.truncated ) {
+					checkpoint.save( ctx.lineNumber );
+				}
+			} else if ( chunks != null ) {
+				RuleExecutor.runChunks( this, ctx, chunks );
+			} else {
+				br = openLineSource( ctx, 0, -1 );
+				doDelimitedReader( ctx, br );
+			}
+		} catch ( final IOException ioe ) {
+			ctx.err.println( "\nfatal: can't read input file <" + ctx.fileName + ">, RULE with id <" + ruleID + ">. "  + ioe.getMessage() );
+			Validate.exit( 50 );	
+		} finally {
+			closeReader( br );
+		}
 
-									if ( errorFieldUnderline && justNull == false ) {
+		// file is done lets check status
+		checkEOFstatus( ctx, ctx.outInfo, ctx.lineNumber, ctx.errCount, ctx.outUnchecked, ctx.f ); // sends the DATA file
+	}
 
-										if ( lineLength > 0 && fieldErr ) {
-											Arrays.fill( errorUnderline, stringStart[ j ] , stringEnd[ j ], '^' );
-										} else {
-											outInfo.append("\n\n").append(lineNumber).append(":\n").append("  < line is only a newline character >\n");
-										}
-									}
-								} 
+	/*
+	 * validate the lines read from br, which is either a whole file or one chunk of it
+	 */
+	private void doDelimitedReader( FileContext ctx, LineSource br ) throws IOException {
 
+		boolean errorFieldUnderline = plan.errorFieldUnderline;
+		char[] errorUnderline = null;
+		String line = null;
+		Matcher m = null;
+		Matcher lineSkipMatcher = null;
+		Matcher lineCheckMatcher = null;
+		final ReportBuffer outInfo = ctx.outInfo;
 
-							} // end of checking field by field
+		int expectedFieldCount = patternListArray.length; // number or Regexes in block
+		int actualFieldCount;
+		boolean hadError = false;
+		final DelimitedTokenizer tokenizer = new DelimitedTokenizer( plan.delimiterLiteral, plan.delimiterPattern ); // offsets reused for every line
+		final Matcher fullLineMatcher = plan.fullDelimitedLinePattern != null ? plan.fullDelimitedLinePattern.matcher( "" ) : null;
+		int lineLength = 0;
 
-							// now only for case of allowed extra fields && warning on
-							if (errorFieldUnderline && ruleOption.getExtraFieldCount() >= 1 && ruleOption.getWarnExtraFields() ) {
-								for ( ; j < actualFieldCount; j++ ) {
-									Arrays.fill( errorUnderline, stringStart[ j ] , stringEnd[ j ], '?' );
-								}
-							} 
+		final StringBuilder fields = new StringBuilder( 500 ); // emptied for each line
 
-							if ( hadError == false && fieldErr == true ) {
-								errCount++; 
-								Validate.rc( 2 ); // record error
-							}
+		while ( true ) {		// read all the lines in the file to validate
 
-						}
-					}  
+			if ( errorLimitReached( ctx ) ) {
+				break;
+			}
 
-					if ( hadError == false && fieldErr == false ) {
-						// for debugging
-						if ( ruleOption.getShowValidData() == true ) {
-							outInfo.append("\n\n").append(lineNumber).append(": valid\n").append(line).append("\n");
-						}
-						continue;
+			fields.setLength( 0 );
+
+			hadError = false;
+			actualFieldCount = 0;
+			lineLength = 0;
+
+			line = br.readLine();
+
+			if ( line == null ) {
+				break; // file is done, the caller checks the status
+			}
+
+			// see if we should skip lines
+			if ( plan.lineSkipPattern != null ) {
+				lineSkipMatcher = ctx.matchers.reset( plan.lineSkipPattern, line );
+				if ( lineSkipMatcher.find() ) {
+					continue;
+				}
+			}
+
+			/*
+			 * use of genericLineEdditing to adjust line before validation
+			 */
+
+			if ( plan.replacePattern != null ) {
+				Matcher mm = ctx.matchers.reset( plan.replacePattern, line );
+				if ( mm.find() ) {
+					line = mm.replaceAll( plan.replacement );
+				}
+			}
+
+			/*
+			 *  we can trim off the start and/or end of each line BEFORE we look at the remainder "nv" pair
+			 */
+			if ( plan.linePrefixSuffixPattern != null ) {
+				m = ctx.matchers.reset( plan.linePrefixSuffixPattern, line );
+				line = m.replaceAll( "" );
+			}
+
+			/*
+			 * OK but we could still have more than we are interested in so last global check
+			 * determines if we really parse the line
+			 */
+			//  use it to decide skip it or check it
+			if ( plan.lineCheckPattern != null ) {
+
+				lineCheckMatcher = ctx.matchers.reset( plan.lineCheckPattern, line );
+				if (! lineCheckMatcher.find() ) {
+					continue;
+				}
+			}
+			// end of genericLineEditting
+
+			ctx.lineNumber++;
+
+			// for debugging let user see what is being checked
+			if ( (plan.lineShow == true)) {
+				outInfo.append("\nvalidating: <").appendLineNumber(ctx.lineNumber).append(">: ").append(line);
+			}
+
+			// most lines are valid: one match of the whole line says so, the fields are only split
+			// and checked one by one, for the error report, when it fails
+			if ( fullLineMatcher != null && plan.fitsFullDelimitedLine( line ) && fullLineMatcher.reset( line ).matches() ) {
+				if ( plan.showValidData == true ) {
+					if ( ! plan.EOLdelimiterNotAllowed && line.length() > 0 && plan.delimiterLiteral.charAt( 0 ) == line.charAt( line.length() - 1 ) ) {
+						line = line.substring( 0, line.length() - 1 ); // shown less the EOL delimiter, as below
 					}
+					outInfo.append("\n\n").appendLineNumber(ctx.lineNumber).append(": valid\n").append(line).append("\n");
+				}
+				continue;
+			}
+
+			lineLength = line.length();
+			tokenizer.tokenize( line ); // delimiters of the line before any EOL delimiter is trimmed
+
+			/*
+			 * expectedFieldCount=the number or regexes we have, thus the number of fields=actualFieldCount we expect
+			 * BUT
+			 * we have multiple end of line delimiter situations e.g.
+			 * expectedFieldCount=2 so we expect 2 fields, we could have
+			 * ONE:TWO
+			 * ONE:TWO:
+			 * less than 1 : would be an error TOO FEW FIELDS
+			 * more than 2 : would be an error TOO MANY
+			 * if : = 1 EOLdelimiter=false OK
+			 * if : = 2 EOLdelimiter=true OK
+			 * if : = 1 or 2 AND EOLdelimiter=optional OK
+			 */
+
+			// lets see what the input line ends with
+
+			Matcher EOLmatch = ctx.matchers.reset( plan.EOLPattern, line );
+
+			if ( EOLmatch.find() ) {
+				// if here line ends in a delimiter
+				if ( plan.EOLdelimiterNotAllowed ) {
+					// line is no good since no EOLdelimiter wanted and its there
+					outInfo.append("\n").appendLineNumber(ctx.lineNumber).append("\n").append(line).append("\n  <error, final delimiter not expected>\n");
+					ctx.errCount++;
+					hadError = true;
+					ctx.rc( 2 ); // record error
+				}
+
+				// if here: we had an EOLdelimiter lets trim it off - but the line might not be correct
+				line = EOLmatch.replaceAll( "" );
+
+			} else {
+				// EOLdelimiter is NOT there: if optional its ok, but if required its error
+				if ( plan.EOLdelimiterRequired ) {
+					outInfo.append("\n").appendLineNumber(ctx.lineNumber).append(":\n").append(line).append("\n  <error, final delimiter missing>\n");
+					ctx.errCount++;
+					hadError = true;
+					ctx.rc( 2 ); // record error
+				}
+			}
+
+			EOLmatch = null;
+
+			// since EOL is taken care of now we need to be concerned with actual fields of data
+			// ***** so the rest below is ONLY needed if we have NOT had an error
+			boolean fieldErr = false;
+
+			if ( hadError == false ) {
+				// fields of the line as it is now, less any EOL delimiter
+				tokenizer.fields( line );
+
+				// from the delimiterArray we can build a str + start/end arrays needed only for underline
+				int[] stringStart = null;
+				int[] stringEnd = null;
+
+				boolean done = false;
+				actualFieldCount = tokenizer.fieldCount;
+
+				/*
+				 * because we allow a trailing field in certain cases of EOL we need to 
+				 * check more that actual and expected count
+				 */
+
+				if ( actualFieldCount < expectedFieldCount ) {
+					// failure
+					// add a test in case it was just whitespace
+
+					// only in the "all case"
+					if ( plan.errorReportDetails == 'a' ) {
+
+						if ( ctx.matchers.reset( RulePlan.WHITESPACE, line ).matches() ) {
+							outInfo.append("\n\n").appendLineNumber(ctx.lineNumber).append(
+									":  << error, input is just whitespace, therefore less fields than expected for the give regexes. Consider adding to lineSkipRegex. >>\n");
+						} else {
+							outInfo.append("\n\n").appendLineNumber(ctx.lineNumber).append(":\n").append(line).append("\n  <error, less fields than expected for the given regexes>\n");
+						}
 
-					// how to report findings on error				
-					if ( (hadFirstError == false) && (ruleOption.getErrorReportDetails() != 'e') ) {
-						hadFirstError = true;
 					}
 
-					switch ( ruleOption.getErrorReportDetails() ) {
-					case 'n':
-						outInfo.append(lineNumber).append(",");
-						break;
-					case 'l':
-						outInfo.append(line);
-						break;
-					case 'a':
+					ctx.errCount++;
+					hadError = true;
+					ctx.rc( 2 ); // record error
+					done = true;
 
-						if ( fieldErr ) {
-							outInfo.append("\n").append(lineNumber);
+				} else if ( actualFieldCount == expectedFieldCount ) {
+					; // perfect just check fields
+				} else {
+					// so actual is greater
+					// special case: the user could want extra end fields but not test them
+
+					if ( plan.extraFieldCount >= 1 ) { 
+						if ( actualFieldCount > expectedFieldCount + plan.extraFieldCount ) {
+							// too many call it an error
+							// only in the "all case"
+							if ( plan.errorReportDetails == 'a' ) {
+								outInfo.append("\n").appendLineNumber(ctx.lineNumber).append(":\n").append(line).append("\n  <error, <").append(
+										actualFieldCount - expectedFieldCount).append("> extra field(s) exceed the count of <").append(
+												plan.extraFieldCount ).append("> that was specified>");
+							}
+
+							ctx.errCount++;
+							hadError = true;
+							ctx.rc( 2 );
+
+						} else {
+							if (plan.warnExtraFields == true ) {
+								outInfo.append("\n").appendLineNumber(ctx.lineNumber).append(":\n").append(line).append("\n  <warning, <").append(
+										actualFieldCount - expectedFieldCount).append("> extra field(s), only the first <").append(
+												expectedFieldCount).append("> are validated>");
+
+							}
+							ctx.rc( 1 );
+						}
+
+
+					} else if ( plan.extraFieldCount < 0 ) {
+						; // just ignore them without warning
+					} else {
+						// by default extra == 0 so the user has an error to deal with
+
+						// only in the "all case"
+						if ( plan.errorReportDetails == 'a' ) {
+							outInfo.append("\n").appendLineNumber(ctx.lineNumber).append(":\n").append(
+									line).append("  <error, too many fields for the given regexes> ");
 						}
 
-						if ( ruleOption.getErrorFieldUnderline() ) {
+						ctx.errCount++;
+						hadError = true;
+						ctx.rc( 2 ); // record error
+						done = true;
+
+					} 
+
 
-							if ( fieldErr == true ) {
+				} // end of if for had delimiter
 
-								// user wants bad fields underlined with '^'
-								// we have a line (with correct field count) so can report it
+				// before we check if each field matched we want to know the position of strings IF
+				// the user wants underlining else don't bother
 
-								outInfo.append(fields).append("\n").append(line).append("\n");
-								// its possible there was an error but nothing to underline because of a null field
 
-								if ( hadFirstError ) {
-									outInfo.append( new String( errorUnderline ) );
+				// we had the right delimiter state above so need to do fields
+				if ( ! done ) {
+
+					if ( errorFieldUnderline ) {
+						errorUnderline = new char[ lineLength ];
+						Arrays.fill( errorUnderline, ' ' ); // start clean and update to ^ as needed
+						stringStart = new int[ actualFieldCount ];
+						stringEnd = new int[ actualFieldCount ];
+						tokenizer.runs( stringStart, stringEnd, lineLength ); // the text between delimiters
+
+					} // end if errorFieldUnderline
+
+					// go field by field
+					// we will still use the groups captured to determine string lengths
+					int j = 0;
+					for ( ; j < expectedFieldCount; j++ ) {
+
+						boolean justNull = false;
+						m = ctx.matchers.reset( ((Pattern)patternListArray[ j ]), line ).region( tokenizer.fieldStart[ j ], tokenizer.fieldEnd[ j ] ); // the field, no substring
+
+						if ( ! m.find() ) { // NO-Match=error
+
+							fieldErr = true;
+							ctx.rc( 2 ); // record error
+
+							if ( fields.length() > 0 ) {
+								fields.append( "," );
+							} else {
+								fields.append( ":" );
+							}
+
+							// special case mark a null field that failed
+							if ( tokenizer.fieldStart[ j ] == tokenizer.fieldEnd[ j ] ) {
+								justNull = true;
+								fields.append( "^" );
+							}
+
+							fields.append( j + 1 ); // increment field so we count from 1 not Zero
+
+							if ( errorFieldUnderline && justNull == false ) {
+
+								if ( lineLength > 0 && fieldErr ) {
+									Arrays.fill( errorUnderline, stringStart[ j ] , stringEnd[ j ], '^' );
+								} else {
+									outInfo.append("\n\n").appendLineNumber(ctx.lineNumber).append(":\n").append("  < line is only a newline character >\n");
 								}
+							}
+						} 
+
+
+					} // end of checking field by field
 
-							} 
+					// now only for case of allowed extra fields && warning on
+					if (errorFieldUnderline && plan.extraFieldCount >= 1 && plan.warnExtraFields ) {
+						for ( ; j < actualFieldCount; j++ ) {
+							Arrays.fill( errorUnderline, stringStart[ j ] , stringEnd[ j ], '?' );
 						}
+					} 
 
-						break;
-					default:
-						// got nothing, so show nothing
-						break;
+					if ( hadError == false && fieldErr == true ) {
+						ctx.errCount++; 
+						ctx.rc( 2 ); // record error
 					}
 
-					if ( ruleOption.getErrorReportDetails() == 'l' ) {	
-						outInfo.append("\n");
-					}
+				}
+			}  
+
+			if ( hadError == false && fieldErr == false ) {
+				// for debugging
+				if ( plan.showValidData == true ) {
+					outInfo.append("\n\n").appendLineNumber(ctx.lineNumber).append(": valid\n").append(line).append("\n");
+				}
+				continue;
+			}
 
-				} // end of while
+			// how to report findings on error				
+			if ( (ctx.hadFirstError == false) && (plan.errorReportDetails != 'e') ) {
+				ctx.hadFirstError = true;
+			}
+
+			switch ( plan.errorReportDetails ) {
+			case 'n':
+				outInfo.appendLineNumber(ctx.lineNumber).append(",");
+				break;
+			case 'l':
+				outInfo.append(line);
+				break;
+			case 'a':
+
+				if ( fieldErr ) {
+					outInfo.append("\n").appendLineNumber(ctx.lineNumber);
+				}
+
+				if ( plan.errorFieldUnderline ) {
+
+					if ( fieldErr == true ) {
 
-			} catch ( final IOException ioe ) {
-				System.err.println( "\nfatal: can't read input file <" + fileName + ">, RULE with id <" + ruleID + ">. "  + ioe.getMessage() );
-				System.exit( 50 );	
-			} catch ( final PatternSyntaxException pse) {
-				System.err.println( "\nfatal: option <delimiterString> RULE with id <" + ruleID + "> does not compile. " );
-				System.exit( 50 );	
-			} finally {
-				br = null;
-				inputFile = null;
+						// user wants bad fields underlined with '^'
+						// we have a line (with correct field count) so can report it
+
+						outInfo.append(fields).append("\n").append(line).append("\n");
+						// its possible there was an error but nothing to underline because of a null field
+
+						if ( ctx.hadFirstError ) {
+							outInfo.append( new String( errorUnderline ) );
+						}
+
+					} 
+				}
+
+				break;
+			default:
+				// got nothing, so show nothing
+				break;
 			}
 
-			// clean up 
-			nvpHM = null;
-		}	// end of for fileList 
+			if ( plan.errorReportDetails == 'l' ) {	
+				outInfo.append("\n");
+			}
 
+		} // end of while
 	}
 
 	/*
@@ -642,288 +1058,239 @@ class Rule {
 	 */
 	private void doCustom() {
 
-		m = null; // for matcher
-		lineSkipRegex = null;
-		replaceArray = new String[2];
-		replaceRegex = null;
-		lineSkipRegexExists = false;
-		lineCheckRegexExists = false;
-		lineCheckPattern = null;
-		lineCheckRegex = null;
-		int itemsChecked = 0;
-
-		// handle the line skip regex pattern, to be used later
-		if ( (lineSkipRegex = ruleOption.getLineSkipRegex()) != null ) {
-			lineSkipRegexExists = true;
-
-			try {
-				lineSkipPattern = Pattern.compile( lineSkipRegex );
-			} catch (final PatternSyntaxException e) {
-				System.err.println( "\nerror: RULE with id <" + ruleID + "> had option <regexCommentRegex>, which did not compile. " + e.getMessage());
-				System.exit( 15 );
-			}
-		}
-
-		// handle editing
-		// gets all options for prefix, suffix, replace
-		genericLineEdittingPrep();
+		// every pattern and option the lines need, compiled once
+		// gets all options for skip, check, prefix, suffix, replace
+		buildPlan();
 
 		if ( ! Validate.testMode ) {
 
 			// in testMode we may not have the real file, so we can't pass to java
-			File inputFile = null;	
-
 			if ( (nvpHM == null) || nvpHM.isEmpty() ) { 
-				System.err.println( "\nfatal: no REGEX data was found in RULE with id <" + ruleID + ">. " );
-				System.exit( 15 );
-			}
-
-			StringBuilder outDupsNameVar = null;
-			// iterate over the file list of name=value files in this Rule
-			for ( final String file : fileList ) {
-				// need clean for each file tested
-				outInfo = new StringBuilder( 100 );
-				outUnchecked = new StringBuilder( 100 );
-				String line = null;
-				String[] nvArray = new String[2];
-				itemsChecked = 0;
-				errCount = 0;
-				
-				if ( file == null ) {
-					if ( ruleOption.getWarnRuleWithoutFile() ) {
-						System.err.println( "\nwarning: RULE with id <" + ruleID + "> has no <file=> specified; RULE is skipped.");
-					}
-					continue; // nothing else we can do with no file
-				}
+				err.println( "\nfatal: no REGEX data was found in RULE with id <" + ruleID + ">. " );
+				Validate.exit( 15 );
+			}
 
-				if ( nvRegexUsed != null ) { // so we can start fresh for next file
-					nvRegexUsed = new ArrayList<String>();
-				}
+			// iterate over the file list of custom files in this Rule
+			runFiles();
+		}
 
-				outDupsNameVar = new StringBuilder(100); // declare here so its fresh for each file
-				lineNumber = 0;	
+	}
 
-				try {
-					/*
-					 * we need to read each non-comment line in the Custom file and test	
-					 */
+	/*
+	 * doCustomFile - validate one CUSTOM file, all state for the file is kept in its context
+	 */
+	private void doCustomFile( FileContext ctx ) {
+
+		LineSource br = null;
+		String line = null;
+		String[] nvArray = new String[2];
+		Matcher m = null;
+		Matcher lineSkipMatcher = null;
+		Matcher lineCheckMatcher = null;
+		NVP nvp = null;
+		final ReportBuffer outInfo = ctx.outInfo;
+		int itemsChecked = 0;
 
-					if ( (dir = ruleOption.getDirPathString()) != null ) {
-						f = dir + file;  
-					} else {
-						f = file;
-					}
+		try {
+			/*
+			 * we need to read each non-comment line in the Custom file and test	
+			 */
+			br = openLineSource( ctx, 0, -1 );
 
-					inputFile = new File( f );
-					br = new BufferedReader( new FileReader( inputFile ) );
+			while ( true ) {
 
-					short lineNumber = 0;
-					itemsChecked = 0;
+				if ( errorLimitReached( ctx ) ) {
+					break;
+				}
 
-					while ( true ) {
+				line = br.readLine();
 
-						line = br.readLine();
+				if ( line == null ) {
+					break; // we're done
+				} 
 
-						if ( line == null ) {
-							break; // we're done
-						} 
+				// will handle backslash continued lines if needed
+				/*
+				 * STEP 1. must do multi-line first so we do't loose info
+				 */
+				final String strReturned = continuationProcessor( ctx, line ) ;
 
-						lineNumber++;
+				if ( strReturned.length() == 0 ) {
+					continue;
+				} else {
+					line = strReturned;
+				}
 
-						// will handle backslash continued lines if needed
-						/*
-						 * STEP 1. must do multi-line first so we do't loose info
-						 */
-						final String strReturned = continuationProcessor( line ) ;
+				/*
+				 * STEP 2. first hurdle is see if its a comment/ignore line to be skipped
+				 */
+				// if comment skip it
+				if ( plan.lineSkipPattern != null ) {
 
-						if ( strReturned.length() == 0 ) {
-							continue;
-						} else {
-							line = strReturned;
-						}
+					lineSkipMatcher = ctx.matchers.reset( plan.lineSkipPattern, line );
+					if ( lineSkipMatcher.find() ) {
+						continue;
+					}
 
-						/*
-						 * STEP 2. first hurdle is see if its a comment/ignore line to be skipped
-						 */
-						// if comment skip it
-						if ( lineSkipRegexExists ) {
+				}
 
-							lineSkipMatcher = lineSkipPattern.matcher( line );
-							if ( lineSkipMatcher.find() ) {
-								continue;
-							}
+				/*
+				 * use of genericLineEdditing to adjust line before validation
+				 */
 
-						}
+				// Step 2A.
+				// custom only has this
+				if ( plan.replacePattern != null ) {
+					Matcher mm = ctx.matchers.reset( plan.replacePattern, line );
+					if ( mm.find() ) {
+						line = mm.replaceAll( plan.replacement );
+					}
+				}
 
-						/*
-						 * use of genericLineEdditing to adjust line before validation
-						 */
-
-						// Step 2A.
-						// custom only has this
-						if ( lineReplaceFlag ) {
-							//line = line.replaceAll( replaceArray[0], replaceArray[1]);
-							Pattern p = Pattern.compile( replaceArray[0] );
-							Matcher mm = p.matcher( line );
-							if ( mm.find() ) {
-								line = mm.replaceAll( replaceRegex );
-							}
-						}
+				/*
+				 * Step 3A & B we can trim off the start and/or end of each line BEFORE we look at the remainder "nv" pair
+				 */
+				if ( plan.linePrefixSuffixPattern != null ) {
+					m = ctx.matchers.reset( plan.linePrefixSuffixPattern, line );
+					line = m.replaceAll( "" );
+				}
 
-						/*
-						 * Step 3A & B we can trim off the start and/or end of each line BEFORE we look at the remainder "nv" pair
-						 */
-						if ( linePrefixRegexExists || lineSuffixRegexExists ) {
-							m = linePrefixSuffixPattern.matcher( line );
-							line = m.replaceAll( "" );
-						}
+				/*
+				 * Step 4. OK but we could still have more than we are interested in so last global check
+				 * determines if we really parse the line
+				 */
+				//  use it to decide skip it or check it
+				if ( plan.lineCheckPattern != null ) {
 
-						/*
-						 * Step 4. OK but we could still have more than we are interested in so last global check
-						 * determines if we really parse the line
-						 */
-						//  use it to decide skip it or check it
-						if ( lineCheckRegexExists ) {
+					lineCheckMatcher = ctx.matchers.reset( plan.lineCheckPattern, line );
+					if (! lineCheckMatcher.find() ) {
+						continue;
+					}
+				}
+				// end of genericLineEditting
 
-							lineCheckMatcher = lineCheckPattern.matcher( line );
-							if (! lineCheckMatcher.find() ) {
-								continue;
-							}
-						}
-						// end of genericLineEditting
+				// for debugging let user see what is being checked
+				if ( plan.lineShow == true ) {
+					outInfo.append("\nvalidating: <" + ctx.lineNumber + ">: " + line);
+				}
 
-						// for debugging let user see what is being checked
-						if ( ruleOption.getLineShow() == true ) {
-							outInfo.append("\nvalidating: <" + lineNumber + ">: " + line);
-						}
+				/* 
+				 *  ok we really are interested in this line so parse it
+				 */
+				itemsChecked++;
+
+				// tokenize the line
+				nvArray = plan.delimiterPattern.split( line, 2 ); // user must be careful if they have spaces
+				nvArray[0] = nvArray[0].trim();
+
+				if ( nvArray.length > 2 ) {
+					ctx.err.println("\nerror: invalid format for NAME<delimiter>VALUE on line <" + ctx.lineNumber + "> line <" + line + ">.");
+					ctx.rc( 2 ); // recorded error level
+					return;
+				} else if ( (nvArray.length == 2) && (nvArray[0] == null) && (nvArray[1] == null) ) {
+					ctx.err.println("\nerror: invalid format for NAME<delimiter>VALUE on line <" + ctx.lineNumber + ">, both NAME and VALUE are null.");
+					ctx.rc( 2 ); // recorded error level
+					return;
+				} else if ( (nvArray.length == 2) && (nvArray[0] == null)  ) {
+					ctx.err.println("\nerror: invalid format for NAME<delimiter>VALUE on line <" + ctx.lineNumber + ">, NAME is null.");
+					ctx.rc( 2 );// recorded error level
+					return; 
+				} else if ( (nvArray.length == 2) && (nvArray[1] == null)  ) {
+					ctx.err.println("\nerror: invalid format for NAME<delimiter>VALUE on line <" + ctx.lineNumber + ">, VALUE is null.");
+					ctx.rc( 2 ); // recorded error level
+					return;
+				} 
 
-						/* 
-						 *  ok we really are interested in this line so parse it
-						 */
-						itemsChecked++;
-
-						// tokenize the line
-						nvArray = line.split(ruleOption.getDelimiterRegex(), 2); // user must be careful if they have spaces
-						nvArray[0] = nvArray[0].trim();
-
-						if ( nvArray.length > 2 ) {
-							System.err.println("\nerror: invalid format for NAME<delimiter>VALUE on line <" + lineNumber + "> line <" + line + ">.");
-							Validate.rc( 2 ); // recorded error level
-							return;
-						} else if ( (nvArray.length == 2) && (nvArray[0] == null) && (nvArray[1] == null) ) {
-							System.err.println("\nerror: invalid format for NAME<delimiter>VALUE on line <" + lineNumber + ">, both NAME and VALUE are null.");
-							Validate.rc( 2 ); // recorded error level
-							return;
-						} else if ( (nvArray.length == 2) && (nvArray[0] == null)  ) {
-							System.err.println("\nerror: invalid format for NAME<delimiter>VALUE on line <" + lineNumber + ">, NAME is null.");
-							Validate.rc( 2 );// recorded error level
-							return; 
-						} else if ( (nvArray.length == 2) && (nvArray[1] == null)  ) {
-							System.err.println("\nerror: invalid format for NAME<delimiter>VALUE on line <" + lineNumber + ">, VALUE is null.");
-							Validate.rc( 2 ); // recorded error level
-							return;
-						} 
 
+				/*
+				 *    so the nvArray holds the name <regex> value that we will VALIDATE for the user
+				 *    ctx.nameSeen - names from the users input need to track for missing names
+				 *    the nvpHM holds the names and regexes that we will TEST TO
+				 *    
+				 *    there are multiple outcomes
+				 *    silence - if what we expect to VALIDATE matches the TEST
+				 *    error - if what we expect fails the match
+				 *    warning - (depends on options) if we did NOT FIND something that we had a TEST for
+				 *    waring - (depends on options) if we found a second (or more) occurrence of the name to TEST (a duplicate)
+				 *    warning - (depends on options) if the user file had a name that we did NOT test
+				 */
 
-						/*
-						 *    so the nvArray holds the name <regex> value that we will VALIDATE for the user
-						 *    nvRegexUsed - names from the users input need to track for missing names
-						 *    the nvpHM holds the names and regexes that we will TEST TO
-						 *    
-						 *    there are multiple outcomes
-						 *    silence - if what we expect to VALIDATE matches the TEST
-						 *    error - if what we expect fails the match
-						 *    warning - (depends on options) if we did NOT FIND something that we had a TEST for
-						 *    waring - (depends on options) if we found a second (or more) occurrence of the name to TEST (a duplicate)
-						 *    warning - (depends on options) if the user file had a name that we did NOT test
-						 */
-
-						// see if its a name in the users file
-						// yes the regexUsed means it WAS used to check a name already - so the name is a dup
-						// not the regex (regex duplicates were checked in Regex object
-						if ( (nvRegexUsed != null) && nvRegexUsed.contains( nvArray[0] ) ) {
-							// we have a duplicate
-							if ( ruleOption.getWarnDuplicates() ) {
-
-								if ( outDupsNameVar.length() > 0 ) {
-									outDupsNameVar.append(", ").append( nvArray[0] );
-								} else {
-									outDupsNameVar.append( nvArray[0] );
-								}
-							}
+				// see if its a name in the users file
+				// yes the regexUsed means it WAS used to check a name already - so the name is a dup
+				// not the regex (regex duplicates were checked in Regex object
+				nvp = nvpHM.get( nvArray[0] ); // null when there is no regex for the name
 
+				if ( ctx.nameSeen( nvp, nvArray[0] ) ) {
+					// we have a duplicate
+					if ( plan.warnDuplicates ) {
+
+						if ( ctx.outDupsNameVar.length() > 0 ) {
+							ctx.outDupsNameVar.append(", ").append( nvArray[0] );
 						} else {
-							// we need to save the name of NV pair we had in the file being examined for future
-							if ( nvArray != null ) {
-								nvRegexUsed.add( nvArray[0] ); // saved for missing test at end
-							}
+							ctx.outDupsNameVar.append( nvArray[0] );
 						}
+					}
 
-						/*
-						 * if it was in a user file but NOT in the config file, its extra
-						 */
-						if ( nvpHM.containsKey( nvArray[0] ) == false ) {
-							itemsChecked--; // since it was already counted
-							// we have an extra property
-							if ( outUnchecked.length() > 0 ) {
-								outUnchecked.append(", ").append( nvArray[0] );
-							} else {
-								outUnchecked.append( nvArray[0] );
-							}
-
-							continue;
-						}	
+				}
 
-						// retrieve the object so we can access the regex
-						nvp = nvpHM.get( nvArray[0] );
+				/*
+				 * if it was in a user file but NOT in the config file, its extra
+				 */
+				if ( nvp == null ) {
+					itemsChecked--; // since it was already counted
+					// we have an extra property
+					if ( ctx.outUnchecked.length() > 0 ) {
+						ctx.outUnchecked.append(", ").append( nvArray[0] );
+					} else {
+						ctx.outUnchecked.append( nvArray[0] );
+					}
 
-						// do WORK - based on the correct name object
+					continue;
+				}	
 
-						if ( ! nvp.validateValueWithRegex( nvArray[1] ) ) {
-							errCount++;
+				// do WORK - based on the correct name object
 
-							switch ( ruleOption.getErrorReportDetails() ) {
-							case 'n':
-								outInfo.append(lineNumber).append(",");
-								break;
-							case 'l':
-								outInfo.append("\n").append(nvArray[0]).append("=").append(nvArray[1]);
-								break;
-							case 'a':
-								outInfo.append("\n").append(lineNumber).append(": fail\n").append("NAME <").append(nvArray[0]).append("> VALUE <").
-								append(nvArray[1]).append("> does not match regex: ").append(nvp.getValue()).append("\n");
-								break;
-							default:
-								// got nothing, so show nothing
-								break;
-							}
+				if ( ! nvp.validateValueWithRegex( ctx.matchers, nvArray[1] ) ) {
+					ctx.errCount++;
 
-							if ( ruleOption.getErrorReportDetails() == 'n' ) {	
-								outInfo.append("\n");
-							}
+					switch ( plan.errorReportDetails ) {
+					case 'n':
+						outInfo.append(ctx.lineNumber).append(",");
+						break;
+					case 'l':
+						outInfo.append("\n").append(nvArray[0]).append("=").append(nvArray[1]);
+						break;
+					case 'a':
+						outInfo.append("\n").append(ctx.lineNumber).append(": fail\n").append("NAME <").append(nvArray[0]).append("> VALUE <").
+						append(nvArray[1]).append("> does not match regex: ").append(nvp.getValue()).append("\n");
+						break;
+					default:
+						// got nothing, so show nothing
+						break;
+					}
 
-						} else {
-							if ( ruleOption.getShowValidData() == true ) {
-								outInfo.append("\n").append(nvp.getLineNumber()).append(": valid\nNAME <").append(nvArray[0]).append(">\n");
-							}
-						}
-					} // end of while line reading
+					if ( plan.errorReportDetails == 'n' ) {	
+						outInfo.append("\n");
+					}
 
-				} catch ( final IOException io ) {
-					System.err.println( "\nfatal: error reading file <" + f + "> in RULE with id <" + ruleID + ">. " + io.getMessage() );
-					System.exit( 19 );	
-				} catch ( final IllegalArgumentException iae ) {
-					System.err.println( "\nfatal: error reading file <" + f + "> in RULE with id <" + ruleID + ">. " + iae.getMessage() );
-					System.exit( 19 );
+				} else {
+					if ( plan.showValidData == true ) {
+						outInfo.append("\n").append(nvp.getLineNumber()).append(": valid\nNAME <").append(nvArray[0]).append(">\n");
+					}
 				}
-
-				checkEOFstatus( outInfo.toString(), itemsChecked, errCount, outUnchecked.toString(), outDups.toString(), outDupsNameVar.toString(), f );
-			}
-
+			} // end of while line reading
+
+		} catch ( final IOException io ) {
+			ctx.err.println( "\nfatal: error reading file <" + ctx.f + "> in RULE with id <" + ruleID + ">. " + io.getMessage() );
+			Validate.exit( 19 );	
+		} catch ( final IllegalArgumentException iae ) {
+			ctx.err.println( "\nfatal: error reading file <" + ctx.f + "> in RULE with id <" + ruleID + ">. " + iae.getMessage() );
+			Validate.exit( 19 );
+		} finally {
+			closeReader( br );
 		}
 
-		// clean up 
-		nvpHM = null;
+		checkEOFstatus( ctx, outInfo, itemsChecked, ctx.errCount, ctx.outUnchecked, outDups.toString(), ctx.outDupsNameVar, ctx.f );
 	}
 
 
@@ -932,216 +1299,216 @@ class Rule {
 	 */
 	private void doLine() {
 
-		String lineSkipRegex = null;
-		char[] lineUnderline = null;
-		lineCheckRegexExists = false;
-		lineSkipRegexExists = false;
-		lineCheckRegex = null;
-		Pattern lineCheckPattern = null;
-
-		m = null; // for matcher
-
 		if ( lineFormatRegexList.isEmpty() ) {
-			System.err.println( "\nfatal: there were no saved, regexes for rule with ID <" + ruleID + ">");
-			System.exit( 96 );
+			err.println( "\nfatal: there were no saved, regexes for rule with ID <" + ruleID + ">");
+			Validate.exit( 96 );
 		}
 
-		if ( (lineSkipRegex = ruleOption.getLineSkipRegex()) != null ) {
-			lineSkipRegexExists = true;
+		// every pattern and option the lines need, compiled once
+		// gets all options for skip, check, prefix, suffix, replace
+		buildPlan();
 
-			try {
-				lineSkipPattern = Pattern.compile( lineSkipRegex );
-			} catch (final PatternSyntaxException e) {
-				System.err.println( "\nerror: RULE with id <" + ruleID + "> had option <regexCommentRegex>, which did not compile. " + e.getMessage());
-				System.exit( 15 );
-			}
-		}
+		// can have many files
+		runFiles();
 
-		if ( (lineCheckRegex = ruleOption.getLineCheckRegex()) != null ) {
-			lineCheckRegexExists = true;
-			lineCheckPattern = Pattern.compile( lineCheckRegex ); // already tested in options
-		}
 
-		// handle editing
-		// gets all options for prefix, suffix, replace
-		genericLineEdittingPrep();
+	} // end of doLine
 
-		// can have many files
-		for (final String fileName : fileList) {
-			errCount = 0;
-			
-			if ( fileName == null ) {
-				if ( ruleOption.getWarnRuleWithoutFile() ) {
-					System.err.println( "\nwarning: RULE with id <" + ruleID + "> has no <file=> specified; RULE skipped.");
-				}
-				continue; // nothing we can do
-			}
+	/*
+	 * doLineFile - validate one LINE file, all state for the file is kept in its context
+	 */
+	private void doLineFile( FileContext ctx ) {
+
+		LineSource br = null;
+
+		try {
+			final Checkpoint checkpoint = checkpoint( ctx );
+			final long[] chunks = checkpoint == null ? chunkBounds( ctx ) : null;
+
+			if ( checkpoint != null ) {
+				// only the lines added since the last run (--tail)
+				br = openLineSource( ctx, checkpoint.offset, checkpoint.end );
+				doLineReader( ctx, br );
 
-			if ( (dir = ruleOption.getDirPathString()) != null ) {
-				f = dir + fileName;  
+				if ( ! ctx.truncated ) {
+					checkpoint.save( ctx.lineNumber );
+				}
+			} else if ( chunks != null ) {
+				RuleExecutor.runChunks( this, ctx, chunks );
 			} else {
-				f = fileName;
+				br = openLineSource( ctx, 0, -1 );
+				doLineReader( ctx, br );
 			}
+		} catch ( final IOException ioe ) {
+			ctx.err.println( "\nfatal: can't read input file <" + ctx.fileName + ">, RULE with id <" + ruleID + ">. " + ioe.getMessage() );
+			Validate.exit( 15 );	
+		} finally {
+			closeReader( br );
+		}
 
-			try {
-				br = new BufferedReader( new FileReader( new File( f ) ));
-				outInfo = new StringBuilder( 100 );
-				errCount = 0;
-				lineNumber = 0;
-
-				while ( true ) {
+		// file is done lets check status
+		checkEOFstatus( ctx, ctx.outInfo, ctx.lineNumber, ctx.errCount, ctx.outUnchecked, ctx.f ); // sends DATA file
 
-					line = br.readLine();
+	} // end of doLineFile
 
-					if ( line == null ) {
-						// file is done lets close and then check status
+	/*
+	 * validate the lines read from br, which is either a whole file or one chunk of it
+	 */
+	private void doLineReader( FileContext ctx, LineSource br ) throws IOException {
 
-						checkEOFstatus( outInfo.toString(), lineNumber, errCount, null, f ); // sends DATA file
-						break;
-					}
+		char[] lineUnderline = null;
+		String line = null;
+		Matcher m = null;
+		Matcher lineSkipMatcher = null;
+		Matcher lineCheckMatcher = null;
+		final ReportBuffer outInfo = ctx.outInfo;
+		final Matcher lineFormatMatcher = plan.lineFormatPattern != null ? plan.lineFormatPattern.matcher() : null;
+		final LineRanges ranges = lineFormatMatcher == null ? lineRanges.start() : null;
 
-					// see if user wants any lines skipped
-					if ( lineSkipRegexExists ) {
+		while ( true ) {
 
-						lineSkipMatcher = lineSkipPattern.matcher( line );
-						if ( lineSkipMatcher.find() ) {
-							continue;
-						}
-					}
+			if ( errorLimitReached( ctx ) ) {
+				break;
+			}
 
-					/*
-					 * use of genericLineEdditing to adjust line before validation
-					 */
+			line = br.readLine();
 
-					if ( lineReplaceFlag ) {
-						//line = line.replaceAll( replaceArray[0], replaceArray[1]);
-						Pattern p = Pattern.compile( replaceArray[0] );
-						Matcher mm = p.matcher( line );
-						if ( mm.find() ) {
-							line = mm.replaceAll( replaceRegex );
-						}
-					}
+			if ( line == null ) {
+				break; // file is done, the caller checks the status
+			}
 
-					/*
-					 *  we can trim off the start and/or end of each line BEFORE we look at the remainder "nv" pair
-					 */
-					if ( linePrefixRegexExists || lineSuffixRegexExists ) {
-						m = linePrefixSuffixPattern.matcher( line );
-						line = m.replaceAll( "" );
-					}
+			// see if user wants any lines skipped
+			if ( plan.lineSkipPattern != null ) {
 
-					/*
-					 * OK but we could still have more than we are interested in so last global check
-					 * determines if we really parse the line
-					 */
-					//  use it to decide skip it or check it
-					if ( lineCheckRegexExists ) {
+				lineSkipMatcher = ctx.matchers.reset( plan.lineSkipPattern, line );
+				if ( lineSkipMatcher.find() ) {
+					continue;
+				}
+			}
 
-						lineCheckMatcher = lineCheckPattern.matcher( line );
-						if (! lineCheckMatcher.find() ) {
-							continue;
-						}
-					}
-					// end of genericLineEditting
+			/*
+			 * use of genericLineEdditing to adjust line before validation
+			 */
 
-					//  use it to decide skip it or check it
-					if ( lineCheckRegexExists ) {
+			if ( plan.replacePattern != null ) {
+				Matcher mm = ctx.matchers.reset( plan.replacePattern, line );
+				if ( mm.find() ) {
+					line = mm.replaceAll( plan.replacement );
+				}
+			}
 
-						lineCheckMatcher = lineCheckPattern.matcher( line );
-						if (! lineCheckMatcher.find() ) {
-							continue;
-						}
-					}
+			/*
+			 *  we can trim off the start and/or end of each line BEFORE we look at the remainder "nv" pair
+			 */
+			if ( plan.linePrefixSuffixPattern != null ) {
+				m = ctx.matchers.reset( plan.linePrefixSuffixPattern, line );
+				line = m.replaceAll( "" );
+			}
 
-					lineNumber++; // we intend to check
+			/*
+			 * OK but we could still have more than we are interested in so last global check
+			 * determines if we really parse the line
+			 */
+			//  use it to decide skip it or check it
+			if ( plan.lineCheckPattern != null ) {
 
-					// for debugging let user see what is being checked
-					if ( ruleOption.getLineShow() == true ) {
-						outInfo.append("\nvalidating: <" + lineNumber + ">: " + line);
-					}
+				lineCheckMatcher = ctx.matchers.reset( plan.lineCheckPattern, line );
+				if (! lineCheckMatcher.find() ) {
+					continue;
+				}
+			}
+			// end of genericLineEditting
 
-					// set line clean in case its needed
-					if ( ruleOption.getValidLineUnderline() && line.length() > 0 ) {
-						lineUnderline = new char[ line.length() ];
-						Arrays.fill( lineUnderline, ' ');
-					}
-					// we have a one line to many regex so we try each regex if necessary
+			ctx.lineNumber++; // we intend to check
 
-					boolean hadMatch = false;
-					int arrayIndex = 0; // track which regex/number pair was being used
+			// for debugging let user see what is being checked
+			if ( plan.lineShow == true ) {
+				outInfo.append("\nvalidating: <").appendLineNumber(ctx.lineNumber).append(">: ").append(line);
+			}
 
-					// check if line range is appropriate
-					for ( Pattern reg : lineFormatRegexList ) {
+			// set line clean in case its needed
+			if ( plan.validLineUnderline && line.length() > 0 ) {
+				lineUnderline = new char[ line.length() ];
+				Arrays.fill( lineUnderline, ' ');
+			}
+			// we have a one line to many regex so we try each regex if necessary
 
-						// first see if we have line range restriction
-						if ( lineNumber < fromLineList.get(arrayIndex) ) {
-							arrayIndex++;
-							continue; // line is NOT within range
-						}
+			boolean hadMatch = false;
+			int arrayIndex = 0; // track which regex/number pair was being used
 
-						if ( toLineList.get(arrayIndex) != 0 && lineNumber > toLineList.get(arrayIndex) ) {
-							arrayIndex++;
-							continue; // line is NOT within range
-						}
+			if ( lineFormatMatcher != null ) {
+				// no line ranges, so one search of the line tries every regex
+				final int matched = plan.lineFormatPattern.find( lineFormatMatcher, line );
 
-						// ok within range or range is entire file
-						m = reg.matcher( line );
+				if ( matched >= 0 ) {
+					hadMatch = true;
+					arrayIndex = matched;
 
-						if ( m.find() ) {
-							hadMatch = true;
-							break;
+					if ( plan.showValidData == true ) {
+						// valid(n) is the first regex that matches, maybe further along the line than the one found
+						for ( arrayIndex = 0; arrayIndex < matched; arrayIndex++ ) {
+							if ( ctx.matchers.reset( lineFormatRegexList.get( arrayIndex ), line ).find() ) {
+								break;
+							}
 						}
+						m = ctx.matchers.reset( lineFormatRegexList.get( arrayIndex ), line );
+						m.find();
+					}
+				}
+			} else {
+				// only the regexes whose line range holds this line, in REGEX block order
+				ranges.advance( ctx.lineNumber );
+
+				for ( int k = 0; k < ranges.activeCount; k++ ) {
+					arrayIndex = ranges.active[ k ];
+					m = ctx.matchers.reset( lineFormatRegexList.get( arrayIndex ), line );
 
-						arrayIndex++;
+					if ( m.find() ) {
+						hadMatch = true;
+						break;
 					}
+				}
+			}
 
 
-					if ( hadMatch == false ) {
-						errCount++;
-						Validate.rc( 2 ); // record error
+			if ( hadMatch == false ) {
+				ctx.errCount++;
+				ctx.rc( 2 ); // record error
 
-						switch ( ruleOption.getErrorReportDetails() ) {
-						case 'n':
-							outInfo.append(lineNumber).append(",");
-							break;
-						case 'l':
-							outInfo.append(line).append("\n");
-							break;
-						case 'a':
-							outInfo.append("\n").append(lineNumber).append(": fail\n").append(line).append("\n");
-							break;
-						default:
-							// got nothing, so show nothing
-							break;
-						}
+				switch ( plan.errorReportDetails ) {
+				case 'n':
+					outInfo.appendLineNumber(ctx.lineNumber).append(",");
+					break;
+				case 'l':
+					outInfo.append(line).append("\n");
+					break;
+				case 'a':
+					outInfo.append("\n").appendLineNumber(ctx.lineNumber).append(": fail\n").append(line).append("\n");
+					break;
+				default:
+					// got nothing, so show nothing
+					break;
+				}
 
-					} else {
+			} else {
 
-						if ( ruleOption.getShowValidData() == true ) {
-							outInfo.append("\n").append(lineNumber).append(": valid(").append(arrayIndex + 1).append(")\n").append(line).append("\n");
-							// and see if they want underlining
+				if ( plan.showValidData == true ) {
+					outInfo.append("\n").appendLineNumber(ctx.lineNumber).append(": valid(").append(arrayIndex + 1).append(")\n").append(line).append("\n");
+					// and see if they want underlining
 
-							if ( ruleOption.getValidLineUnderline() == true && line.length() > 0 ) {
-								Arrays.fill( lineUnderline, m.start(), m.end(), '=');
-								if ( lineUnderline != null ) {
-									String tmp_s = new String(lineUnderline);
-									outInfo.append( tmp_s ).append("\n\n");
-									tmp_s = null;
-								}
-							}
+					if ( plan.validLineUnderline == true && line.length() > 0 ) {
+						Arrays.fill( lineUnderline, m.start(), m.end(), '=');
+						if ( lineUnderline != null ) {
+							String tmp_s = new String(lineUnderline);
+							outInfo.append( tmp_s ).append("\n\n");
+							tmp_s = null;
 						}
 					}
-
-				} // done while reading lines in file
-			} catch ( final IOException ioe ) {
-				System.err.println( "\nfatal: can't read input file <" + fileName + ">, RULE with id <" + ruleID + ">. " + ioe.getMessage() );
-				System.exit( 15 );	
+				}
 			}
-		}
-
-		lineFormatRegexList = null; // clear for reuse	
 
-	} // end of doLine
+		} // done while reading lines in file
+	} // end of doLineReader
 
 	/*
 	 * process the file(s) to be validated using the formatting and processing for a LINE
@@ -1150,41 +1517,53 @@ class Rule {
 	 
 	private void doValueLine() {
 		
-		char[] lineUnderline = null;
-		m = null; // for matcher
-		
 		if ( Validate.valueMode == false ) {
-			System.out.println( "warning: -v switch was not used so skipping RULE with Id <" + ruleID + ">");
+			out.println( "warning: -v switch was not used so skipping RULE with Id <" + ruleID + ">");
 			return;
 		}
 
 		if ( lineFormatRegexList.isEmpty() ) {
-			System.err.println( "\nfatal: there were no saved, regexes for rule with ID <" + ruleID + ">");
-			System.exit( 96 );
+			err.println( "\nfatal: there were no saved, regexes for rule with ID <" + ruleID + ">");
+			Validate.exit( 96 );
 		}
 
 		// handle editing
 		// gets all options for prefix, suffix, replace
-		genericLineEdittingPrep();
+		buildPlan();
+
+		if ( Validate.valueFile != null ) {
+			doValueFile();
+		} else {
+			doValueLine( 1, Validate.valueString );
+		}
+	} // end doValueLine
+
+	/*
+	 * doValueLine - validate one value, number is its line in the -V file or 1 for -v; returns its errors
+	 */
+	private int doValueLine( int number, String value ) {
+
+		char[] lineUnderline = null;
+		final FileContext ctx = new FileContext( null, out, err ); // there is no file, only the value
+		final ReportBuffer outInfo = ctx.outInfo;
+		String line = null;
+		Matcher m = null;
 
 		try {
-			outInfo = new StringBuilder( 100 );
-			errCount = 0;
-			lineNumber = 1;
+			ctx.lineNumber = number;
 
 			// this is the line to test;
 			// there is no file
-			line = Validate.valueString;
+			line = value;
 					
 			/*
 			 * use of genericLineEdditing to adjust line before validation
 			 */
 
-			if ( lineReplaceFlag ) {
-				Pattern p = Pattern.compile( replaceArray[0] );
-				Matcher mm = p.matcher( line );
+			if ( plan.replacePattern != null ) {
+				Matcher mm = ctx.matchers.reset( plan.replacePattern, line );
 				if ( mm.find() ) {
-					line = mm.replaceAll( replaceRegex );
+					line = mm.replaceAll( plan.replacement );
 				}
 			}
 
@@ -1192,20 +1571,20 @@ class Rule {
 			 *  we can trim off the start and/or end of each line BEFORE
 			 * we look at the remainder
 			 */
-			 if ( linePrefixRegexExists || lineSuffixRegexExists ) {
-				m = linePrefixSuffixPattern.matcher( line );
+			 if ( plan.linePrefixSuffixPattern != null ) {
+				m = ctx.matchers.reset( plan.linePrefixSuffixPattern, line );
 				line = m.replaceAll( "" );
 			} 
 
 
 			// for debugging let user see what is being checked
-			if ( ruleOption.getLineShow() == true ) {
-				outInfo.append("\nvalidating: <" + lineNumber + ">: " + line);
+			if ( plan.lineShow == true ) {
+				outInfo.append("\nvalidating: <" + ctx.lineNumber + ">: " + line);
 			}
 
 			// set line clean in case its needed
 			// set line clean in case its needed
-			if ( ruleOption.getValidLineUnderline() && line.length() > 0 ) {
+			if ( plan.validLineUnderline && line.length() > 0 ) {
 				lineUnderline = new char[ line.length() ];
 				Arrays.fill( lineUnderline, ' ');
 			}
@@ -1218,17 +1597,17 @@ class Rule {
 			for ( Pattern reg : lineFormatRegexList ) {
 
 				// first see if we have line range restriction
-				if ( lineNumber < fromLineList.get(arrayIndex) ) {
+				if ( ctx.lineNumber < fromLineList.get(arrayIndex) ) {
 					arrayIndex++;
 					continue; // line is NOT within range
 				}
 
-				if ( toLineList.get(arrayIndex) != 0 && lineNumber > toLineList.get(arrayIndex) ) {
+				if ( toLineList.get(arrayIndex) != 0 && ctx.lineNumber > toLineList.get(arrayIndex) ) {
 					arrayIndex++;
 					continue; // line is NOT within range
 				}
 
-				m = reg.matcher( line );
+				m = ctx.matchers.reset( reg, line );
 				
 				if ( m.find() ) {
 					hadMatch = true;
@@ -1240,18 +1619,18 @@ class Rule {
 		
 
 			if ( hadMatch == false ) {
-				errCount++;
-				Validate.rc( 2 ); // record error
+				ctx.errCount++;
+				ctx.rc( 2 ); // record error
 
-				switch ( ruleOption.getErrorReportDetails() ) {
+				switch ( plan.errorReportDetails ) {
 				case 'n':
-					outInfo.append(lineNumber).append(",");
+					outInfo.append(ctx.lineNumber).append(",");
 					break;
 				case 'l':
 					outInfo.append(line).append("\n");
 					break;
 				case 'a':
-					outInfo.append("\n").append(lineNumber).append(": fail\n").append(line).append("\n");
+					outInfo.append("\n").append(ctx.lineNumber).append(": fail\n").append(line).append("\n");
 					break;
 				default:
 					// got nothing, so show nothing
@@ -1260,11 +1639,11 @@ class Rule {
 
 			} else {
 
-				if ( ruleOption.getShowValidData() == true ) {
-					outInfo.append("\n").append(lineNumber).append(": valid(").append(arrayIndex + 1).append(")\n").append(line).append("\n");
+				if ( plan.showValidData == true ) {
+					outInfo.append("\n").append(ctx.lineNumber).append(": valid(").append(arrayIndex + 1).append(")\n").append(line).append("\n");
 					// and see if they want underlining
 
-					if ( ruleOption.getValidLineUnderline() == true && line.length() > 0 ) {
+					if ( plan.validLineUnderline == true && line.length() > 0 ) {
 						Arrays.fill( lineUnderline, m.start(), m.end(), '=');
 						if ( lineUnderline != null ) {
 							String tmp_s = new String(lineUnderline);
@@ -1276,12 +1655,13 @@ class Rule {
 			}
 
 		} catch ( ArrayIndexOutOfBoundsException e  ) {
-			System.err.println( "\nfatal: array out of bounds in doValueLines, RULE with id <" + ruleID + ">. " );
-			System.exit( 15 );
+			err.println( "\nfatal: array out of bounds in doValueLines, RULE with id <" + ruleID + ">. " );
+			Validate.exit( 15 );
 		}
 
-		checkEOFstatus( outInfo.toString(), lineNumber, errCount, null, null );
-	} // end doValueLine
+		checkEOFstatus( ctx, outInfo, ctx.lineNumber, ctx.errCount, ctx.outUnchecked, null );
+		return ctx.errCount;
+	}
 
 	/*
     *
@@ -1291,42 +1671,44 @@ class Rule {
 
 	private void doValueDelimited() {
 
-		boolean errorFieldUnderline = ruleOption.getErrorFieldUnderline();
-		char[] errorUnderline = null;
-		char[] temp = null;
-		m = null;
-		lineNumber = 1;
-
 		if ( Validate.valueMode == false ) {
-			System.out.println( "warning: -v switch was not used so skipping RULE with Id <" + ruleID + ">");
+			out.println( "warning: -v switch was not used so skipping RULE with Id <" + ruleID + ">");
 			return;
 		}
-		
+
+		// handle editing
+		// gets all options for prefix, suffix, replace
+		buildPlan();
+
+		if ( Validate.valueFile != null ) {
+			doValueFile();
+		} else {
+			doValueDelimited( 1, Validate.valueString );
+		}
+	}
+
+	/*
+	 * doValueDelimited - validate one value, number is its line in the -V file or 1 for -v; returns its errors
+	 */
+	private int doValueDelimited( int number, String value ) {
+
+		boolean errorFieldUnderline = false;
+		char[] errorUnderline = null;
+		final FileContext ctx = new FileContext( null, out, err ); // there is no file, only the value
+		final ReportBuffer outInfo = ctx.outInfo;
+		String line = null;
+		Matcher m = null;
+		ctx.lineNumber = number;
+		errorFieldUnderline = plan.errorFieldUnderline;
+
 		try {
 
 			int expectedFieldCount = patternListArray.length; // number or Regexes in block
-			// set size appropriately, but if extra fields are found java will grow size
-			int ArrayListInitialSize = expectedFieldCount + 1 +  ruleOption.getExtraFieldCount();
 			int actualFieldCount;
 			boolean hadError = false;
-			final StringBuilder delimiterRegexInParens = new StringBuilder();
-			delimiterRegexInParens.append( "(" ).append( ruleOption.getDelimiterRegex() ).append( ")" );
-			final Pattern delimiterPattern = Pattern.compile( delimiterRegexInParens.toString() );
-			ArrayList<Integer> delimiterStart = new ArrayList<Integer>( ArrayListInitialSize );
-			ArrayList<Integer> delimiterEnd = new ArrayList<Integer>( ArrayListInitialSize );
-			int delimiterIndex = 0;
+			final DelimitedTokenizer tokenizer = new DelimitedTokenizer( plan.delimiterLiteral, plan.delimiterPattern ); // offsets reused for every line
 			int lineLength = 0;
 			StringBuilder fields;
-			String[] lineArray = null;
-			Matcher delimiterMatcher = null;
-			outInfo = new StringBuilder( 500 );
-			errCount = 0;
-			String EOLdelimiterAtEOL = ruleOption.getDelimiterRegex() + '$';
-			Pattern EOLPat = Pattern.compile( EOLdelimiterAtEOL ); // will use on every non-null (non-comment too) line of input
-
-			// handle editing
-			// gets all options for prefix, suffix, replace
-			genericLineEdittingPrep();
 
 			fields = new StringBuilder( 500 );
 
@@ -1334,18 +1716,16 @@ class Rule {
 			actualFieldCount = 0;
 			lineLength = 0;
 
-			line = Validate.valueString;
+			line = value;
 
 			/*
  			 * use of genericLineEdditing to adjust line before validation
 			 */
 
-			if ( lineReplaceFlag ) {
-				//line = line.replaceAll( replaceArray[0], replaceArray[1]);
-				Pattern p = Pattern.compile( replaceArray[0] );
-				Matcher mm = p.matcher( line );
+			if ( plan.replacePattern != null ) {
+				Matcher mm = ctx.matchers.reset( plan.replacePattern, line );
 				if ( mm.find() ) {
-					line = mm.replaceAll( replaceRegex );
+					line = mm.replaceAll( plan.replacement );
 				}
 			}
 
@@ -1353,20 +1733,20 @@ class Rule {
 			 *  we can trim off the start and/or end of each line BEFORE we
 			 * look at the remainder of the input
 			 */
-			if ( linePrefixRegexExists || lineSuffixRegexExists ) {
-				m = linePrefixSuffixPattern.matcher( line );
+			if ( plan.linePrefixSuffixPattern != null ) {
+				m = ctx.matchers.reset( plan.linePrefixSuffixPattern, line );
 				line = m.replaceAll( "" );
 			}
 
 			// end of genericLineEditting
 
 			// for debugging let user see what is being checked
-			if ( (ruleOption.getLineShow() == true)) {
-				outInfo.append("\nvalidating: <").append(lineNumber).append(">: ").append(line);
+			if ( (plan.lineShow == true)) {
+				outInfo.append("\nvalidating: <").append(ctx.lineNumber).append(">: ").append(line);
 			}
 
 			lineLength = line.length();
-			delimiterMatcher = delimiterPattern.matcher( line );
+			tokenizer.tokenize( line ); // delimiters of the line before any EOL delimiter is trimmed
 
 			/*
 			 * expectedFieldCount=the number or regexes we have, thus the number of fields=actualFieldCount we expect
@@ -1384,27 +1764,27 @@ class Rule {
 
 			// lets see what the input line ends with
 
-			Matcher EOLmatch = EOLPat.matcher( line );
+			Matcher EOLmatch = ctx.matchers.reset( plan.EOLPattern, line );
 
 			if ( EOLmatch.find() ) {
 				// if here line ends in a delimiter
-				if ( "false".equals(ruleOption.getEOLdelimiter() ) ) {
+				if ( plan.EOLdelimiterNotAllowed ) {
 					// line is no good since no EOLdelimiter wanted and its there
-					outInfo.append("\n").append(lineNumber).append("\n").append(line).append("\n  <error, final delimiter not expected>\n");
-					errCount++;
+					outInfo.append("\n").append(ctx.lineNumber).append("\n").append(line).append("\n  <error, final delimiter not expected>\n");
+					ctx.errCount++;
 					hadError = true;
-					Validate.rc( 2 ); // record error
+					ctx.rc( 2 ); // record error
 				}
 				// if here: we had an EOLdelimiter lets trim it off - but the line might not be correct
-				line = line.replaceAll( EOLdelimiterAtEOL, "");
+				line = EOLmatch.replaceAll( "" );
 
 			} else {
 				// EOLdelimiter is NOT there: if optional its ok, but if required its error
-				if ( "true".equals( ruleOption.getEOLdelimiter() ) ) {
-					outInfo.append("\n").append(lineNumber).append(":\n").append(line).append("\n  <error, final delimiter missing>\n");
-					errCount++;
+				if ( plan.EOLdelimiterRequired ) {
+					outInfo.append("\n").append(ctx.lineNumber).append(":\n").append(line).append("\n  <error, final delimiter missing>\n");
+					ctx.errCount++;
 					hadError = true;
-					Validate.rc( 2 ); // record error
+					ctx.rc( 2 ); // record error
 				}
 			}
 
@@ -1415,34 +1795,15 @@ class Rule {
 			boolean fieldErr = false;
 
 			if ( hadError == false ) {
-				delimiterIndex = 0;
-
-				if ( errorFieldUnderline ) {
-					temp = new char[ lineLength ];
-					Arrays.fill( temp,  '0' );
-				}
-
-				delimiterIndex = 0;
-				while ( delimiterMatcher.find() ) { // get the start and end of each delimiter
-
-					delimiterStart.add( delimiterMatcher.start() );
-					delimiterEnd.add( delimiterMatcher.end() );
-
-					if ( errorFieldUnderline ) {
-						Arrays.fill( temp, delimiterStart.get(delimiterIndex), delimiterEnd.get(delimiterIndex), '1');
-					}
-
-					delimiterIndex++;
-				}
-
-				lineArray = line.split( ruleOption.getDelimiterRegex(), delimiterIndex + 1);
+				// fields of the line as it is now, less any EOL delimiter
+				tokenizer.fields( line );
 
 				// from the delimiterArray we can build a str + start/end arrays needed only for underline
 				int[] stringStart = null;
 				int[] stringEnd = null;
 
 				boolean done = false;
-				actualFieldCount = lineArray.length;
+				actualFieldCount = tokenizer.fieldCount;
 
 				/*
 				 * because we allow a trailing field in certain cases of EOL we need to
@@ -1454,20 +1815,20 @@ class Rule {
 					// add a test in case it was just whitespace
 
 					// only in the "all case"
-					if ( ruleOption.getErrorReportDetails() == 'a' ) {
+					if ( plan.errorReportDetails == 'a' ) {
 
-						if ( line.matches("\\s*") ) {
-							outInfo.append("\n\n").append(lineNumber).append(
+						if ( ctx.matchers.reset( RulePlan.WHITESPACE, line ).matches() ) {
+							outInfo.append("\n\n").append(ctx.lineNumber).append(
 									":  << error, input is just whitespace, therefore less fields than expected for the give regexes. Consider adding to lineSkipRegex. >>\n");
 						} else {
-							outInfo.append("\n\n").append(lineNumber).append(":\n").append(line).append("\n  <error, less fields than expected for the given regexes>\n");
+							outInfo.append("\n\n").append(ctx.lineNumber).append(":\n").append(line).append("\n  <error, less fields than expected for the given regexes>\n");
 						}
 
 					}
 
-					errCount++;
+					ctx.errCount++;
 					hadError = true;
-					Validate.rc( 2 ); // record error
+					ctx.rc( 2 ); // record error
 					done = true;
 
 				} else if ( actualFieldCount == expectedFieldCount ) {
@@ -1476,44 +1837,44 @@ class Rule {
 					// so actual is greater
 					// special case: the user could want extra end fields but not test them
 
-					if ( ruleOption.getExtraFieldCount() >= 1 ) {
-						if ( actualFieldCount > expectedFieldCount + ruleOption.getExtraFieldCount() ) {
+					if ( plan.extraFieldCount >= 1 ) {
+						if ( actualFieldCount > expectedFieldCount + plan.extraFieldCount ) {
 							// too many call it an error
 							// only in the "all case"
-							if ( ruleOption.getErrorReportDetails() == 'a' ) {
-								outInfo.append("\n").append(lineNumber).append(":\n").append(line).append("\n  <error, <").append(
+							if ( plan.errorReportDetails == 'a' ) {
+								outInfo.append("\n").append(ctx.lineNumber).append(":\n").append(line).append("\n  <error, <").append(
 										actualFieldCount - expectedFieldCount).append("> extra field(s) exceed the count of <").append(
-												ruleOption.getExtraFieldCount() ).append("> that was specified>");
+												plan.extraFieldCount ).append("> that was specified>");
 							}
 
-							errCount++;
+							ctx.errCount++;
 							hadError = true;
-							Validate.rc( 2 );
+							ctx.rc( 2 );
 
 						} else {
-							if (ruleOption.getWarnExtraFields() == true ) {
-								outInfo.append("\n").append(lineNumber).append(":\n").append(line).append("\n  <warning, <").append(
+							if (plan.warnExtraFields == true ) {
+								outInfo.append("\n").append(ctx.lineNumber).append(":\n").append(line).append("\n  <warning, <").append(
 										actualFieldCount - expectedFieldCount).append("> extra field(s), only the first <").append(
 												expectedFieldCount).append("> are validated>");
 
 							}
-							Validate.rc( 1 );
+							ctx.rc( 1 );
 						}
 
-					} else if ( ruleOption.getExtraFieldCount() < 0 ) {
+					} else if ( plan.extraFieldCount < 0 ) {
 						; // just ignore them without warning
 					} else {
 						// by default extra == 0 so the user has an error to deal with
 
 						// only in the "all case"
-						if ( ruleOption.getErrorReportDetails() == 'a' ) {
-							outInfo.append("\n").append(lineNumber).append(":\n").append(
+						if ( plan.errorReportDetails == 'a' ) {
+							outInfo.append("\n").append(ctx.lineNumber).append(":\n").append(
 									line).append("  <error, too many fields for the given regexes> ");
 						}
 
-						errCount++;
+						ctx.errCount++;
 						hadError = true;
-						Validate.rc( 2 ); // record error
+						ctx.rc( 2 ); // record error
 						done = true;
 
 					}
@@ -1532,34 +1893,9 @@ class Rule {
 					if ( errorFieldUnderline ) {
 						errorUnderline = new char[ lineLength ];
 						Arrays.fill( errorUnderline, ' ' ); // start clean and update to ^ as needed
-						stringStart = new int[ lineArray.length ];
-						stringEnd = new int[ lineArray.length ];
-						int index = 0;
-						boolean marking = false;
-						int p = 0;
-
-
-						for ( p = 0; p < lineLength; p++ ) {
-							// walk the temp[] and set string start/end values
-							if ( marking == false ) {
-								if ( temp != null && temp[ p ] == '0' ) {
-									marking = true;
-									stringStart[ index ] = p;
-								}
-							} else {
-								// marking = true
-								if ( temp[ p ] == '1' ) {
-									stringEnd[ index ] = p;
-									marking = false;
-									index++;
-								}
-							}
-						}
-
-						if ( marking == true ) {
-							// need to close the stringEnd
-							stringEnd[ index ] = p;
-						}
+						stringStart = new int[ actualFieldCount ];
+						stringEnd = new int[ actualFieldCount ];
+						tokenizer.runs( stringStart, stringEnd, lineLength ); // the text between delimiters
 
 					} // end if errorFieldUnderline
 
@@ -1569,12 +1905,12 @@ class Rule {
 					for ( ; j < expectedFieldCount; j++ ) {
 
 						boolean justNull = false;
-						m = ((Pattern)patternListArray[ j ]).matcher( lineArray[ j ] ); // reset the matcher for the next pattern
+						m = ctx.matchers.reset( ((Pattern)patternListArray[ j ]), line ).region( tokenizer.fieldStart[ j ], tokenizer.fieldEnd[ j ] ); // the field, no substring
 
 						if ( ! m.find() ) { // NO-Match=error
 
 							fieldErr = true;
-							Validate.rc( 2 ); // record error
+							ctx.rc( 2 ); // record error
 
 							if ( fields.length() > 0 ) {
 								fields.append( "," );
@@ -1583,7 +1919,7 @@ class Rule {
 							}
 
 							// special case mark a null field that failed
-							if ( lineArray[j].length() == 0 ) {
+							if ( tokenizer.fieldStart[ j ] == tokenizer.fieldEnd[ j ] ) {
 								justNull = true;
 								fields.append( "^" );
 							}
@@ -1595,7 +1931,7 @@ class Rule {
 								if ( lineLength > 0 && fieldErr ) {
 									Arrays.fill( errorUnderline, stringStart[ j ] , stringEnd[ j ], '^' );
 								} else {
-									outInfo.append("\n\n").append(lineNumber).append(":\n").append("  < line is only a newline character >\n");
+									outInfo.append("\n\n").append(ctx.lineNumber).append(":\n").append("  < line is only a newline character >\n");
 								}
 							}
 						}
@@ -1604,15 +1940,15 @@ class Rule {
 
 
 					// now only for case of allowed extra fields && warning on
-					if (errorFieldUnderline && ruleOption.getExtraFieldCount() >= 1 && ruleOption.getWarnExtraFields() ) {
+					if (errorFieldUnderline && plan.extraFieldCount >= 1 && plan.warnExtraFields ) {
 						for ( ; j < actualFieldCount; j++ ) {
 							Arrays.fill( errorUnderline, stringStart[ j ] , stringEnd[ j ], '?' );
 						}
 					}
 
 					if ( hadError == false && fieldErr == true ) {
-						errCount++;
-						Validate.rc( 2 ); // record error
+						ctx.errCount++;
+						ctx.rc( 2 ); // record error
 					}
 
 				}
@@ -1620,20 +1956,20 @@ class Rule {
 
 			if ( hadError == false && fieldErr == false ) {
 				// for debugging
-				if ( ruleOption.getShowValidData() == true ) {
-					outInfo.append("\n\n").append(lineNumber).append(": valid\n").append(line).append("\n");
+				if ( plan.showValidData == true ) {
+					outInfo.append("\n\n").append(ctx.lineNumber).append(": valid\n").append(line).append("\n");
 				}
 				
 			}
 
 			// how to report findings on error      
-			if ( (hadFirstError == false) && (ruleOption.getErrorReportDetails() != 'e') ) {
-				hadFirstError = true;
+			if ( (ctx.hadFirstError == false) && (plan.errorReportDetails != 'e') ) {
+				ctx.hadFirstError = true;
 			}
 
-			switch ( ruleOption.getErrorReportDetails() ) {
+			switch ( plan.errorReportDetails ) {
 			case 'n':
-				outInfo.append(lineNumber).append(",");
+				outInfo.append(ctx.lineNumber).append(",");
 				break;
 			case 'l':
 				outInfo.append(line);
@@ -1641,10 +1977,10 @@ class Rule {
 			case 'a':
 
 				if ( fieldErr ) {
-					outInfo.append("\n").append(lineNumber);
+					outInfo.append("\n").append(ctx.lineNumber);
 				}
 
-				if ( ruleOption.getErrorFieldUnderline() ) {
+				if ( plan.errorFieldUnderline ) {
 
 					if ( fieldErr == true ) {
 
@@ -1654,7 +1990,7 @@ class Rule {
 						outInfo.append(fields).append("\n").append(line).append("\n");
 						// its possible there was an error but nothing to underline because of a null field
 
-						if ( hadFirstError ) {
+						if ( ctx.hadFirstError ) {
 							outInfo.append( new String( errorUnderline ) );
 						}
 
@@ -1667,194 +2003,201 @@ class Rule {
 				break;
 			}
 
-			if ( ruleOption.getErrorReportDetails() == 'l' ) {
+			if ( plan.errorReportDetails == 'l' ) {
 				outInfo.append("\n");
 			}
 
-			checkEOFstatus( outInfo.toString(), lineNumber, errCount, "", f); // sends the DATA file
+			checkEOFstatus( ctx, outInfo, ctx.lineNumber, ctx.errCount, ctx.outUnchecked, ctx.f ); // sends the DATA file
 
 		} catch ( final PatternSyntaxException pse) {
-		System.err.println( "\nfatal: option <delimiterString> RULE with id <" + ruleID + "> does not compile. " );
-		System.exit( 50 );
+		err.println( "\nfatal: option <delimiterString> RULE with id <" + ruleID + "> does not compile. " );
+		Validate.exit( 50 );
 	}
 
-	
+		return ctx.errCount;
 }       // end of for fileList
 
+	/*
+	 * the -V switch, every line of the file (or STDIN for -) is a value, each is validated and
+	 * reported as -v would do it, with its line number in place of 1, then a summary of them all
+	 */
+	private void doValueFile() {
+		LineSource br = null;
+		String line = null;
+		int values = 0;
+		int failed = 0;
+
+		try {
+			if ( Validate.valueFile.equals( "-" ) ) {
+				br = new ReaderLineSource( stdin(), ruleOption.getFileCharset() );
+			} else {
+				br = new ReaderLineSource( new FileInputStream( Validate.valueFile ), ruleOption.getFileCharset() );
+			}
+
+			while ( (line = br.readLine()) != null ) {
+				values++;
+
+				if ( (ruleFormat == format.VALUE_LINE ? doValueLine( values, line ) : doValueDelimited( values, line )) > 0 ) {
+					failed++;
+				}
+			}
+		} catch ( final IOException ioe ) {
+			err.println( "\nfatal: can't read value file <" + Validate.valueFile + ">, RULE with id <" + ruleID + ">. " + ioe.getMessage() );
+			Validate.exit( 15 );
+		} finally {
+			closeReader( br );
+		}
+
+		// as the TOTAL FAILS line, a trailing SPACE when none failed
+		out.println( "\n% ID: " + ruleID + " VALUES: " + values + " FAIL: " + failed + (failed > 0 ? "" : " ") );
+	}
+
        
 	// its a java properties file. Use java to check it, then apply optional
 	// tests as given
 	private void doJava() {
 		
-		int propCount = 0;
-		lineSkipRegexExists = false;
-		lineCheckRegexExists = false;
+		// the skip and check patterns, compiled once
+		buildPlan();
 
-		if ( (lineSkipRegex = ruleOption.getLineSkipRegex()) != null ) {
-			lineSkipRegexExists = true;
-
-			try {
-				lineSkipPattern = Pattern.compile( lineSkipRegex );
-			} catch ( PatternSyntaxException e ) {
-				// already tested when read
-				System.err.println( "\nfatal: failed to compile <lineSkipRegex> from rule ID <" + ruleID + ">.");
-				System.exit( 55 );
+		if ( ! Validate.testMode ) {
+			// in testMode we may not have the real file, so we can't pass to java
+			if ( (nvpHM == null) || nvpHM.isEmpty()) {
+				err.println( "\nfatal: no REGEX data was found in RULE with id <" + ruleID + ">. " );
+				Validate.exit( 15 );
 			}
+
+			// iterate over the file list
+			// for each property file we are storing the properties using java
+			runFiles();
 		}
 
-		if ( (lineCheckRegex = ruleOption.getLineCheckRegex()) != null ) {
-			lineCheckRegexExists = true;
 
-			try {
-				lineCheckPattern = Pattern.compile( lineCheckRegex );
-			} catch ( PatternSyntaxException e ) {
-				// already tested when read
-				System.err.println( "\nfatal: failed to compile <lineCheckRegex> from rule ID <" + ruleID + ">.");
-				System.exit( 55 );
+	} // end doJava
+
+	/*
+	 * doJavaFile - validate one properties file, each file is loaded into its own Properties
+	 */
+	private void doJavaFile( FileContext ctx ) {
+
+		final Properties prop = new Properties();
+		InputStream fin = null;
+		Matcher lineSkipMatcher = null;
+		Matcher lineCheckMatcher = null;
+		NVP nvp = null;
+		final ReportBuffer outInfo = ctx.outInfo;
+		int propCount = 0;
+
+		try {
+			if ( ctx.in != null ) {
+				fin = unclosed( ctx.in );
+			} else if ( ctx.channel != null ) {
+				fin = unclosed( Channels.newInputStream( ctx.channel ) ); // the file validateArchive has open
+			} else {
+				fin = new FileInputStream( ctx.f );
 			}
+			prop.load( fin );
+		} catch ( final IOException io ) {
+			ctx.err.println( "\nfatal: error reading file in RULE with id <" + ruleID + ">. " + io.getMessage() );
+			Validate.exit( 15 );	
+		} catch ( final IllegalArgumentException iae ) {
+			ctx.err.println( "\nfatal: error reading file in RULE with id <" + ruleID + ">. " + iae.getMessage() );
+			Validate.exit( 15 );
+		} finally {
+			closeReader( fin );
 		}
 
-		if ( ! Validate.testMode ) {
-			// in testMode we may not have the real file, so we can't pass to java
-			final Properties prop = new Properties();
-			FileInputStream fin = null;
+		// lets read it back out as name value pairs
+		for (final String propName : prop.stringPropertyNames()) {
 
-			if ( (nvpHM == null) || nvpHM.isEmpty()) {
-				System.err.println( "\nfatal: no REGEX data was found in RULE with id <" + ruleID + ">. " );
-				System.exit( 15 );
+			if ( errorLimitReached( ctx ) ) {
+				break;
 			}
 
-			// iterate over the file list
-			// for each property file we are storing the properties using java
-			for ( final String file : fileList ) {
-				// need clean for each file tested
-				outInfo = new StringBuilder( 100 );
-				outUnchecked = new StringBuilder( 100 );
-				errCount = 0;
-				
-				if ( file == null ) {
-					if ( ruleOption.getWarnRuleWithoutFile() ) {
-						System.err.println( "\nwarning: RULE with id <" + ruleID + "> has no <file=> specified; RULE is skipped.");
-					}
-					continue; // nothing else we can do with no file
-				}
+			final String propValue = prop.getProperty(propName); 
+			propCount++;
 
-				if ( (dir = ruleOption.getDirPathString()) != null ) {
-					f = dir + file;  
-				} else {
-					f = file;
+			// so we read a name and its value as it was stored from the prop file
+			if ( (propName != null) && (propValue != null) ) {
+
+				// inserted - we'll add the same 3 things as other formats. THe opportunity to skip, match and show whats left
+				// because these maybe useful while a user is building up a RULE section over time
+				// we will just use local flag so we can pre-compile the Pattern to save time
+
+				if ( plan.lineSkipPattern != null ) {
+					lineSkipMatcher = ctx.matchers.reset( plan.lineSkipPattern, propName );
+
+					if ( lineSkipMatcher.find() ) {
+						continue; // user wants to skip
+					}
 				}
 
-				lineNumber = 0;
+				if ( plan.lineCheckPattern != null ) {
+					lineCheckMatcher = ctx.matchers.reset( plan.lineCheckPattern, propName );
 
-				try {
-					fin = new FileInputStream( file );
-					if ( fin != null ) {
-						prop.load( fin );
-						fin.close();
-					}		
-				} catch ( final IOException io ) {
-					System.err.println( "\nfatal: error reading file in RULE with id <" + ruleID + ">. " + io.getMessage() );
-					System.exit( 15 );	
-				} catch ( final IllegalArgumentException iae ) {
-					System.err.println( "\nfatal: error reading file in RULE with id <" + ruleID + ">. " + iae.getMessage() );
-					System.exit( 15 );
+					if ( ! lineCheckMatcher.find() ) {
+						continue; // could not find what user wanted
+					}
 				}
 
-				// lets read it back out as name value pairs
-				for (final String propName : prop.stringPropertyNames()) {
+				if ( (plan.lineSkipPattern != null || plan.lineCheckPattern != null) && plan.lineShow ) {
+					ctx.out.println("validating: property name <" + propName + ">.");
+				}
 
-					final String propValue = prop.getProperty(propName); 
-					propCount++;
 
-					// so we read a name and its value as it was stored from the prop file
-					if ( (propName != null) && (propValue != null) ) {
+				// here we are testing to see if the name in the prop file DOES have a NAME=regex
+				// if NOT it is an UNchecked and we may need to warn the user
+				if ( nvpHM.containsKey( propName ) == false ) {
+					// we have an extra property
+					if ( ctx.outUnchecked.length() > 0 ) {
+						ctx.outUnchecked.append(", ").append( propName );
+					} else {
+						ctx.outUnchecked.append( propName );
+					}
 
-						// inserted - we'll add the same 3 things as other formats. THe opportunity to skip, match and show whats left
-						// because these maybe useful while a user is building up a RULE section over time
-						// we will just use local flag so we can pre-compile the Pattern to save time
+					continue;
+				} else {
+					// so we do have a name=regex to check it with
+					nvp = nvpHM.get(propName);
 
-						if ( lineSkipRegexExists ) {
-							lineSkipMatcher = lineSkipPattern.matcher( propName );
 
-							if ( lineSkipMatcher.find() ) {
-								continue; // user wants to skip
-							}
-						}
+					// do WORK - 
 
-						if ( lineCheckRegexExists ) {
-							lineCheckMatcher = lineCheckPattern.matcher( propName );
+					if ( ! nvp.validateValueWithRegex( ctx.matchers, propValue ) ) {
+						ctx.errCount++;
 
-							if ( ! lineCheckMatcher.find() ) {
-								continue; // could not find what user wanted
-							}
+						switch ( plan.errorReportDetails ) {
+						case 'n':
+							outInfo.append( nvp.getLineNumber() ).append(",");
+							break;
+						case 'l':
+							outInfo.append(propName).append("=").append(propValue);
+							break;
+						case 'a': 
+							outInfo.append("\n").append(nvp.getLineNumber()).append(": fail\n").append("PROP <").append(propName).
+							append("> VALUE <").append(propValue).append("> does not match regex: ").append(nvp.getValue()).append("\n");
+							break;
+						default:
+							// got nothing, so show nothing
+							break;
 						}
 
-						if ( (lineSkipRegexExists || lineCheckRegexExists) &&  ruleOption.getLineShow() ) {
-							System.out.println("validating: property name <" + propName + ">.");
+						if ( plan.errorReportDetails == 'l' ) {	
+							outInfo.append("\n");
 						}
 
-
-						// here we are testing to see if the name in the prop file DOES have a NAME=regex
-						// if NOT it is an UNchecked and we may need to warn the user
-						if ( nvpHM.containsKey( propName ) == false ) {
-							// we have an extra property
-							if ( outUnchecked.length() > 0 ) {
-								outUnchecked.append(", ").append( propName );
-							} else {
-								outUnchecked.append( propName );
-							}
-
-							continue;
-						} else {
-							// so we do have a name=regex to check it with
-							nvp = nvpHM.get(propName);
-
-
-							// do WORK - 
-
-							if ( ! nvp.validateValueWithRegex( propValue ) ) {
-								errCount++;
-
-								switch ( ruleOption.getErrorReportDetails() ) {
-								case 'n':
-									outInfo.append( nvp.getLineNumber() ).append(",");
-									break;
-								case 'l':
-									outInfo.append(propName).append("=").append(propValue);
-									break;
-								case 'a': 
-									outInfo.append("\n").append(nvp.getLineNumber()).append(": fail\n").append("PROP <").append(propName).
-									append("> VALUE <").append(propValue).append("> does not match regex: ").append(nvp.getValue()).append("\n");
-									break;
-								default:
-									// got nothing, so show nothing
-									break;
-								}
-
-								if ( ruleOption.getErrorReportDetails() == 'l' ) {	
-									outInfo.append("\n");
-								}
-
-							} else {
-								if ( ruleOption.getShowValidData() == true ) {
-									outInfo.append("\n").append(nvp.getLineNumber()).append(": valid\n").append(propValue).append("\n");
-								}
-							}
-
-						} // end else of contaninKey
+					} else {
+						if ( plan.showValidData == true ) {
+							outInfo.append("\n").append(nvp.getLineNumber()).append(": valid\n").append(propValue).append("\n");
+						}
 					}
-				} // end prop checking
-
 
+				} // end else of contaninKey
 			}
-			checkEOFstatus( outInfo.toString(), propCount, errCount, outUnchecked.toString(), configFileName ); // sends DATA file
-		}
+		} // end prop checking
 
-		// clean up 
-		nvpHM = null;
-
-	} // end doJava
+		checkEOFstatus( ctx, outInfo, propCount, ctx.errCount, ctx.outUnchecked, configFileName ); // sends DATA file
+	} // end doJavaFile
 
 	/*
 	 * doNameValue - process the user provided regexes for name=value format checking
@@ -1862,282 +2205,229 @@ class Rule {
 	 */
 
 	private void doNameValue() {
-		lineSkipRegex = null;
-		lineCheckRegexExists = false;
-		lineCheckRegex = null;
-		lineCheckPattern = null;
-		lineSkipRegexExists = false;
-		int itemsChecked = 0;
-		
-		if ( (lineSkipRegex = ruleOption.getLineSkipRegex()) != null ) {
-			lineSkipRegexExists = true;
-
-			try {
-				lineSkipPattern = Pattern.compile( lineSkipRegex );
-			} catch (final PatternSyntaxException e) {
-				System.err.println( "\nerror: RULE with ruleID <" + ruleID + "> had option <lineSkipRegex>, which did not compile. " + e.getMessage());
-				System.exit( 15 );
-			}
-		}
-
-		// handle editting
-		// gets all options for prefix, suffix, replace
-		genericLineEdittingPrep();
+		// every pattern and option the lines need, compiled once
+		// gets all options for skip, check, prefix, suffix, replace
+		buildPlan();
 
 		if ( ! Validate.testMode ) {
 
 			// in testMode we may not have the real file, so we can't pass to java
-			File inputFile = null;	
-
 			if ( (nvpHM == null) || nvpHM.isEmpty() ) {
-				System.err.println( "\nfatal: no REGEX data was found in RULE with id <" + ruleID + ">. " );
-				System.exit( 15 );
+				err.println( "\nfatal: no REGEX data was found in RULE with id <" + ruleID + ">. " );
+				Validate.exit( 15 );
 			}
 
-			StringBuilder outDupsNameVar = null;
-			// iterate over the file list of name=value files in this Rule
 			// iterate over the list of name=value files in this Rule
-			for ( final String file : fileList ) {				// need these clean per file tested
-				outInfo = new StringBuilder( 100 );
-				outUnchecked = new StringBuilder( 100 );
-				outDupsNameVar = new StringBuilder( 100 ); 
-				String line = null;
-				String[] nvArray = new String[2];
-				itemsChecked = 0;
-				errCount = 0;
-				
-				if ( file == null ) {
-					if ( ruleOption.getWarnRuleWithoutFile() ) {
-						System.err.println( "\nwarning: RULE with id <" + ruleID + "> has no <file=> specified; RULE is skipped.");
-					}
-					continue; // nothing else we can do with no file
-				}
-
-				if ( nvRegexUsed != null ) { // so we can start fresh for next file
-					nvRegexUsed = new ArrayList<String>();
-				}
+			runFiles();
+		}
 
-				lineNumber = 0;
+	} // end doNameValue
 
-				try {
-					/*
-					 * we need to read each non-comment line in the Name=Value file and test	
-					 */
+	/*
+	 * doNameValueFile - validate one name=value file, all state for the file is kept in its context
+	 */
+	private void doNameValueFile( FileContext ctx ) {
+
+		LineSource br = null;
+		String line = null;
+		String[] nvArray = new String[2];
+		Matcher m = null;
+		Matcher lineSkipMatcher = null;
+		Matcher lineCheckMatcher = null;
+		NVP nvp = null;
+		final ReportBuffer outInfo = ctx.outInfo;
+		int itemsChecked = 0;
 
-					if ( (dir = ruleOption.getDirPathString()) != null ) {
-						f = dir + file;  
-					} else {
-						f = file;
-					}
+		try {
+			/*
+			 * we need to read each non-comment line in the Name=Value file and test	
+			 */
+			br = openLineSource( ctx, 0, -1 );
 
-					inputFile = new File( f );
-					br = new BufferedReader( new FileReader( inputFile ) );
-					short lineNumber = 0;
-					
-					while ( true ) {
-						// line - is the line of input from the config file
-						line = br.readLine();
+			while ( true ) {
 
-						if ( line == null ) {
-							break; // we're done
-						} 
+				if ( errorLimitReached( ctx ) ) {
+					break;
+				}
 
-						lineNumber++;
+				// line - is the line of input from the config file
+				line = br.readLine();
 
-						// will handle backslash continued lines if needed
-						final String strReturned = continuationProcessor( line ) ;
+				if ( line == null ) {
+					break; // we're done
+				} 
 
-						if ( strReturned.length() == 0 ) {
-							continue;
-						} else {
-							line = strReturned;
-						}
+				// will handle backslash continued lines if needed
+				final String strReturned = continuationProcessor( ctx, line ) ;
 
-						// if comment skip it
-						if ( lineSkipRegexExists ) {
+				if ( strReturned.length() == 0 ) {
+					continue;
+				} else {
+					line = strReturned;
+				}
 
-							lineSkipMatcher = lineSkipPattern.matcher( line );
-							if ( lineSkipMatcher.find() ) {
-								continue;
-							}
-						}
+				// if comment skip it
+				if ( plan.lineSkipPattern != null ) {
 
-						/*
-						 * use of genericLineEdditing to adjust line before validation
-						 */
+					lineSkipMatcher = ctx.matchers.reset( plan.lineSkipPattern, line );
+					if ( lineSkipMatcher.find() ) {
+						continue;
+					}
+				}
 
-						if ( lineReplaceFlag ) {
-							//line = line.replaceAll( replaceArray[0], replaceArray[1]);
-							Pattern p = Pattern.compile( replaceArray[0] );
-							Matcher mm = p.matcher( line );
-							if ( mm.find() ) {
-								line = mm.replaceAll( replaceRegex );
-							}
-						}
+				/*
+				 * use of genericLineEdditing to adjust line before validation
+				 */
 
-						/*
-						 *  we can trim off the start and/or end of each line BEFORE we look at the remainder "nv" pair
-						 */
-						if ( linePrefixRegexExists || lineSuffixRegexExists ) {
-							m = linePrefixSuffixPattern.matcher( line );
-							line = m.replaceAll( "" );
-						}
+				if ( plan.replacePattern != null ) {
+					Matcher mm = ctx.matchers.reset( plan.replacePattern, line );
+					if ( mm.find() ) {
+						line = mm.replaceAll( plan.replacement );
+					}
+				}
 
-						/*
-						 * OK but we could still have more than we are interested in so last global check
-						 * determines if we really parse the line
-						 */
-						//  use it to decide skip it or check it
-						if ( lineCheckRegexExists ) {
+				/*
+				 *  we can trim off the start and/or end of each line BEFORE we look at the remainder "nv" pair
+				 */
+				if ( plan.linePrefixSuffixPattern != null ) {
+					m = ctx.matchers.reset( plan.linePrefixSuffixPattern, line );
+					line = m.replaceAll( "" );
+				}
 
-							lineCheckMatcher = lineCheckPattern.matcher( line );
-							if (! lineCheckMatcher.find() ) {
-								continue;
-							}
-						}
-						// end of genericLineEditting
+				/*
+				 * OK but we could still have more than we are interested in so last global check
+				 * determines if we really parse the line
+				 */
+				//  use it to decide skip it or check it
+				if ( plan.lineCheckPattern != null ) {
 
+					lineCheckMatcher = ctx.matchers.reset( plan.lineCheckPattern, line );
+					if (! lineCheckMatcher.find() ) {
+						continue;
+					}
+				}
+				// end of genericLineEditting
 
-						//  use it to decide skip it or check it
-						if ( lineCheckRegexExists ) {
+				// for debugging let user see what is being checked
+				if ( plan.lineShow == true ) {
+					outInfo.append("\nvalidating: <" + ctx.lineNumber + ">: " + line);
+				}
 
-							lineCheckMatcher = lineCheckPattern.matcher( line );
-							if (! lineCheckMatcher.find() ) {
-								continue;
-							}
-						}
+				itemsChecked++;
+
+				// tokenize the line
+				nvArray = RulePlan.NAME_VALUE_SPLIT.split( line, 2 ); // LEAVE spaces in VALUE
+				nvArray[0] = nvArray[0].trim(); // get rid of indent but 
+
+				if ( nvArray.length > 2 ) {
+					ctx.err.println("\nerror: invalid format for NAME=VALUE on line <" + ctx.lineNumber + "> line <" + line + ">.");
+					ctx.rc( 2 ); // recorded error level
+					return;
+				} else if ( (nvArray.length == 2) && (nvArray[0] == null) && (nvArray[1] == null) ) {
+					ctx.err.println("\nerror: invalid format for NAME=VALUE on line <" + ctx.lineNumber + ">, both NAME and VALUEe are null.");
+					ctx.rc( 2 ); // recorded error level
+					return;
+				} else if ( (nvArray.length == 2) && (nvArray[0] == null)  ) {
+					ctx.err.println("\nerror: invalid format for NAME=VALUE on line <" + ctx.lineNumber + ">, NAME is null.");
+					ctx.rc( 2 ); // recorded error level
+					return; 
+				} else if ( (nvArray.length == 2) && (nvArray[1] == null)  ) {
+					ctx.err.println("\nerror: invalid format for NAME=VALUE on line <" + ctx.lineNumber + ">, VALUE is null.");
+					ctx.rc( 2 ); // recorded error level
+					return;
+				}
 
-						// for debugging let user see what is being checked
-						if ( ruleOption.getLineShow() == true ) {
-							outInfo.append("\nvalidating: <" + lineNumber + ">: " + line);
-						}
+				/*
+				 *    so the nvArray holds the name=value that we will VALIDATE for the user
+				 *    ctx.nameSeen - names from the users input need to track for missing names
+				 *    the nvpHM holds the names and regexes that we will TEST TO
+				 *    
+				 *    there are multiple outcomes
+				 *    silence - if what we expect to VALIDATE matches the TEST
+				 *    error - if what we expect fails the match
+				 *    warning - (depends on options) if we did NOT FIND something that we had a TEST for
+				 *    warning - (depends on options) if we found a second (or more) occurence of the name to TEST (a duplicate)
+				 *    warning - (depends on options) if the user file had a name that we did NOT test
+				 */
 
-						itemsChecked++;
-
-						// tokenize the line
-						nvArray = line.split("\\s*=", 2); // LEAVE spaces in VALUE
-						nvArray[0] = nvArray[0].trim(); // get rid of indent but 
-
-						if ( nvArray.length > 2 ) {
-							System.err.println("\nerror: invalid format for NAME=VALUE on line <" + lineNumber + "> line <" + line + ">.");
-							Validate.rc( 2 ); // recorded error level
-							return;
-						} else if ( (nvArray.length == 2) && (nvArray[0] == null) && (nvArray[1] == null) ) {
-							System.err.println("\nerror: invalid format for NAME=VALUE on line <" + lineNumber + ">, both NAME and VALUEe are null.");
-							Validate.rc( 2 ); // recorded error level
-							return;
-						} else if ( (nvArray.length == 2) && (nvArray[0] == null)  ) {
-							System.err.println("\nerror: invalid format for NAME=VALUE on line <" + lineNumber + ">, NAME is null.");
-							Validate.rc( 2 ); // recorded error level
-							return; 
-						} else if ( (nvArray.length == 2) && (nvArray[1] == null)  ) {
-							System.err.println("\nerror: invalid format for NAME=VALUE on line <" + lineNumber + ">, VALUE is null.");
-							Validate.rc( 2 ); // recorded error level
-							return;
-						}
+				// see if its a name in the users file
+				// yes the regexUsed means it WAS used to check a name already - so the name is a dup
+				// not the regex (regex dupes were checked in Regex object
+				nvp = nvpHM.get( nvArray[0] ); // null when there is no regex for the name
 
-						/*
-						 *    so the nvArray holds the name=value that we will VALIDATE for the user
-						 *    nvRegexUsed - names from the users input need to track for missing names
-						 *    the nvpHM holds the names and regexes that we will TEST TO
-						 *    
-						 *    there are multiple outcomes
-						 *    silence - if what we expect to VALIDATE matches the TEST
-						 *    error - if what we expect fails the match
-						 *    warning - (depends on options) if we did NOT FIND something that we had a TEST for
-						 *    warning - (depends on options) if we found a second (or more) occurence of the name to TEST (a duplicate)
-						 *    warning - (depends on options) if the user file had a name that we did NOT test
-						 */
-
-						// see if its a name in the users file
-						// yes the regexUsed means it WAS used to check a name already - so the name is a dup
-						// not the regex (regex dupes were checked in Regex object
-						if ( (nvRegexUsed != null) && nvRegexUsed.contains( nvArray[0] ) ) {
-							// we have a duplicate
-							if ( ruleOption.getWarnDuplicates() ) {
-
-								if ( outDupsNameVar.length() > 0 ) {
-									outDupsNameVar.append(", ").append( nvArray[0] );
-								} else {
-									outDupsNameVar.append( nvArray[0] );
-								}
-							}
+				if ( ctx.nameSeen( nvp, nvArray[0] ) ) {
+					// we have a duplicate
+					if ( plan.warnDuplicates ) {
 
+						if ( ctx.outDupsNameVar.length() > 0 ) {
+							ctx.outDupsNameVar.append(", ").append( nvArray[0] );
 						} else {
-							// we need to save the name of NV pair we had in the file being examined for future
-							if ( nvArray != null ) {
-								nvRegexUsed.add( nvArray[0] ); // saved for missing test at end
-							}
+							ctx.outDupsNameVar.append( nvArray[0] );
 						}
+					}
 
-						/*
-						 * if it was in a user file but NOT in the config file, its extra
-						 */
-
-						if ( nvpHM.containsKey( nvArray[0] ) == false ) {
+				}
 
-							// we have an extra property
-							if ( outUnchecked.length() > 0 ) {
-								outUnchecked.append(", ").append( nvArray[0] );
-							} else {
-								outUnchecked.append( nvArray[0] );
-							}
+				/*
+				 * if it was in a user file but NOT in the config file, its extra
+				 */
 
-							continue;
-						}	
+				if ( nvp == null ) {
 
-						// retrieve the object so we can access the regex
-						nvp = nvpHM.get( nvArray[0] );
+					// we have an extra property
+					if ( ctx.outUnchecked.length() > 0 ) {
+						ctx.outUnchecked.append(", ").append( nvArray[0] );
+					} else {
+						ctx.outUnchecked.append( nvArray[0] );
+					}
 
-						// do WORK - based on the correct name object
-						if ( ! nvp.validateValueWithRegex( nvArray[1] ) ) {
-							errCount++;
+					continue;
+				}	
 
-							switch ( ruleOption.getErrorReportDetails() ) {
-							case 'n':
-								outInfo.append(lineNumber + ",");
-								break;
-							case 'l':
-								outInfo.append("\n").append(nvArray[0]).append("=").append(nvArray[1]);
-								break;
-							case 'a':
-								outInfo.append("\n").append(lineNumber).append(": fail\n").append("NAME <").
-								append(nvArray[0]).append("> VALUE <").append(nvArray[1]).
-								append("> does not match regex: ").append(nvp.getValue()).append("\n");
-								break;
-							default:
-								// got nothing, so show nothing
-								break;
-							}
+				// do WORK - based on the correct name object
+				if ( ! nvp.validateValueWithRegex( ctx.matchers, nvArray[1] ) ) {
+					ctx.errCount++;
 
-							if ( ruleOption.getErrorReportDetails() == 'n' ) {	
-								outInfo.append("\n");
-							}
+					switch ( plan.errorReportDetails ) {
+					case 'n':
+						outInfo.append(ctx.lineNumber + ",");
+						break;
+					case 'l':
+						outInfo.append("\n").append(nvArray[0]).append("=").append(nvArray[1]);
+						break;
+					case 'a':
+						outInfo.append("\n").append(ctx.lineNumber).append(": fail\n").append("NAME <").
+						append(nvArray[0]).append("> VALUE <").append(nvArray[1]).
+						append("> does not match regex: ").append(nvp.getValue()).append("\n");
+						break;
+					default:
+						// got nothing, so show nothing
+						break;
+					}
 
-						} else {
-							if ( ruleOption.getShowValidData() == true ) {
-								outInfo.append("\n").append(nvp.getLineNumber()).append(": valid\nNAME <").append(nvArray[0]).append(">\n");
-							}
-						}
-					} // end of while line reading
+					if ( plan.errorReportDetails == 'n' ) {	
+						outInfo.append("\n");
+					}
 
-				} catch ( final IOException io ) {
-					System.err.println( "\nfatal: error reading file <" + f + "> in RULE with ruleID <" + ruleID + ">. " + io.getMessage() );
-					System.exit( 19 );	
-				} catch ( final IllegalArgumentException iae ) {
-					System.err.println( "\nfatal: error reading file <" + f + "> in RULE with ruleID <" + ruleID + ">. " + iae.getMessage() );
-					System.exit( 19 );
+				} else {
+					if ( plan.showValidData == true ) {
+						outInfo.append("\n").append(nvp.getLineNumber()).append(": valid\nNAME <").append(nvArray[0]).append(">\n");
+					}
 				}
-
-				checkEOFstatus( outInfo.toString(), itemsChecked, errCount, outUnchecked.toString(), outDups.toString(), outDupsNameVar.toString(), f ); 
-				itemsChecked = 0;
-			}
-
+			} // end of while line reading
+
+		} catch ( final IOException io ) {
+			ctx.err.println( "\nfatal: error reading file <" + ctx.f + "> in RULE with ruleID <" + ruleID + ">. " + io.getMessage() );
+			Validate.exit( 19 );	
+		} catch ( final IllegalArgumentException iae ) {
+			ctx.err.println( "\nfatal: error reading file <" + ctx.f + "> in RULE with ruleID <" + ruleID + ">. " + iae.getMessage() );
+			Validate.exit( 19 );
+		} finally {
+			closeReader( br );
 		}
 
-		// clean up 
-		nvpHM = null;
-	} // end doNameValue
+		checkEOFstatus( ctx, outInfo, itemsChecked, ctx.errCount, ctx.outUnchecked, outDups.toString(), ctx.outDupsNameVar, ctx.f ); 
+	} // end doNameValueFile
 
 	/************************ overloaded methods below **************************/
 	/*
@@ -2146,11 +2436,14 @@ class Rule {
 	 * 
 	 * Note: this version is ONLY for FORMATS of PROPERTIES, LINES, DELIMITED see next overloaded method
 	 */
-	private void checkEOFstatus ( String s, int lines, int errors, String Unchecked, String fileName ) {
+	private void checkEOFstatus ( FileContext ctx, ReportBuffer s, int lines, int errors, ReportBuffer Unchecked, String fileName ) {
 		// reached EOF of a file to validate
 		final char errorReportSummary = ruleOption.getErrorReportSummary();
 		char sp = ' ';
 
+		countErrors( ctx );
+		final String truncated = ctx.truncated ? " TRUNCATED" : ""; // an error limit stopped the file early
+
 		// this is to make the SUMMARY line "greppable" if it has errors
 		if ( errors > 0 ) {
 			sp = ' ';
@@ -2170,51 +2463,60 @@ class Rule {
 			title = "UPDATE_HEADING"; // place holder
 		}
 
+		if ( s.isStreaming() && s.length() > 0 ) {
+			// the report went out as it was found, the summary follows it
+			s.writeTo( ctx.out );
+			ctx.out.println( "\n" );
+		}
+
 		switch ( errorReportSummary ) {
 		case 'a':
-			if ( f != null ) {
-				System.out.println( "\n% ID: " + ruleID + " FILE: " + f + " " + title + ": " + lines + " FAIL: " + errors + sp );
-				System.out.println( "    (line numbers refer to file: " + fileName + ")" );   // differs depending on format=value
+			if ( ctx.f != null ) {
+				ctx.out.println( "\n% ID: " + ruleID + " FILE: " + ctx.f + " " + title + ": " + lines + " FAIL: " + errors + truncated + sp );
+				ctx.out.println( "    (line numbers refer to file: " + fileName + ")" );   // differs depending on format=value
 			} else {
-				System.out.println( "\n% ID: " + ruleID + " " +  title + ": " + lines + " FAIL: " + errors + sp );
+				ctx.out.println( "\n% ID: " + ruleID + " " +  title + ": " + lines + " FAIL: " + errors + truncated + sp );
 			}
 			break;
 		case 'f':
 			if ( errors > 0 ) {
-				if ( f != null ) {
-					System.out.println( "\n% ID: " + ruleID + " FILE: " + f + " " + title + ": " + lines + " FAIL: " + errors + sp);
-					System.out.println( "    (line numbers refer to file: " + fileName + ")" );   // differs depending on format=value
+				if ( ctx.f != null ) {
+					ctx.out.println( "\n% ID: " + ruleID + " FILE: " + ctx.f + " " + title + ": " + lines + " FAIL: " + errors + truncated + sp);
+					ctx.out.println( "    (line numbers refer to file: " + fileName + ")" );   // differs depending on format=value
 				} else {
 					// use for valueMode since there is no file!
-					System.out.println( "\n% ID: " + ruleID + " " + title + ": " + lines + " FAIL: " + errors + sp);
+					ctx.out.println( "\n% ID: " + ruleID + " " + title + ": " + lines + " FAIL: " + errors + truncated + sp);
 				}
 			}
 			break;
 		default:
-			System.err.println( "\nfatal: programming error invalid <errorReportSummary> in RULE with ruleID <" + ruleID + ">." );
-			System.exit( 101 );
+			ctx.err.println( "\nfatal: programming error invalid <errorReportSummary> in RULE with ruleID <" + ruleID + ">." );
+			Validate.exit( 101 );
 			break;
 		}
 
-		if ( s.length() > 0 ) {
-			// we have some info to report
-			System.out.println( s + "\n" ); 
+		if ( ! s.isStreaming() && s.length() > 0 ) {
+			// we have some info to report, it may be too big for a String
+			s.writeTo( ctx.out );
+			ctx.out.println( "\n" ); 
 		}
 
 		boolean hadPreviousWarning = false;
 		if ( ruleOption.getWarnUncheckedName() && (Unchecked.length() > 0) ) {
 			if ( hadPreviousWarning ) {
-				System.out.println("\n");
+				ctx.out.println("\n");
 			}
-			System.out.println("warning: unchecked NAME(s): " + Unchecked);
-			Validate.rc( 1 ); // recorded warning level
+			ctx.out.print("warning: unchecked NAME(s): ");
+			Unchecked.writeTo( ctx.out );
+			ctx.out.println();
+			ctx.rc( 1 ); // recorded warning level
 			hadPreviousWarning = true;
 		}
 
 		// compare regexUsed vs nvpHM the difference is regexes that were NOT used
 		// since infoDups is done we'll reuse it
 
-		if ( ! nvRegexUsed.isEmpty() && ruleOption.getWarnRegexUnused() ) {
+		if ( ctx.hadName && ruleOption.getWarnRegexUnused() ) {
 			boolean gotOne = false;
 			final StringBuilder sb = new StringBuilder( 100 );
 
@@ -2223,9 +2525,10 @@ class Rule {
 			}
 			sb.append("warning: unused regex(es) for NAME(s): ");
 
-			for(final String str : nvpHM.keySet() ) {
+			for(final Map.Entry<String, NVP> entry : nvpHM.entrySet() ) {
+				final String str = entry.getKey();
 
-				if ( nvRegexUsed.contains( str ) ) {
+				if ( ctx.nameUsed( entry.getValue() ) ) {
 					continue;
 				} else {
 
@@ -2241,7 +2544,7 @@ class Rule {
 
 			// only print if something to show
 			if ( gotOne != false ) {
-				System.out.println( sb.toString() );
+				ctx.out.println( sb.toString() );
 				gotOne = true;
 			}
 		}
@@ -2256,11 +2559,14 @@ class Rule {
 	 * 
 	 * NOTE: this version takes on one more parameter used ONLY for: NameValue, and CUSTOM!
 	 */
-	private void checkEOFstatus ( String s, int lines, int errors, String Unchecked, String Dups, String NameDups, String fileName ) {
+	private void checkEOFstatus ( FileContext ctx, ReportBuffer s, int lines, int errors, ReportBuffer Unchecked, String Dups, ReportBuffer NameDups, String fileName ) {
 		// reached EOF of a file to validate
 		final char errorReportSummary = ruleOption.getErrorReportSummary();
 		char sp = ' ';
 
+		countErrors( ctx );
+		final String truncated = ctx.truncated ? " TRUNCATED" : ""; // an error limit stopped the file early
+
 		// this is to make the SUMMARY line "grep-able" if it has errors
 		if ( errors > 0 ) {
 			sp = ' ';
@@ -2276,58 +2582,69 @@ class Rule {
 			title = "UPDATE_HEADING"; // place holder
 		}
 
+		if ( s.isStreaming() && s.length() > 0 ) {
+			// the report went out as it was found, the summary follows it
+			s.writeTo( ctx.out );
+			ctx.out.println( "\n" );
+		}
+
 		switch ( errorReportSummary ) {
 		case 'a':
-			System.out.println( "\n% ID: " + ruleID + " FILE: " + f + " " + title + ": " + lines + " FAIL: " + errors + sp );
-			System.out.println( "    (line numbers (xxx:) refer to file: " + fileName + ")" );   // differs depending on format=value
+			ctx.out.println( "\n% ID: " + ruleID + " FILE: " + ctx.f + " " + title + ": " + lines + " FAIL: " + errors + truncated + sp );
+			ctx.out.println( "    (line numbers (xxx:) refer to file: " + fileName + ")" );   // differs depending on format=value
 			
 			break;
 		case 'f':
 			if ( errors > 0 ) {
-				System.out.println( "\n% ID: " + ruleID + " FILE: " + f + " " + title + ": " + lines + " FAIL: " + errors + sp);
-				System.out.println( "    (line numbers (xxx:) refer to file: " + fileName + ")" ); // differs depending on format=value
+				ctx.out.println( "\n% ID: " + ruleID + " FILE: " + ctx.f + " " + title + ": " + lines + " FAIL: " + errors + truncated + sp);
+				ctx.out.println( "    (line numbers (xxx:) refer to file: " + fileName + ")" ); // differs depending on format=value
 			}
 			break;
 		default:
-			System.err.println( "\nfatal: programming error invalid <errorReportSummary> in RULE with ruleID <" + ruleID + ">.");
-			System.exit( 101 );
+			ctx.err.println( "\nfatal: programming error invalid <errorReportSummary> in RULE with ruleID <" + ruleID + ">.");
+			Validate.exit( 101 );
 			break;
 		}
 
-		if ( s.length() > 0 ) {
-			// we have some info to report
-			System.out.println( s + "\n"); 
+		if ( ! s.isStreaming() && s.length() > 0 ) {
+			// we have some info to report, it may be too big for a String
+			s.writeTo( ctx.out );
+			ctx.out.println( "\n" ); 
 		}
 
 		boolean hadPreviousWarning = false;
 		if ( ruleOption.getWarnUncheckedName() && (Unchecked.length() > 0) ) {
-			System.out.println("warning: unchecked NAME(s): " + Unchecked);
-			Validate.rc( 1 ); // recorded warning level
+			ctx.out.print("warning: unchecked NAME(s): ");
+			Unchecked.writeTo( ctx.out );
+			ctx.out.println();
+			ctx.rc( 1 ); // recorded warning level
 			hadPreviousWarning = true;
 		}
 
-		if ( ruleOption.getWarnDuplicates() && (Dups != null && Dups.length() > 0) ) {
+		if ( plan.warnDuplicates && (Dups != null && Dups.length() > 0) ) {
 			if ( hadPreviousWarning ) {
-				System.out.println("\n");
+				ctx.out.println("\n");
 			}
-			System.out.println("warning: duplicated regex(es), the last one was used: " + Dups);
-			Validate.rc( 1 ); // recorded warning level
+			ctx.out.println("warning: duplicated regex(es), the last one was used: " + Dups);
+			ctx.rc( 1 ); // recorded warning level
 			hadPreviousWarning = true;
 		}
 
-		if ( ruleOption.getWarnDuplicates() && (NameDups != null && NameDups.length() > 0) ) {
+		if ( plan.warnDuplicates && (NameDups != null && NameDups.length() > 0) ) {
 			if ( hadPreviousWarning ) {
-				System.out.println("\n");
+				ctx.out.println("\n");
 			}
-			System.out.println("warning: duplicated name(s) in data file, the last one was used: " + NameDups);
-			Validate.rc( 1 ); // recorded warning level
+			ctx.out.print("warning: duplicated name(s) in data file, the last one was used: ");
+			NameDups.writeTo( ctx.out );
+			ctx.out.println();
+			ctx.rc( 1 ); // recorded warning level
 			hadPreviousWarning = true;
 		}
 
 		// compare regexUsed vs nvpHM the difference is regexes that were NOT used
 		// since infoDups is done we'll reuse it
 
-		if ( ! nvRegexUsed.isEmpty() && ruleOption.getWarnRegexUnused() ) {
+		if ( ctx.hadName && ruleOption.getWarnRegexUnused() ) {
 			boolean gotOne = false;
 			final StringBuilder sb = new StringBuilder( 100 );
 
@@ -2336,9 +2653,10 @@ class Rule {
 			}
 			sb.append("warning: unused regex(es) for NAME(s): ");
 
-			for(final String str : nvpHM.keySet() ) {
+			for(final Map.Entry<String, NVP> entry : nvpHM.entrySet() ) {
+				final String str = entry.getKey();
 
-				if ( nvRegexUsed.contains( str ) ) {
+				if ( ctx.nameUsed( entry.getValue() ) ) {
 					continue;
 				} else {
 
@@ -2353,7 +2671,7 @@ class Rule {
 
 			// only print if something to show
 			if ( gotOne != false ) {
-				System.out.println( sb.toString() );
+				ctx.out.println( sb.toString() );
 				gotOne = true;
 			}
 		}
@@ -2366,159 +2684,237 @@ class Rule {
 	/*
 	 * deals with line IF we have option for lineContinuation
 	 */
-	String continuationProcessor( String line ) {
-		tmpline = null;
+	String continuationProcessor( FileContext ctx, String line ) {
+		ctx.tmpline = null;
 
 		if ( ruleOption.getFileLineContinuation() ) {
 
 			if ( line.endsWith("\\") && ! line.endsWith("\\\\")  ) {
 
 				// its a continuation; need to adjust line and concatenate
-				if ( continuationState == false ) {
+				if ( ctx.continuationState == false ) {
 					// swallow the \
-					continuationState = true;
-					tmpline = line.substring(0, line.length() - 1 ); // trims the backslash
-					lineNumber++;
+					ctx.continuationState = true;
+					ctx.tmpline = line.substring(0, line.length() - 1 ); // trims the backslash
+					ctx.lineNumber++;
 					return "";
 				} else {
 					// not the final line, so append and read more
 					line = line.trim(); // swallows the start of line WS
 					line = line.substring(0, line.length() - 1); // trims the backslash
-					tmpline += line;//
-					lineNumber++;
+					ctx.tmpline += line;//
+					ctx.lineNumber++;
 					return "";
 				}
 
 			} else {
 
-				if ( continuationState ) {
+				if ( ctx.continuationState ) {
 					// the final line now, so trim and use it
 					line = line.trim();
-					lineNumber++; 
-					tmpline += line;
-					continuationState = false; // reset
-					line = tmpline;
+					ctx.lineNumber++; 
+					ctx.tmpline += line;
+					ctx.continuationState = false; // reset
+					line = ctx.tmpline;
 				} else {
 					// line used as is
-					lineNumber++;
+					ctx.lineNumber++;
 				}
 			}
 
 		} else {
 			// user doesn't want this feature
-			lineNumber++;
+			ctx.lineNumber++;
 		}
 
-		continuationState = false; // reset
-		tmpline = null;
+		ctx.continuationState = false; // reset
+		ctx.tmpline = null;
 		return line;
 	}
 
 
 	/*
-	 * used by all formats EXCEPT JavaProperties
-	 * user can edit the data line to get it into a more parse-able format for validating
+	 * the data of a file named -, left open for any other RULE that reads it (it will find it at its end)
 	 */
-	void genericLineEdittingPrep() {
-		/*
-		 * we check for prefix and/or suffix and if so we check for line anchor and assemble one regex for the line
-		 */
-		linePrefixRegex = ruleOption.getLinePrefixRegex(); 
-		if ( linePrefixRegex != null && linePrefixRegex.length() > 0 ) {
-			linePrefixRegexExists = true;
+	private static InputStream stdin() {
+		return unclosed( System.in );
+	}
 
-			try {
-				linePrefixSuffixPattern = Pattern.compile( linePrefixRegex );
-			} catch (final PatternSyntaxException e) {
-				System.err.println( "\nerror: RULE with id <" + ruleID + "> had option <customePrefixRegex>, which did not compile. " + e.getMessage());
-				System.exit( 15 );
+	/*
+	 * in, but closing it is left to whoever opened in
+	 */
+	private static InputStream unclosed( InputStream in ) {
+		return new FilterInputStream( in ) {
+			@Override
+			public void close() {
+				// not ours to close
 			}
+		};
+	}
 
-			if ( linePrefixRegex.charAt(0) != '^' ) {
-				linePrefixSuffixRegex.append("^");  // start the regex
-			}
+	/*
+	 * close the input of a file that was validated, nothing more can be done if that fails
+	 */
+	private void closeReader( Closeable c ) {
 
-			linePrefixSuffixPattern = null; // no longer needed
-			linePrefixSuffixRegex.append( linePrefixRegex ); // add on user input to regex
+		if ( c == null ) {
+			return;
 		}
 
-		// done the prefix IF it existed
-		if ( linePrefixRegexExists ) {
-			// we have a prefix so append the OR
-			linePrefixSuffixRegex.append( '|' ); // we had a regex under construction so add on to it
+		try {
+			c.close();
+		} catch ( final IOException ioe ) {
+			// we are done with it anyway
 		}
+	}
 
-		// now the suffix
-		lineSuffixRegex = ruleOption.getLineSuffixRegex();
-		if ( lineSuffixRegex != null &&  lineSuffixRegex.length() > 0 ) {
-			lineSuffixRegexExists = true; 
 
-			try {
-				linePrefixSuffixPattern = Pattern.compile( lineSuffixRegex );
-			} catch (final PatternSyntaxException e) {
-				System.err.println( "\nerror: RULE with id <" + ruleID + "> had option <customeSuffixRegex>, which did not compile. " + e.getMessage());
-				System.exit( 15 );
+	/*
+	 * the plan is built the first time the rule runs and kept, the per line loops only use the plan
+	 */
+	private void buildPlan() {
+
+		if ( plan == null ) {
+			// a regex with a line range is not tried on every line, so those are not combined
+			plan = new RulePlan( ruleID, ruleOption, patternStringListArray, hasLineRanges() ? null : lineFormatRegexList, err );
+			lineRanges = new LineRanges( fromLineList, toLineList );
+
+			// a name with a regex is tracked by a bit per NVP while the files are read
+			if ( nvpHM != null ) {
+				int ordinal = 0;
+				for ( final NVP n : nvpHM.values() ) {
+					n.setOrdinal( ordinal++ );
+				}
 			}
+		}
+	}
 
-			linePrefixSuffixRegex.append( lineSuffixRegex );
+	Options getRuleOption( ) {
+		return ruleOption;
+	}
 
-			if ( lineSuffixRegex.charAt( lineSuffixRegex.length() -1 ) != '$' ) {
-				linePrefixSuffixRegex.append("$");
-			}
+	/*
+	 * the file names as given by file= or -f, the globs not expanded
+	 */
+	List<String> getFileList() {
+		return fileList;
+	}
 
+	/*
+	 * write what the config file parse left in this rule for a Snapshot, the regexes as their
+	 * (macro expanded) source; the Snapshot writes the options
+	 */
+	void writeTo( DataOutputStream out ) throws IOException {
+		Snapshot.writeString( out, ruleID );
+		Snapshot.writeString( out, configFileName );
+		Snapshot.writeString( out, ruleFormat == null ? null : ruleFormat.name() );
+
+		out.writeInt( fileList.size() );
+		for ( final String f : fileList ) {
+			Snapshot.writeString( out, f );
 		}
 
-		// final test of combined prefix/suffix ORed with anchors
-		if ( linePrefixRegexExists || lineSuffixRegexExists ) {
+		writeRegexes( out );
+	}
 
-			try {
-				linePrefixSuffixPattern = Pattern.compile( linePrefixSuffixRegex.toString() );
-			} catch (final PatternSyntaxException e) {
-				System.err.println( "\nerror: RULE with id  <" + ruleID + "> had option <customePrefixRegex and or lineSuffixRegex>, which did not compile when ORed together. " + e.getMessage());
-				System.exit( 15 );
-			}
+	/*
+	 * the regexes and what the parse found in them, after the ruleID, config file and format
+	 * they are what the report of a file depends on
+	 */
+	private void writeRegexes( DataOutputStream out ) throws IOException {
+
+		// LINE regexes, each with its line range
+		out.writeInt( lineFormatRegexList.size() );
+		for ( int i = 0; i < lineFormatRegexList.size(); i++ ) {
+			Snapshot.writeString( out, lineFormatRegexList.get( i ).pattern() );
+			out.writeInt( fromLineList.get( i ) );
+			out.writeInt( toLineList.get( i ) );
 		}
 
-		// handle the line check regex pattern, to be used later
-		if ( (lineCheckRegex = ruleOption.getLineCheckRegex()) != null) {
-			lineCheckRegexExists = true;
+		// DELIMITED regexes
+		out.writeInt( patternStringListArray == null ? -1 : patternStringListArray.length );
+		if ( patternStringListArray != null ) {
+			for ( final Object regex : patternStringListArray ) {
+				Snapshot.writeString( out, (String) regex );
+			}
+		}
 
-			try {
-				lineCheckPattern = Pattern.compile( lineCheckRegex );
-			} catch (final PatternSyntaxException e) {
-				System.err.println("\nerror: RULE with  id <"
-						+ ruleID
-						+ "> had option <lineCheckRegex>, which did not compile. "
-						+ e.getMessage());
-				System.exit(15);
+		// in the nvpHM order, put back in the same order it iterates the same
+		out.writeInt( nvpHM == null ? -1 : nvpHM.size() );
+		if ( nvpHM != null ) {
+			for ( final Map.Entry<String, NVP> entry : nvpHM.entrySet() ) {
+				Snapshot.writeString( out, entry.getKey() );
+				Snapshot.writeString( out, entry.getValue().getValue() );
+				out.writeShort( entry.getValue().getLineNumber() );
 			}
 		}
 
-		/* prep work if the user provide a replacement string option, if so this will be 
-		 * processed just AFTER the skipLine
-		 */
+		Snapshot.writeString( out, outDups.toString() );
+	}
+
+	/*
+	 * a hash of all the report of a file depends on but the file, the key of the result cache
+	 */
+	synchronized String getDefinitionHash() throws IOException {
+
+		if ( definitionHash == null ) {
+			final ByteArrayOutputStream b = new ByteArrayOutputStream( 4096 );
+			final DataOutputStream out = new DataOutputStream( b );
+			Snapshot.writeString( out, ruleID );
+			Snapshot.writeString( out, configFileName );
+			Snapshot.writeString( out, ruleFormat == null ? null : ruleFormat.name() );
+			writeRegexes( out );
+			ruleOption.writeTo( out );
+			out.close();
+			definitionHash = ResultCache.hash( b.toByteArray() );
+		}
+
+		return definitionHash;
+	}
+
+	/*
+	 * the rule as written by writeTo, with its regexes compiled again
+	 */
+	static Rule readFrom( DataInputStream in, Options ruleOption ) throws IOException {
+		final Rule rule = new Rule( Snapshot.readString( in ), ruleOption, null );
+		rule.configFileName = Snapshot.readString( in );
 
-		lineReplaceRegex = ruleOption.getLineReplaceRegex();
-		if (  lineReplaceRegex != null && lineReplaceRegex.length() > 0 ) {
-			// first split the value and see if format is ok
-			lineReplaceFlag = true;
+		final String formatName = Snapshot.readString( in );
+		rule.ruleFormat = formatName == null ? null : format.valueOf( formatName );
+
+		for ( int i = in.readInt(); i > 0; i-- ) {
+			rule.fileList.add( Snapshot.readString( in ) );
+		}
 
-			replaceArray = lineReplaceRegex.split( ruleOption.getLineReplaceDelimiterRegex(), 2 );
+		for ( int i = in.readInt(); i > 0; i-- ) {
+			rule.lineFormatRegexList.add( PatternCache.compile( Snapshot.readString( in ) ) );
+			rule.fromLineList.add( in.readInt() );
+			rule.toLineList.add( in.readInt() );
+		}
 
-			// replaceArray[0] = search_string
-			// replaceArray[1] = replacement_string or null
-			if ( replaceArray[0].length() == 0 ) {
-				System.err.println("\nerror: search string of a <lineReplaceRegex> cannot be null in RULE with Id <" + ruleID + ">.");
+		final int fieldCount = in.readInt();
+		if ( fieldCount >= 0 ) {
+			rule.patternStringListArray = new Object[ fieldCount ];
+			rule.patternListArray = new Object[ fieldCount ];
+			for ( int i = 0; i < fieldCount; i++ ) {
+				rule.patternStringListArray[ i ] = Snapshot.readString( in );
+				rule.patternListArray[ i ] = PatternCache.compile( (String) rule.patternStringListArray[ i ] );
 			}
+		}
 
-			// if there was no delimiter or the second parameter was null
-			if ( replaceArray.length == 1 || replaceArray[1] == null ) {
-				replaceRegex = "";
-			} else {
-				replaceRegex = replaceArray[1];
+		final int nvpCount = in.readInt();
+		if ( nvpCount >= 0 ) {
+			rule.nvpHM = new HashMap<String, NVP>();
+			for ( int i = 0; i < nvpCount; i++ ) {
+				final String name = Snapshot.readString( in );
+				final NVP n = new NVP( name, Snapshot.readString( in ), in.readShort() );
+				n.compilePattern();
+				rule.nvpHM.put( name, n );
 			}
 		}
 
-	} 
+		rule.outDups.append( Snapshot.readString( in ) );
+		return rule;
+	}
 
 } // end of class
@@ -0,0 +1,351 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * RuleExecutor - runs the RULE blocks of a config file on a pool of worker threads (-j switch).
+ * Each Rule writes its report into a private buffer, the buffers are then printed in the
+ * order of the config file so the output looks the same as a sequential run.
+ * The files of a single Rule are done the same way, each with its own FileContext, and
+ * a large LINE or DELIMITED file can be split into chunks that are done the same way again.
+ * @author Bill Lanahan
+ *
+ */
+class RuleExecutor {
+
+	private int threads = 1;
+	private static ExecutorService filePool = null; // shared by all rules, kept apart from the rule pool so they can't starve each other
+	private static ExecutorService chunkPool = null; // and the same again for the chunks of one file
+
+	RuleExecutor( int threads ) {
+		this.threads = threads;
+	}
+
+	/*
+	 * run every rule in ruleList, a rule's report is printed as soon as it and all the
+	 * rules ahead of it (in config file order) are done
+	 */
+	void runAll( ArrayList<String> ruleList, Map<String, Rule> ruleMap ) {
+		final ExecutorService pool = Executors.newFixedThreadPool( threads );
+		final ArrayList<Future<Rule>> results = new ArrayList<Future<Rule>>( ruleList.size() );
+		final ArrayList<SpillOutputStream> outBuffers = new ArrayList<SpillOutputStream>( ruleList.size() );
+		final ArrayList<SpillOutputStream> errBuffers = new ArrayList<SpillOutputStream>( ruleList.size() );
+
+		for ( final String ruleID : ruleList ) {
+
+			if ( ruleID == null ) {
+				System.err.println("\nfatal: a stored ruleId is null, program error in RuleExecutor.java");
+				Validate.exit( 99 );
+			}
+
+			final Rule rule = ruleMap.get( ruleID );
+			final SpillOutputStream outBuffer = new SpillOutputStream( 1024 );
+			final SpillOutputStream errBuffer = new SpillOutputStream( 256 );
+
+			// the rule reports into its own buffers rather than straight to STDOUT/STDERR
+			rule.out = new PrintStream( outBuffer, true );
+			rule.err = new PrintStream( errBuffer, true );
+			outBuffers.add( outBuffer );
+			errBuffers.add( errBuffer );
+
+			results.add( pool.submit( new Callable<Rule>() {
+				public Rule call() {
+					rule.checkIt();
+					return rule;
+				}
+			}));
+		}
+
+		// collect in config file order, waiting on each rule in turn
+		for ( int i = 0; i < results.size(); i++ ) {
+			Rule rule = null;
+
+			try {
+				rule = results.get( i ).get();
+			} catch ( final InterruptedException ie ) {
+				System.err.println( "\nfatal: interrupted while waiting for RULE with id <" + ruleList.get( i ) + ">." );
+				Validate.exit( 99 );
+			} catch ( final ExecutionException ee ) {
+				flush( outBuffers.get( i ), errBuffers.get( i ) );
+
+				if ( ee.getCause() instanceof ExitException ) {
+					// the rule ended the run, as it would have without -j the rules after it are not run:
+					// the ones not started are dropped, the running ones are interrupted and waited for
+					pool.shutdownNow();
+					finish( results, i );
+
+					for ( int j = i + 1; j < results.size(); j++ ) {
+						outBuffers.get( j ).discard();
+						errBuffers.get( j ).discard();
+					}
+					throw (ExitException) ee.getCause();
+				}
+
+				System.err.println( "\nfatal: RULE with id <" + ruleList.get( i ) + "> failed. " + ee.getCause() );
+				Validate.exit( 99 );
+			}
+
+			flush( outBuffers.get( i ), errBuffers.get( i ) );
+
+			// free the report and put the rule back to writing directly
+			outBuffers.set( i, null );
+			errBuffers.set( i, null );
+			rule.out = System.out;
+			rule.err = System.err;
+		}
+
+		pool.shutdown();
+	}
+
+	/*
+	 * validate the files of one rule at the same time, the report of each file is printed
+	 * in fileList order once it and the files ahead of it are done; only a few files are taken
+	 * from contexts ahead of the one printed, so a glob of many files is not all held at once
+	 */
+	static void runFiles( final Rule rule, Iterator<FileContext> contexts ) {
+		final ArrayList<Future<FileContext>> results = new ArrayList<Future<FileContext>>();
+		final ArrayList<FileContext> started = new ArrayList<FileContext>();
+		final ExecutorService pool = getFilePool();
+		final int ahead = Validate.threads * 4;
+
+		for ( int i = 0; contexts.hasNext() || i < results.size(); i++ ) {
+
+			while ( results.size() - i < ahead && contexts.hasNext() ) {
+				final FileContext ctx = contexts.next();
+				ctx.buffer();
+				started.add( ctx );
+
+				results.add( pool.submit( new Callable<FileContext>() {
+					public FileContext call() {
+						rule.validateFile( ctx );
+						return ctx;
+					}
+				}));
+			}
+
+			try {
+				results.get( i ).get();
+			} catch ( final InterruptedException ie ) {
+				rule.err.println( "\nfatal: interrupted while waiting for file <" + started.get( i ).fileName + "> in RULE with id <" + rule.getRuleID() + ">." );
+				finish( results, i - 1 ); // the run is ending, e.g. another rule ended it
+				Validate.exit( 99 );
+			} catch ( final ExecutionException ee ) {
+				started.get( i ).flush( rule.out, rule.err );
+
+				if ( ee.getCause() instanceof ExitException ) {
+					finish( results, i );
+					throw (ExitException) ee.getCause();
+				}
+
+				rule.err.println( "\nfatal: file <" + started.get( i ).fileName + "> in RULE with id <" + rule.getRuleID() + "> failed. " + ee.getCause() );
+				Validate.exit( 99 );
+			}
+
+			started.get( i ).flush( rule.out, rule.err );
+
+			// printed, let it go
+			started.set( i, null );
+			results.set( i, null );
+		}
+	}
+
+	/*
+	 * validate the chunks of one file at the same time, each chunk counts its lines from zero so
+	 * the chunks are added to the file's context in order, moving their line numbers up as they go
+	 */
+	static void runChunks( final Rule rule, FileContext ctx, final long[] bounds ) {
+		final ArrayList<Future<FileContext>> results = new ArrayList<Future<FileContext>>( bounds.length - 1 );
+		final ExecutorService pool = getChunkPool();
+
+		for ( int i = 0; i < bounds.length - 1; i++ ) {
+			final FileContext chunk = new FileContext( ctx.fileName, ctx.out, ctx.err );
+			final long start = bounds[ i ];
+			final long end = bounds[ i + 1 ];
+			chunk.f = ctx.f;
+			chunk.outInfo.defer();
+
+			results.add( pool.submit( new Callable<FileContext>() {
+				public FileContext call() {
+					rule.validateChunk( chunk, start, end );
+					return chunk;
+				}
+			}));
+		}
+
+		for ( int i = 0; i < results.size(); i++ ) {
+			FileContext chunk = null;
+
+			try {
+				chunk = results.get( i ).get();
+			} catch ( final InterruptedException ie ) {
+				ctx.err.println( "\nfatal: interrupted while waiting for file <" + ctx.fileName + "> in RULE with id <" + rule.getRuleID() + ">." );
+				finish( results, i - 1 ); // the run is ending, e.g. another rule ended it
+				Validate.exit( 99 );
+			} catch ( final ExecutionException ee ) {
+
+				if ( ee.getCause() instanceof ExitException ) {
+					finish( results, i );
+					throw (ExitException) ee.getCause();
+				}
+
+				ctx.err.println( "\nfatal: file <" + ctx.fileName + "> in RULE with id <" + rule.getRuleID() + "> failed. " + ee.getCause() );
+				Validate.exit( 99 );
+			}
+
+			ctx.outInfo.append( chunk.outInfo, ctx.lineNumber );
+			ctx.lineNumber += chunk.lineNumber;
+			ctx.errCount += chunk.errCount;
+			ctx.hadFirstError = ctx.hadFirstError || chunk.hadFirstError;
+			ctx.rc = Math.max( ctx.rc, chunk.rc );
+			results.set( i, null ); // let the chunk's report go
+		}
+	}
+
+	/*
+	 * validate the files of a zip archive at the same time on the chunk pool (an entry is never split
+	 * into chunks), each report is held and printed in archive order into the archive's context
+	 */
+	static void runEntries( final Rule rule, FileContext ctx, final ZipFile zip, List<ZipEntry> zipEntries, ArrayList<FileContext> entries ) {
+		final ArrayList<Future<FileContext>> results = new ArrayList<Future<FileContext>>( entries.size() );
+		final ExecutorService pool = getChunkPool();
+
+		for ( int i = 0; i < entries.size(); i++ ) {
+			final FileContext entry = entries.get( i );
+			final ZipEntry zipEntry = zipEntries.get( i );
+			entry.buffer();
+
+			results.add( pool.submit( new Callable<FileContext>() {
+				public FileContext call() {
+					rule.validateEntry( entry, zip, zipEntry );
+					return entry;
+				}
+			}));
+		}
+
+		for ( int i = 0; i < results.size(); i++ ) {
+
+			try {
+				results.get( i ).get();
+			} catch ( final InterruptedException ie ) {
+				ctx.err.println( "\nfatal: interrupted while waiting for file <" + entries.get( i ).f + "> in RULE with id <" + rule.getRuleID() + ">." );
+				finish( results, i - 1 ); // the run is ending, e.g. another rule ended it
+				Validate.exit( 99 );
+			} catch ( final ExecutionException ee ) {
+				entries.get( i ).flush( ctx.out, ctx.err );
+
+				if ( ee.getCause() instanceof ExitException ) {
+					finish( results, i );
+					throw (ExitException) ee.getCause();
+				}
+
+				ctx.err.println( "\nfatal: file <" + entries.get( i ).f + "> in RULE with id <" + rule.getRuleID() + "> failed. " + ee.getCause() );
+				Validate.exit( 99 );
+			}
+
+			entries.get( i ).flush( ctx.out, ctx.err );
+			ctx.addEntry( entries.get( i ) );
+		}
+	}
+
+	/*
+	 * a task ended the run, the ones after it that have not started are cancelled and the running
+	 * ones waited for, so none is still changing the counts of the run when it ends (the server goes
+	 * on to the next request); their reports are dropped with their temporary files
+	 */
+	private static void finish( List<? extends Future<?>> results, int failed ) {
+
+		for ( int i = failed + 1; i < results.size(); i++ ) {
+			results.get( i ).cancel( false );
+		}
+
+		for ( int i = failed + 1; i < results.size(); i++ ) {
+			try {
+				final Object done = results.get( i ).get();
+
+				if ( done instanceof FileContext ) {
+					((FileContext) done).discard();
+				}
+			} catch ( final CancellationException ce ) {
+				// it never started
+			} catch ( final InterruptedException ie ) {
+				return;
+			} catch ( final ExecutionException ee ) {
+				// it failed too, the first one is reported
+			}
+		}
+	}
+
+	/*
+	 * the pools are made on first use and their threads don't keep the JVM alive
+	 */
+	private static synchronized ExecutorService getFilePool() {
+
+		if ( filePool == null ) {
+			filePool = newDaemonPool( "validate-file" );
+		}
+
+		return filePool;
+	}
+
+	private static synchronized ExecutorService getChunkPool() {
+
+		if ( chunkPool == null ) {
+			chunkPool = newDaemonPool( "validate-chunk" );
+		}
+
+		return chunkPool;
+	}
+
+	private static ExecutorService newDaemonPool( final String name ) {
+		return Executors.newFixedThreadPool( Validate.threads, new ThreadFactory() {
+			public Thread newThread( Runnable r ) {
+				final Thread t = new Thread( r, name );
+				t.setDaemon( true );
+				return t;
+			}
+		});
+	}
+
+	private void flush( SpillOutputStream outBuffer, SpillOutputStream errBuffer ) {
+		outBuffer.writeTo( System.out );
+		errBuffer.writeTo( System.err );
+	}
+
+}
@@ -0,0 +1,389 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * RulePlan - everything the per line loops of a Rule need, compiled once from the Options of the
+ * RULE block. The loops only read the plan, so no regex is compiled and no option is looked up
+ * again while the data files are read.
+ * @author Bill Lanahan
+ *
+ */
+class RulePlan {
+
+	// shared by every rule
+	static final Pattern NAME_VALUE_SPLIT = Pattern.compile( "\\s*=" );
+	static final Pattern WHITESPACE = Pattern.compile( "\\s*" );
+
+	// a null pattern means the option was not given
+	final Pattern lineSkipPattern;
+	final Pattern lineCheckPattern;
+	final Pattern linePrefixSuffixPattern; // prefix and suffix ORed with anchors
+	final Pattern replacePattern; // search part of lineReplaceRegex
+	final String replacement;
+
+	// only compiled when the rule has a delimiterRegex
+	final Pattern delimiterPattern; // delimiterRegex to split the fields
+	final Pattern EOLPattern; // delimiterRegex$
+	final String delimiterLiteral; // delimiterRegex as a plain string, null if it needs the regex
+
+	// LINE only, null when each regex is tried on its own
+	final CombinedPattern lineFormatPattern; // the REGEX block as one alternation
+
+	// DELIMITED only, null when every line is checked field by field
+	final Pattern fullDelimitedLinePattern; // the REGEX block joined by the delimiter, for the whole line
+	private final char fullLineDelimiter;
+	private final int fullLineFieldCount;
+
+	// resolved options
+	final char errorReportDetails;
+	final boolean showValidData;
+	final boolean lineShow;
+	final boolean errorFieldUnderline;
+	final boolean validLineUnderline;
+	final boolean warnExtraFields;
+	final boolean warnDuplicates;
+	final boolean streamReport;
+	final int maxErrorsPerFile; // 0 is no limit
+	final int maxErrorsPerRule;
+	final short extraFieldCount;
+	final boolean EOLdelimiterRequired; // EOLdelimiter=true
+	final boolean EOLdelimiterNotAllowed; // EOLdelimiter=false
+
+	RulePlan ( String ruleID, Options ruleOption, Object[] fieldRegexes, List<Pattern> lineRegexes, PrintStream err ) {
+
+		lineSkipPattern = compile( ruleOption.getLineSkipRegex(), "lineSkipRegex", ruleID, err );
+		lineCheckPattern = compile( ruleOption.getLineCheckRegex(), "lineCheckRegex", ruleID, err );
+
+		/*
+		 * we check for prefix and/or suffix and if so we check for line anchor and assemble one regex for the line
+		 */
+		final String linePrefixRegex = ruleOption.getLinePrefixRegex();
+		final String lineSuffixRegex = ruleOption.getLineSuffixRegex();
+		final boolean linePrefixRegexExists = linePrefixRegex != null && linePrefixRegex.length() > 0;
+		final boolean lineSuffixRegexExists = lineSuffixRegex != null && lineSuffixRegex.length() > 0;
+		final StringBuilder linePrefixSuffixRegex = new StringBuilder( 50 );
+
+		if ( linePrefixRegexExists ) {
+			compile( linePrefixRegex, "linePrefixRegex", ruleID, err );
+
+			if ( linePrefixRegex.charAt(0) != '^' ) {
+				linePrefixSuffixRegex.append("^");  // start the regex
+			}
+
+			// we have a prefix so append the OR
+			linePrefixSuffixRegex.append( linePrefixRegex ).append( '|' );
+		}
+
+		if ( lineSuffixRegexExists ) {
+			compile( lineSuffixRegex, "lineSuffixRegex", ruleID, err );
+
+			linePrefixSuffixRegex.append( lineSuffixRegex );
+
+			if ( lineSuffixRegex.charAt( lineSuffixRegex.length() -1 ) != '$' ) {
+				linePrefixSuffixRegex.append("$");
+			}
+		}
+
+		if ( linePrefixRegexExists || lineSuffixRegexExists ) {
+			linePrefixSuffixPattern = compile( linePrefixSuffixRegex.toString(), "linePrefixRegex and or lineSuffixRegex", ruleID, err );
+		} else {
+			linePrefixSuffixPattern = null;
+		}
+
+		/* prep work if the user provide a replacement string option, if so this will be 
+		 * processed just AFTER the skipLine
+		 */
+		final String lineReplaceRegex = ruleOption.getLineReplaceRegex();
+
+		if (  lineReplaceRegex != null && lineReplaceRegex.length() > 0 ) {
+			// replaceArray[0] = search_string
+			// replaceArray[1] = replacement_string or null
+			final String[] replaceArray = PatternCache.split( ruleOption.getLineReplaceDelimiterRegex(), lineReplaceRegex, 2 );
+
+			if ( replaceArray[0].length() == 0 ) {
+				err.println("\nerror: search string of a <lineReplaceRegex> cannot be null in RULE with Id <" + ruleID + ">.");
+			}
+
+			replacePattern = compile( replaceArray[0], "lineReplaceRegex", ruleID, err );
+
+			// if there was no delimiter or the second parameter was null
+			if ( replaceArray.length == 1 || replaceArray[1] == null ) {
+				replacement = "";
+			} else {
+				replacement = replaceArray[1];
+			}
+		} else {
+			replacePattern = null;
+			replacement = null;
+		}
+
+		final String delimiterRegex = ruleOption.getDelimiterRegex();
+
+		if ( delimiterRegex != null ) {
+			try {
+				delimiterPattern = PatternCache.compile( delimiterRegex );
+				EOLPattern = PatternCache.compile( delimiterRegex + '$' ); // will use on every non-null (non-comment too) line of input
+			} catch ( final PatternSyntaxException pse) {
+				err.println( "\nfatal: option <delimiterString> RULE with id <" + ruleID + "> does not compile. " );
+				Validate.exit( 50 );	
+				throw pse; // not reached
+			}
+			delimiterLiteral = DelimitedTokenizer.literalOf( delimiterRegex );
+		} else {
+			delimiterLiteral = null;
+			delimiterPattern = null;
+			EOLPattern = null;
+		}
+
+		errorReportDetails = ruleOption.getErrorReportDetails();
+		showValidData = ruleOption.getShowValidData();
+		lineShow = ruleOption.getLineShow();
+		errorFieldUnderline = ruleOption.getErrorFieldUnderline();
+		validLineUnderline = ruleOption.getValidLineUnderline();
+		warnExtraFields = ruleOption.getWarnExtraFields();
+		warnDuplicates = ruleOption.getWarnDuplicates();
+		streamReport = ruleOption.getStreamReport();
+		maxErrorsPerFile = ruleOption.getMaxErrorsPerFile();
+		maxErrorsPerRule = ruleOption.getMaxErrorsPerRule();
+		extraFieldCount = ruleOption.getExtraFieldCount();
+		EOLdelimiterRequired = "true".equals( ruleOption.getEOLdelimiter() );
+		EOLdelimiterNotAllowed = "false".equals( ruleOption.getEOLdelimiter() );
+
+		lineFormatPattern = CombinedPattern.of( lineRegexes );
+
+		if ( fieldRegexes != null && delimiterLiteral != null && delimiterLiteral.length() == 1 ) {
+			fullLineDelimiter = delimiterLiteral.charAt( 0 );
+			fullLineFieldCount = fieldRegexes.length;
+			fullDelimitedLinePattern = joinFields( fieldRegexes, fullLineDelimiter, EOLdelimiterRequired, EOLdelimiterNotAllowed );
+		} else {
+			fullLineDelimiter = 0;
+			fullLineFieldCount = 0;
+			fullDelimitedLinePattern = null;
+		}
+	}
+
+	/*
+	 * true if the delimiters of line are just the ones fullDelimitedLinePattern matches itself: one
+	 * between each field, plus the EOL delimiter if the line ends in one. Only then is a line it
+	 * matches sure to have every field valid, else a field regex could have matched a delimiter.
+	 */
+	boolean fitsFullDelimitedLine( String line ) {
+		final int length = line.length();
+		final boolean EOLdelimiter = length > 0 && line.charAt( length - 1 ) == fullLineDelimiter;
+
+		if ( EOLdelimiter && EOLdelimiterNotAllowed ) {
+			return false; // an error, left to the field by field check to report
+		}
+
+		int delimiters = fullLineFieldCount - 1 + (EOLdelimiter ? 1 : 0);
+
+		for ( int i = 0; i < length; i++ ) {
+			if ( line.charAt( i ) == fullLineDelimiter && --delimiters < 0 ) {
+				return false;
+			}
+		}
+
+		return delimiters == 0;
+	}
+
+	/*
+	 * one regex for a whole DELIMITED line: each field regex, free to match anywhere in its field
+	 * as find() does, then the delimiter, and the EOLdelimiter option at the end; e.g. for ^\d+$ and
+	 * [a-z] with : it is
+	 *     (?>(?:\d+)):(?>[^:]*?(?:[a-z])[^:]*)(?::|(?<!:))
+	 * A leading ^ or trailing $ of a field regex is the start or end of its field, so they are
+	 * left off with the filler they would skip. A field is atomic, once it matched a failing line
+	 * is not tried again split another way. Null if a regex has a construct that could see past
+	 * its field.
+	 */
+	private static Pattern joinFields( Object[] fieldRegexes, char delimiter, boolean EOLrequired, boolean EOLnotAllowed ) {
+		final String d = "\\^$.|?*+()[]{}-&".indexOf( delimiter ) >= 0 ? "\\" + delimiter : String.valueOf( delimiter );
+		final String notD = "[^" + d + "]*";
+		final StringBuilder sb = new StringBuilder( 200 );
+
+		for ( int j = 0; j < fieldRegexes.length; j++ ) {
+			String regex = (String)fieldRegexes[ j ];
+			final boolean quoted = regex.indexOf( "\\Q" ) >= 0; // a $ could be quoted
+			final boolean fromStart = ! quoted && regex.startsWith( "^" );
+			final boolean toEnd = ! quoted && regex.length() > (fromStart ? 1 : 0) && regex.endsWith( "$" ) && ! escaped( regex, regex.length() - 1 );
+
+			regex = regex.substring( fromStart ? 1 : 0, regex.length() - (toEnd ? 1 : 0) );
+
+			final String field = fieldRegex( regex, d, Character.isLetterOrDigit( delimiter ) || delimiter == '_' );
+
+			if ( field == null ) {
+				return null;
+			}
+
+			if ( j > 0 ) {
+				sb.append( d );
+			}
+
+			sb.append( "(?>" );
+			if ( ! fromStart ) {
+				sb.append( notD ).append( '?' );
+			}
+			sb.append( "(?:" ).append( field ).append( ')' );
+			if ( ! toEnd ) {
+				sb.append( notD );
+			}
+			sb.append( ')' );
+		}
+
+		if ( EOLrequired ) {
+			sb.append( d );
+		} else if ( ! EOLnotAllowed ) {
+			sb.append( "(?:" ).append( d ).append( "|(?<!" ).append( d ).append( "))" );
+		}
+
+		try {
+			return PatternCache.compile( sb.toString() );
+		} catch ( final PatternSyntaxException pse ) {
+			return null; // the fields are still checked one by one
+		}
+	}
+
+	/*
+	 * true if the char at i is escaped by an odd number of \
+	 */
+	private static boolean escaped( String regex, int i ) {
+		int backslashes = 0;
+
+		while ( --i >= 0 && regex.charAt( i ) == '\\' ) {
+			backslashes++;
+		}
+
+		return backslashes % 2 == 1;
+	}
+
+	/*
+	 * a field regex with ^ and $ made the start and end of the field, and . \S \W \D made to stop
+	 * at the delimiter, as they do in the field by itself. Null if it has lookaround, a back
+	 * reference, inline flags, \A \G \z \Z, or \b \B when the delimiter is a word char
+	 */
+	private static String fieldRegex( String regex, String d, boolean wordDelimiter ) {
+		final StringBuilder sb = new StringBuilder( regex.length() + 30 );
+		int classDepth = 0;
+		int classStart = -1; // a ] right after [ or [^ is a plain ]
+
+		for ( int i = 0; i < regex.length(); i++ ) {
+			final char c = regex.charAt( i );
+
+			if ( c == '\\' ) {
+				if ( i + 1 == regex.length() ) {
+					return null;
+				}
+
+				final char e = regex.charAt( ++i );
+
+				if ( e == 'c' && i + 1 < regex.length() ) {
+					sb.append( c ).append( e ).append( regex.charAt( ++i ) ); // a control char, \cX
+					continue;
+				}
+
+				if ( e == 'Q' ) {
+					// quoted up to \E, copied as it is
+					int end = regex.indexOf( "\\E", i );
+					end = end < 0 ? regex.length() : end + 2;
+					sb.append( regex, i - 1, end );
+					i = end - 1;
+					continue;
+				}
+
+				if ( classDepth == 0 && (Character.isDigit( e ) || "kAGzZ".indexOf( e ) >= 0 || (wordDelimiter && (e == 'b' || e == 'B'))) ) {
+					return null;
+				}
+
+				if ( classDepth == 0 && (e == 'S' || e == 'W' || e == 'D') ) {
+					sb.append( "[^\\" ).append( Character.toLowerCase( e ) ).append( d ).append( ']' );
+				} else {
+					sb.append( c ).append( e );
+				}
+
+			} else if ( c == '[' ) {
+				classDepth++;
+				classStart = i + 1;
+				if ( i + 1 < regex.length() && regex.charAt( i + 1 ) == '^' ) {
+					sb.append( c ).append( '^' );
+					classStart = ++i + 1;
+					continue;
+				}
+				sb.append( c );
+
+			} else if ( classDepth > 0 ) {
+				if ( c == ']' && i != classStart ) {
+					classDepth--;
+				}
+				sb.append( c );
+
+			} else if ( c == '(' && i + 1 < regex.length() && regex.charAt( i + 1 ) == '?' ) {
+				if ( i + 2 < regex.length() && regex.charAt( i + 2 ) == ':' ) {
+					sb.append( "(?:" );
+					i += 2;
+				} else {
+					return null;
+				}
+
+			} else if ( c == '^' ) {
+				sb.append( "(?:^|(?<=" ).append( d ).append( "))" );
+
+			} else if ( c == '$' ) {
+				sb.append( "(?=" ).append( d ).append( "|$)" );
+
+			} else if ( c == '.' ) {
+				sb.append( "[^" ).append( d ).append( "\\n\\r\\u0085\\u2028-\\u2029]" ); // . less the delimiter
+
+			} else {
+				sb.append( c );
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/*
+	 * compile the regex of an option, null if the option was not given
+	 */
+	private static Pattern compile( String regex, String optionName, String ruleID, PrintStream err ) {
+
+		if ( regex == null ) {
+			return null;
+		}
+
+		try {
+			return PatternCache.compile( regex );
+		} catch ( final PatternSyntaxException e ) {
+			err.println( "\nerror: RULE with id <" + ruleID + "> had option <" + optionName + ">, which did not compile. " + e.getMessage() );
+			Validate.exit( 15 );
+			return null; // not reached
+		}
+	}
+}
@@ -0,0 +1,339 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * Snapshot - the --snapshot switch. The RULE blocks parsed from a config file are written to a
+ * binary file, keyed by a hash of the config file, the macro file and the switches the parse depends
+ * on. A later run with the same key loads the rules from it instead of parsing the config file again.
+ * What the parse printed (the title, warnings) is kept too and printed again when it is loaded.
+ * @author Bill Lanahan
+ *
+ */
+final class Snapshot {
+
+	// change when the layout here or in Rule.writeTo changes, or Options.serialVersionUID does
+	private static final String MAGIC = "validate snapshot 3";
+
+	private Snapshot() {
+		// static methods only
+	}
+
+	/*
+	 * load the rules of configFile from snapshotFile into Validate.ruleMap and ruleList, and return the
+	 * options of the OPTIONS block; null when there is no usable snapshot, then the config file is parsed
+	 */
+	static Options load( String snapshotFile, String configFile ) {
+		final File file = new File( snapshotFile );
+
+		if ( ! file.isFile() ) {
+			return null;
+		}
+
+		DataInputStream in = null;
+
+		try {
+			in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), 65536 ) );
+
+			if ( ! MAGIC.equals( in.readUTF() ) || ! key( configFile ).equals( in.readUTF() ) ) {
+				return null; // written by another version, or the config or macros changed
+			}
+
+			final byte[] out = readBytes( in );
+			final byte[] err = readBytes( in );
+			final Options opt = options( readBytes( in ) );
+			final Options[] options = new Options[ in.readInt() ];
+
+			for ( int i = 0; i < options.length; i++ ) {
+				options[ i ] = options( readBytes( in ) );
+			}
+
+			final int count = in.readInt();
+			final HashMap<String, Rule> ruleMap = new HashMap<String, Rule>();
+			final ArrayList<String> ruleList = new ArrayList<String>( count );
+
+			for ( int i = 0; i < count; i++ ) {
+				// each RULE block has its own copy of the options, as after a parse
+				final Rule rule = Rule.readFrom( in, (Options) options[ in.readInt() ].clone() );
+				ruleMap.put( rule.getRuleID(), rule );
+				ruleList.add( rule.getRuleID() );
+			}
+
+			System.out.write( out );
+			System.out.flush();
+			System.err.write( err );
+			System.err.flush();
+
+			Validate.ruleMap = ruleMap;
+			Validate.ruleList = ruleList;
+			return opt;
+
+		} catch ( final Exception e ) {
+			return null; // unreadable, e.g. truncated; parse and write it again
+		} finally {
+			close( in );
+		}
+	}
+
+	/*
+	 * parse the config file as usual, then write what it left to snapshotFile
+	 */
+	static void parseAndSave( ParseConfig pcf, String snapshotFile, String configFile ) {
+		final PrintStream sysOut = System.out;
+		final PrintStream sysErr = System.err;
+		final ByteArrayOutputStream out = new ByteArrayOutputStream( 1024 );
+		final ByteArrayOutputStream err = new ByteArrayOutputStream( 256 );
+
+		// what the parse prints still goes out, a copy is kept to print again when the snapshot is used
+		System.setOut( new PrintStream( new TeeOutputStream( sysOut, out ), true ) );
+		System.setErr( new PrintStream( new TeeOutputStream( sysErr, err ), true ) );
+
+		try {
+			pcf.parse();
+		} finally {
+			System.out.flush();
+			System.err.flush();
+			System.setOut( sysOut );
+			System.setErr( sysErr );
+		}
+
+		final File file = new File( snapshotFile );
+		final File tmp = new File( snapshotFile + ".tmp" );
+		DataOutputStream os = null;
+
+		try {
+			final ArrayList<String> ruleList = Validate.ruleList != null ? Validate.ruleList : new ArrayList<String>();
+
+			// most RULE blocks have the same options, each distinct set is written once
+			final ArrayList<byte[]> options = new ArrayList<byte[]>();
+			final HashMap<String, Integer> optionIndex = new HashMap<String, Integer>();
+			final int[] ruleOptionIndex = new int[ ruleList.size() ];
+
+			for ( int i = 0; i < ruleList.size(); i++ ) {
+				final byte[] b = bytes( Validate.ruleMap.get( ruleList.get( i ) ).getRuleOption() );
+				final String k = new String( b, "ISO-8859-1" );
+				Integer index = optionIndex.get( k );
+
+				if ( index == null ) {
+					index = options.size();
+					options.add( b );
+					optionIndex.put( k, index );
+				}
+				ruleOptionIndex[ i ] = index;
+			}
+
+			os = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( tmp ), 65536 ) );
+			os.writeUTF( MAGIC );
+			os.writeUTF( key( configFile ) );
+			writeBytes( os, out.toByteArray() );
+			writeBytes( os, err.toByteArray() );
+			writeBytes( os, bytes( ParseConfig.opt ) );
+
+			os.writeInt( options.size() );
+			for ( final byte[] b : options ) {
+				writeBytes( os, b );
+			}
+
+			os.writeInt( ruleList.size() );
+			for ( int i = 0; i < ruleList.size(); i++ ) {
+				final Rule rule = Validate.ruleMap.get( ruleList.get( i ) );
+				rule.out = sysOut; // the rules were made while the output was copied
+				rule.err = sysErr;
+				os.writeInt( ruleOptionIndex[ i ] );
+				rule.writeTo( os );
+			}
+
+			os.close();
+			os = null;
+
+			// whole or not at all, other runs may be reading it
+			if ( ! tmp.renameTo( file ) ) {
+				file.delete();
+				if ( ! tmp.renameTo( file ) ) {
+					throw new IOException( "could not rename <" + tmp + ">" );
+				}
+			}
+		} catch ( final IOException e ) {
+			System.err.println( "\nwarning: could not write the snapshot <" + snapshotFile + ">. " + e.getMessage() );
+			close( os );
+			tmp.delete();
+		}
+	}
+
+	/*
+	 * a String of any length, or null
+	 */
+	static void writeString( DataOutputStream out, String s ) throws IOException {
+		writeBytes( out, s == null ? null : s.getBytes( "UTF-8" ) );
+	}
+
+	static String readString( DataInputStream in ) throws IOException {
+		final byte[] b = readBytes( in );
+		return b == null ? null : new String( b, "UTF-8" );
+	}
+
+	static void writeBytes( DataOutputStream out, byte[] b ) throws IOException {
+		if ( b == null ) {
+			out.writeInt( -1 );
+		} else {
+			out.writeInt( b.length );
+			out.write( b );
+		}
+	}
+
+	static byte[] readBytes( DataInputStream in ) throws IOException {
+		final int length = in.readInt();
+
+		if ( length < 0 ) {
+			return null;
+		}
+
+		final byte[] b = new byte[ length ];
+		in.readFully( b );
+		return b;
+	}
+
+	// Options are written as bytes of their own, there are many of them and few distinct sets
+	private static byte[] bytes( Options opt ) throws IOException {
+		final ByteArrayOutputStream b = new ByteArrayOutputStream( 1024 );
+		final DataOutputStream os = new DataOutputStream( b );
+		opt.writeTo( os );
+		os.close();
+		return b.toByteArray();
+	}
+
+	private static Options options( byte[] b ) throws IOException {
+		final DataInputStream in = new DataInputStream( new ByteArrayInputStream( b ) );
+		final Options opt = Options.readFrom( in );
+
+		if ( in.read() >= 0 ) {
+			throw new IOException( "options of another form" );
+		}
+		return opt;
+	}
+
+	/*
+	 * hash of everything the parse depends on; CRC32 and Adler32 rather than a secure digest, it only
+	 * has to notice an edit and is computed on every run
+	 */
+	private static String key( String configFile ) throws IOException {
+		final CRC32 crc = new CRC32();
+		final Adler32 adler = new Adler32();
+		long length = digest( crc, adler, configFile );
+
+		if ( Validate.macrosFile != null ) {
+			length = length * 31 + digest( crc, adler, Validate.macrosFile );
+		}
+
+		final byte[] switches = (Validate.macrosFile + "\n" + Validate.dirPath + "\n" + Validate.fileIsCmdLine + "\n"
+				+ Validate.testMode + "\n" + Validate.blkStart + "\n" + Validate.blkEnd + "\n"
+				+ Charset.defaultCharset().name()).getBytes( "UTF-8" );
+		crc.update( switches, 0, switches.length );
+		adler.update( switches, 0, switches.length );
+
+		return Long.toHexString( crc.getValue() ) + "-" + Long.toHexString( adler.getValue() ) + "-" + Long.toHexString( length );
+	}
+
+	// returns the length of the file
+	static long digest( CRC32 crc, Adler32 adler, String fileName ) throws IOException {
+		final InputStream in = new FileInputStream( fileName );
+		long length = 0;
+
+		try {
+			final byte[] buf = new byte[ 65536 ];
+			int n;
+			while ( (n = in.read( buf )) > 0 ) {
+				crc.update( buf, 0, n );
+				adler.update( buf, 0, n );
+				length += n;
+			}
+		} finally {
+			in.close();
+		}
+
+		return length;
+	}
+
+	private static void close( Closeable c ) {
+		if ( c != null ) {
+			try {
+				c.close();
+			} catch ( final IOException e ) {
+				// nothing more to do with it
+			}
+		}
+	}
+
+	/*
+	 * writes to the real stream and keeps a copy
+	 */
+	private static final class TeeOutputStream extends OutputStream {
+		private final OutputStream out;
+		private final OutputStream copy;
+
+		TeeOutputStream( OutputStream out, OutputStream copy ) {
+			this.out = out;
+			this.copy = copy;
+		}
+
+		@Override
+		public void write( int b ) throws IOException {
+			out.write( b );
+			copy.write( b );
+		}
+
+		@Override
+		public void write( byte[] b, int off, int len ) throws IOException {
+			out.write( b, off, len );
+			copy.write( b, off, len );
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * SpillOutputStream - holds the report of a RULE block or a file while it waits its turn to be
+ * printed (-j switch). Past MEMORY_LIMIT bytes the rest goes to a temporary file, so waiting on a
+ * slow RULE ahead of it does not pile up memory.
+ * @author Bill Lanahan
+ *
+ */
+class SpillOutputStream extends OutputStream {
+
+	static final int MEMORY_LIMIT = 1 << 20;
+
+	private final ByteArrayOutputStream memory;
+	private File spillFile = null;
+	private OutputStream spill = null;
+
+	SpillOutputStream( int capacity ) {
+		memory = new ByteArrayOutputStream( capacity );
+	}
+
+	public synchronized void write( int b ) {
+		write( new byte[] { (byte) b }, 0, 1 );
+	}
+
+	public synchronized void write( byte[] b, int off, int len ) {
+
+		try {
+			if ( spill == null && memory.size() + len > MEMORY_LIMIT ) {
+				spillFile = File.createTempFile( "validate", ".report" );
+				spill = new BufferedOutputStream( new FileOutputStream( spillFile ), 65536 );
+			}
+
+			if ( spill != null ) {
+				spill.write( b, off, len );
+			} else {
+				memory.write( b, off, len );
+			}
+		} catch ( final IOException ioe ) {
+			fatal( ioe );
+		}
+	}
+
+	/*
+	 * write everything held to out, in the order it was written here, then forget it
+	 */
+	synchronized void writeTo( OutputStream out ) {
+		InputStream in = null;
+
+		try {
+			out.write( memory.toByteArray(), 0, memory.size() );
+
+			if ( spill != null ) {
+				spill.close();
+				in = new FileInputStream( spillFile );
+				final byte[] buf = new byte[ 65536 ];
+				int n;
+
+				while ( (n = in.read( buf )) > 0 ) {
+					out.write( buf, 0, n );
+				}
+			}
+
+			out.flush();
+		} catch ( final IOException ioe ) {
+			fatal( ioe );
+		} finally {
+			if ( in != null ) {
+				try {
+					in.close();
+				} catch ( final IOException ioe ) {
+					// we are done with it anyway
+				}
+			}
+
+			if ( spillFile != null ) {
+				spillFile.delete();
+			}
+
+			memory.reset();
+			spill = null;
+			spillFile = null;
+		}
+	}
+
+	/*
+	 * forget everything held, it is not printed (the run ended before it)
+	 */
+	synchronized void discard() {
+
+		if ( spill != null ) {
+			try {
+				spill.close();
+			} catch ( final IOException ioe ) {
+				// we are done with it anyway
+			}
+		}
+
+		if ( spillFile != null ) {
+			spillFile.delete();
+		}
+
+		memory.reset();
+		spill = null;
+		spillFile = null;
+	}
+
+	private void fatal( IOException ioe ) {
+		System.err.println( "\nfatal: can't use the temporary report file <" + spillFile + ">. " + ioe.getMessage() );
+		discard();
+		Validate.exit( 50 );
+	}
+}
@@ -45,7 +45,9 @@ package validate;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 public class Validate {
@@ -73,14 +75,24 @@ public class Validate {
 	static String fileNameRegex = null;
 	static String dirPath = null;
 	static String macrosFile = null;
+	static String snapshotFile = null; // --snapshot switch
+	static String cacheDir = null; // --cache switch
+	static boolean noCache = false; // --no-cache switch, wins over --cache
+	static String tailDir = null; // --tail switch
+	static boolean watch = false; // --watch switch
 	static String ruleId = null;
 	static String valueString = null;
+	static String valueFile = null; // -V switch, a value per line, - for STDIN
 
 	static Map<String, Rule> ruleMap = null;
 	static ArrayList<String> ruleList = null;
 	static File dirPathObj = null;
 	static int returnCode = 0;
 	static int total_fails = 0;
+	static int threads = 1; // -j switch, RULE blocks and their files validated in parallel
+	static int maxErrors = -1; // -e switch, else the maxErrors option; 0 is no limit
+	static final AtomicInteger errorsCounted = new AtomicInteger(); // errors of the run so far, for maxErrors
+	static volatile boolean truncated = false; // a file was not read to its end because of an error limit
 	static boolean regexMultiLine = false;
 	static boolean printTCcomment = false;
 	static String regexCommentString = null;
@@ -89,6 +101,26 @@ public class Validate {
 	 * @param args
 	 */
 	public static void main(String[] args) {
+
+		try {
+			if ( args.length > 0 && args[0].equals( "--server" ) ) {
+				Daemon.serve( args );
+			} else if ( args.length > 0 && args[0].equals( "--connect" ) ) {
+				Daemon.connect( args );
+			} else {
+				run( args );
+			}
+		} catch ( final ExitException e ) {
+			System.out.flush();
+			System.err.flush();
+			System.exit( e.code );
+		}
+	}
+
+	/*
+	 * one run of the tool for the command line args, it ends with exit() rather than returning
+	 */
+	static void run( String[] args ) {
 		
 		ParseConfig pcf = null;
 		// read command line arguments
@@ -97,17 +129,17 @@ public class Validate {
 		// see if blkStart or end were given and MAY cause problems
 		if ( (blkStart.charAt(0) != '^') || (blkEnd.charAt(0) != '^') ) {
 			System.err.println( "\n\nfatal: the regex given by blkStart and blkEnd MUST have the start of line anchor '^'." );
-			System.exit( 10 );
+			exit( 10 );
 		}
 		
 		if( blkEnd.matches("\\s+") ) {
 			System.out.println( "\n\nfatal: blkEnd can not contain white space characters." );
-			System.exit( 10 );
+			exit( 10 );
 		}
 
 		if( blkStart.matches("\\s+") ) {
 			System.out.println( "\n\nfatal: blkStart can not contain white space characters." );
-			System.exit( 10 );
+			exit( 10 );
 		}
 		
 		if ( args.length == 0 ) {
@@ -251,7 +283,7 @@ public class Validate {
 
 				if ( argsCount == args.length ) {
 					System.err.println( "\nerror: -d switch requires an argument." );
-					System.exit( 10 );
+					exit( 10 );
 				} else {
 					Validate.dirPath = args[argsCount];
 					Validate.dirFlag = true; 
@@ -260,7 +292,7 @@ public class Validate {
 
 					if ( ! dirPathObj.isDirectory() ) {
 						System.err.println( "\nerror: -d switch <" + dirPath + "> is not a valid directory.");
-						System.exit( 10 ); 
+						exit( 10 ); 
 					} else {
 						dirPathObj = null; // no longer needed now that its checked
 					}
@@ -268,21 +300,116 @@ public class Validate {
 					argsCount++;
 				}
 
+			} else if ( args[argsCount].equals( "-j" ) ) {
+				argsCount++;
+
+				if ( argsCount == args.length ) {
+					System.err.println( "\nerror: -j switch requires an argument.\n" );
+					usage();
+				} else {
+					try {
+						Validate.threads = Integer.parseInt( args[argsCount] );
+					} catch ( NumberFormatException e ) {
+						Validate.threads = 0;
+					}
+
+					if ( Validate.threads < 1 ) {
+						System.err.println( "\nerror: -j switch <" + args[argsCount] + "> must be an integer of 1 or more." );
+						exit( 10 );
+					}
+
+					argsCount++;
+				}
+
+			} else if ( args[argsCount].equals( "-e" ) ) {
+				argsCount++;
+
+				if ( argsCount == args.length ) {
+					System.err.println( "\nerror: -e switch requires an argument.\n" );
+					usage();
+				} else {
+					try {
+						Validate.maxErrors = Integer.parseInt( args[argsCount] );
+					} catch ( NumberFormatException e ) {
+						Validate.maxErrors = -1;
+					}
+
+					if ( Validate.maxErrors < 0 ) {
+						System.err.println( "\nerror: -e switch <" + args[argsCount] + "> must be an integer of 0 (no limit) or more." );
+						exit( 10 );
+					}
+
+					argsCount++;
+				}
+
+			} else if ( args[argsCount].equals( "--snapshot" ) ) {
+				argsCount++;
+
+				if ( argsCount == args.length ) {
+					System.err.println( "\nerror: --snapshot switch requires an argument.\n" );
+					usage();
+				} else {
+					Validate.snapshotFile = args[argsCount];
+					argsCount++;
+				}
+
+			} else if ( args[argsCount].equals( "--cache" ) ) {
+				argsCount++;
+
+				if ( argsCount == args.length ) {
+					System.err.println( "\nerror: --cache switch requires an argument.\n" );
+					usage();
+				} else {
+					Validate.cacheDir = args[argsCount];
+					argsCount++;
+				}
+
+			} else if ( args[argsCount].equals( "--tail" ) ) {
+				argsCount++;
+
+				if ( argsCount == args.length ) {
+					System.err.println( "\nerror: --tail switch requires an argument.\n" );
+					usage();
+				} else {
+					Validate.tailDir = args[argsCount];
+					argsCount++;
+				}
+
+			} else if ( args[argsCount].equals( "--watch" ) ) {
+				Validate.watch = true;
+				argsCount++;
+
+			} else if ( args[argsCount].equals( "--no-cache" ) ) {
+				Validate.noCache = true;
+				argsCount++;
+
 			} else if ( args[argsCount].equals( "-v" ) ) {
 				argsCount++;
 
 				if ( argsCount == args.length ) {
 					System.err.println( "\nerror: -v switch requires an argument." );
-					System.exit( 10 );
+					exit( 10 );
 				} else { 
 					Validate.valueString = args[argsCount];
 					Validate.valueMode = true; 
 					argsCount++;
 				} 
+
+			} else if ( args[argsCount].equals( "-V" ) ) {
+				argsCount++;
+
+				if ( argsCount == args.length ) {
+					System.err.println( "\nerror: -V switch requires an argument." );
+					exit( 10 );
+				} else { 
+					Validate.valueFile = args[argsCount];
+					Validate.valueMode = true; 
+					argsCount++;
+				} 
 				
 			} else {
 				System.err.println( "\nerror: invalid command line option <" + args[argsCount] + ">.");
-				System.exit( 10 );
+				exit( 10 );
 			}
 		}   // end of options reading
 
@@ -303,7 +430,7 @@ public class Validate {
 		}
 		
 		if ( ! (Validate.fileIsCmdLine || Validate.valueMode) && (ruleId != null) ) {
-			System.err.println( "\nerror, -i switch also requires -f|-v switch.\n" );
+			System.err.println( "\nerror, -i switch also requires -f|-v|-V switch.\n" );
 			usage();
 		}
 	
@@ -320,38 +447,95 @@ public class Validate {
 		}
 
 		if ( Validate.valueMode && (Validate.regexTestMode || Validate.regexTimedTestMode || fileIsCmdLine )) {
-			System.err.println( "\nerror: -v is mutually exclusive with -R|-T|-f");
+			System.err.println( "\nerror: -v|-V is mutually exclusive with -R|-T|-f");
 			usage();
 		} 
 		
 		if ( Validate.valueMode && ruleId == null ) {
-			System.err.println( "\nerror: -v switch requires the -i id switch");
+			System.err.println( "\nerror: -v|-V switch requires the -i id switch");
+			usage();
+		} 
+
+		if ( valueString != null && valueFile != null ) {
+			System.err.println( "\nerror: -v and -V are mutually exclusive");
 			usage();
 		} 
+
+		if ( "-".equals( valueFile ) && Daemon.serving() ) {
+			System.err.println( "\nerror: -V - reads STDIN, a request to the server has none, give a file");
+			exit( 10 );
+		} 
+
+		if ( fileIsCmdLine && Daemon.serving() && ("," + fileNameInput + ",").contains( "," + Rule.STDIN + "," ) ) {
+			System.err.println( "\nerror: -f - reads STDIN, a request to the server has none, give a file");
+			exit( 10 );
+		} 
 		
+		if ( watch && (valueMode || Daemon.serving()) ) {
+			System.err.println( "\nerror: --watch validates files until it is stopped, not with -v|-V or on a server");
+			usage();
+		} 
+
+		if ( cacheDir != null && ! noCache ) {
+			ResultCache.open( cacheDir );
+		} else {
+			ResultCache.close();
+		}
+
+		if ( tailDir != null ) {
+			Checkpoint.open( tailDir );
+		} else {
+			Checkpoint.close();
+		}
+
 		// only 4 major choices it testing a regex or its going to use the configFile
 		if ( Validate.regexTestMode ) {
 			Regex regex = new Regex( fileNameRegex, regexCommentString, regexMultiLine, printTCcomment );
 			regex.readFile();
-			System.exit( 0 );
+			exit( 0 );
 		} else if ( regexTimedTestMode ) {	
 			RegexTimed regex = new RegexTimed( fileNameRegex, regexCommentString, regexMultiLine );
 			regex.readFile();
-			System.exit( 0 );
+			exit( 0 );
 		} else {
 			// here we begin the file validate part of the main tool
 			
 			// assuming all options are correct
 			// read the configFile and then execute depending on the test flag
-			pcf = new ParseConfig( fileNameConfig );
-			assert pcf == null : "\nfatal: ParseConfigFile object could not be created.\n";
-			pcf.parse();
+			// with --snapshot the rules may come from a snapshot of this same config file, else the
+			// parse writes one for the next run
+			Options configOption = null;
+
+			if ( Daemon.serving() && ! showMacros ) {
+				// the server keeps the rules of each config file it has parsed
+				configOption = Daemon.load( fileNameConfig );
+			} else if ( snapshotFile != null && ! showMacros ) {
+				configOption = Snapshot.load( snapshotFile, fileNameConfig );
+			}
+
+			if ( configOption == null ) {
+				pcf = new ParseConfig( fileNameConfig );
+				assert pcf == null : "\nfatal: ParseConfigFile object could not be created.\n";
+
+				if ( snapshotFile != null && ! showMacros ) {
+					Snapshot.parseAndSave( pcf, snapshotFile, fileNameConfig );
+				} else {
+					pcf.parse();
+				}
+				configOption = ParseConfig.opt;
+			}
+
+			// the -e switch wins over the maxErrors option of the OPTIONS block
+			if ( Validate.maxErrors < 0 ) {
+				Validate.maxErrors = configOption.getMaxErrors();
+			}
 					
 			
 			// at this point we have all the RULES parsed and saved
 			if ( testMode ) {
 				System.out.println( "\ninfo: validate has completed static testing of the config file with no errors.");
-				System.exit( returnCode );
+				System.out.println( "info: " + PatternCache.stats() + "." );
+				exit( returnCode );
 			} else {
 				Rule rule = null;
 				
@@ -360,18 +544,23 @@ public class Validate {
 				if ( fileIsCmdLine && (ruleId != null) ) {
 					if ( ruleMap == null || ! ruleMap.containsKey( ruleId )) {
 						System.err.println( "\nerror: the -i id  <" + ruleId + "> is not an existing id in the configuration file.");
-						System.exit( 10 );
+						exit( 10 );
 					}
 					
 					rule = ruleMap.get( ruleId );
+					rule.fileClear(); // the server keeps the rule, only this run's files are validated
 					final String array[] = fileNameInput.split(",");	
 					for (int i = 0; i < array.length; i++ ) {
 						rule.fileAdd( array[i] ); // now cmd line files are stored in the rule object
 					}
 					
 					rule.checkIt();
+
+					if ( watch ) {
+						Watch.run( Collections.singletonList( rule ), false );
+					}
 					// were done
-					System.exit( returnCode );
+					exit( returnCode );
 					
 				} else if ( Validate.valueMode ) {
 					// not command line so we will just do every Rule in the ruleMap
@@ -380,10 +569,10 @@ public class Validate {
 					// only one rule id to do
 					if ( ruleMap.containsKey( Validate.ruleId ) ) {
 						ruleMap.get( Validate.ruleId).checkIt( );
-						System.exit( returnCode );
+						exit( returnCode );
 					} else {
 						System.err.println( "\nerror: -i id <" + Validate.ruleId + "> does not exist in config file.");
-						System.exit( 99 );
+						exit( 99 );
 					}
 									
 				} else {
@@ -395,26 +584,36 @@ public class Validate {
 					int size = ruleList.size();
 					int position = 0;
 					
+					if ( Validate.threads > 1 && size > 1 && Validate.maxErrors == 0 ) {
+						// rules are independent, so run them on a pool; output is still in config file order
+						// (not with maxErrors, the errors counted must be those of the first RULE blocks)
+						new RuleExecutor( Math.min( Validate.threads, size ) ).runAll( ruleList, ruleMap );
+						size = 0;
+					}
+					
 					while ( size > 0 && position < size ) {
 						ruleID = ruleList.get( position++ ); 
 						
 						if ( ruleID == null ) {
 							System.err.println("\nfatal: a stored ruleId is null, program error in validate.java");
-							System.exit( 99 );
+							exit( 99 );
 						}
 						
 						ruleMap.get( ruleID ).checkIt();
 					}
 					
 				    // were done, just report total fails for the entire run
-					if ( total_fails > 0 ) {
-						System.out.println( "\n% TOTAL FAILS: " + total_fails );
-					} else {
-						// the 0 case we add a trailing SPACE to a shell can easily know if the QTY is more than zero
-						System.out.println( "\n% TOTAL FAILS: " + total_fails + " " );
+					printTotalFails();
+
+					if ( watch ) {
+						final ArrayList<Rule> rules = new ArrayList<Rule>( ruleList.size() );
+						for ( final String id : ruleList ) {
+							rules.add( ruleMap.get( id ) );
+						}
+						Watch.run( rules, true );
 					}
 					
-				    System.exit( returnCode );
+				    exit( returnCode );
 				}
 				
 			} // end of NON-testMode, which means execution of Rule(s)
@@ -426,21 +625,26 @@ public class Validate {
 	static void usage() {
 		System.out.println( "\n\n" +
 				"usage: validate ... \n\n" +
-				"       validate -c file [-f file...|-v valueString] -i id [-m macroFile] [-d dirPath] [-t]\n" +
-				"       validate -c file [-m macroFile]\n" +
+				"       validate -c file [-f file...|-v valueString|-V valueFile] -i id [-m macroFile] [-d dirPath] [-t]\n" +
+				"       validate -c file [-m macroFile] [-j threads] [-e maxErrors] [--snapshot file] [--cache dir|--no-cache] [--tail dir] [--watch]\n" +
 				"       validate -c file [-m macroFile] -t\n" +
 				"       validate -h | -?\n" +
 				"       validate -R regexTestFile [-C \"commentString\"] [-M] [-P]\n" +
 				"       validate -T regexTestFile [-C \"commentString\"] [-M]\n" +
 				"       validate -p macroFile|configFile\n" +
 				"       validate -p macros -c configFile [-m macroFile]\n" +
+				"       validate --server port [configFile...]\n" +
+				"       validate --connect port -c file ...\n" +
 				"\n\n" +
 				"       where\n" +
 				"         -c file, configuration file specifies OPTIONS, MACROS, RULES, and REGEX\n" +
 				"         -d dirPathString, prepended to data file (-f) on cmd line or in RULES\n" +
+				"         -e maxErrors, stop validating once this many errors are found in the run (0 no limit)\n" +
 				"         -h | -? this help usage\n" +
 				"         -i id, to choose the appropriate RULE block\n" +
-				"         -f file, multiple files if comma separated\n" +
+				"         -j threads, number of RULE blocks (and files within a RULE) to validate in parallel (output order is unchanged)\n" +
+				"         -f file, multiple files if comma separated, - for STDIN, a glob like 'dir/**/*.properties' for the files it matches;\n" +
+				"            gzip, zip and tar files are read as they are, each file in an archive is reported as archive!name\n" +
 				"         -m macro, file of macros to use in Regexes\n" +
 				"         -p macros, prints combined set of macros\n" +
 				"         -p macroFile, prints the format of a macroFile and some comments\n" +
@@ -448,14 +652,22 @@ public class Validate {
 				"         -p regex, prints the Java supported regular expressions\n" +
 				"         -t test mode, checks config file/macros, but no data file validation\n" +
 				"         -v valueString, a string to be checked by the given rule id\n" +
+				"         -V valueFile, each line is a value checked as with -v, then a summary (- for STDIN)\n" +
 				"         -C commentRegex, regex to denote a comment line in a regex file\n" +
 				"         -M allow regex in -R or -T to be multi line with \\ continuation\n" +
 				"         -P print ONLY comments in -R that follow the regex line\n" +
 				"         -R regexFile, test file of a regex and test cases\n" +
 				"         -T regexFile, test file with look at execution speed\n" +
+				"         --snapshot file, keep the parsed config file in file, later runs load it while the config and macros are unchanged\n" +
+				"         --cache dir, keep the report of each file in dir, an unchanged file of an unchanged rule gets it again without being read\n" +
+				"         --no-cache, validate every file, even with --cache\n" +
+				"         --tail dir, keep in dir how far each LINE and DELIMITED file was validated, the next run validates the lines added since\n" +
+				"         --watch, after the run validate the files of the rules again each time they change\n" +
+				"         --server port, serve requests on the loopback port, config files are parsed once and again when changed\n" +
+				"         --connect port, send the rest of the command line to the server on port, its output and return code are this run's\n" +
 				"\n\n" );
 
-		System.exit( 0 );
+		exit( 0 );
 	}
 
 	static void printMacroFile() {
@@ -475,7 +687,7 @@ public class Validate {
 				"\n" );
 
 
-		System.exit( 0 );
+		exit( 0 );
 	}
 
 	static void printConfigFile() {
@@ -506,18 +718,24 @@ public class Validate {
 				"#errorReportSummary =always|yes|failure (first letter works)\n" + 		
 				"#errorFieldUnderline =true\n\n" +
 				"#extraFieldCount =0\n\n" +
-				"#fileLineContinuation =false\n\n" +
+				"#fileCharset = (platform charset)\n" +
+				"#fileLineContinuation =false\n" +
+				"#fileReader =mapped|buffered\n\n" +
 				"#lineCheckRegex =\n" +
 				"#lineSkipRegex =^\\s*#|^\\s*$ \n" +
 				"#lineShow =false\n\n" +
 				"#macroContinuation =true\n" +
 				"#macroEndString =\">\"\n" +
 				"#macroStartString =\"<\"\n\n" +
+				"#maxErrors =0\n" +
+				"#maxErrorsPerFile =0\n" +
+				"#maxErrorsPerRule =0\n\n" +
 				"#regexCommentRegex =^\\s*#\n" +
 				"#regexEndBlockRegex =^\\s*%%\n" +
 				"#regexLineContinuation =false\n\n" +
 				"#showValidData =false\n" +
-				"#showToolTitle =true\n\n" +
+				"#showToolTitle =true\n" +
+				"#streamReport =false\n\n" +
 				"#useMacros =false\n" +
 				"#useLineRangeRestrictions =true\n" +
 				"#validLineUnderline =false\n\n" +
@@ -548,7 +766,7 @@ public class Validate {
 				"%%\n"
 				);
 			
-		System.exit( 0 );
+		exit( 0 );
 	}
 
 	static void printRegex() {
@@ -711,18 +929,89 @@ public class Validate {
 		"string literal \"\\\\(hello\\\\)\" must be used. \n" +
 		"\n" );
 
-		System.exit( 0 );
+		exit( 0 );
+	}
+
+	/*
+	 * ends the run with the return code, see ExitException
+	 */
+	static void exit( int code ) {
+		throw new ExitException( code );
+	}
+
+	/*
+	 * back to the state before any args were read, the server does this for each request
+	 */
+	static void reset() {
+		testMode = false;
+		regexTimedTestMode = false;
+		helpMode = false;
+		regexTestMode = false;
+		dirFlag = false;
+		fileIsCmdLine = false;
+		haveConfigFile = false;
+		printMode = false;
+		showMacros = false;
+		valueMode = false;
+		fileNameInput = null;
+		fileNameConfig = null;
+		fileNameRegex = null;
+		dirPath = null;
+		macrosFile = null;
+		snapshotFile = null;
+		cacheDir = null;
+		noCache = false;
+		tailDir = null;
+		watch = false;
+		ruleId = null;
+		valueString = null;
+		valueFile = null;
+		ruleMap = null;
+		ruleList = null;
+		dirPathObj = null;
+		returnCode = 0;
+		total_fails = 0;
+		threads = 1;
+		maxErrors = -1;
+		errorsCounted.set( 0 );
+		truncated = false;
+		regexMultiLine = false;
+		printTCcomment = false;
+		regexCommentString = null;
+	}
+
+	static void printTotalFails() {
+
+		if ( truncated ) {
+			// some file was not read to its end, so the total is a lower bound
+			System.out.println( "\n% TOTAL FAILS: " + total_fails + " TRUNCATED" );
+		} else if ( total_fails > 0 ) {
+			System.out.println( "\n% TOTAL FAILS: " + total_fails );
+		} else {
+			// the 0 case we add a trailing SPACE to a shell can easily know if the QTY is more than zero
+			System.out.println( "\n% TOTAL FAILS: " + total_fails + " " );
+		}
+	}
+
+	/*
+	 * start the counts of fails over, for each round of --watch
+	 */
+	static synchronized void clearTotals() {
+		returnCode = 0;
+		total_fails = 0;
+		errorsCounted.set( 0 );
+		truncated = false;
 	}
 
-	// available to any object to update
-	static void rc( int rc ) {
+	// available to any object to update, synchronized since rules may run in parallel (-j)
+	static synchronized void rc( int rc ) {
 		if ( rc > returnCode ) {
 			returnCode = rc;
 		}
 	}
 	
 	// for simple file status on exit
-	static void saveTotalFails ( int fails ) {
+	static synchronized void saveTotalFails ( int fails ) {
 		if ( fails >= 0 ) {
 			total_fails += fails;
 		}
@@ -0,0 +1,368 @@
+/* 
+**
+** Copyright (c) 2014 Bill Lanahan
+**
+** Permission is hereby granted, free of charge, to any person obtaining a copy
+** of this software and associated documentation files (the "Software"), to deal
+** in the Software without restriction, including without limitation the rights
+** to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+** copies of the Software, and to permit persons to whom the Software is
+** furnished to do so, subject to the following conditions:
+**
+** The above copyright notice and this permission notice shall be included in all
+** copies or substantial portions of the Software.
+**
+** THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+** IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+** FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+** AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+** LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+** OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+** SOFTWARE.
+**
+*/
+
+package validate;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watch - the --watch switch. After the run the rules are kept, with their regexes compiled, and the
+ * directories of their files are watched, for a glob every directory its walk goes into, and those made
+ * later too. A file that changes or is made is tested against the names and the compiled globs of each
+ * rule, so a glob is not walked again; only the rules it belongs to validate it again. Changes that come
+ * within -DwatchDelay milliseconds (default 250) of each other are validated together, so a burst of
+ * saves is validated once.
+ * @author Bill Lanahan
+ *
+ */
+final class Watch {
+
+	private static final long delay = Long.getLong( "watchDelay", 250 );
+
+	private Watch() {
+		// static methods only
+	}
+
+	/*
+	 * validate the files of rules again each time they change, totals prints the TOTAL FAILS of each
+	 * round as the run did; returns only when there is nothing to watch
+	 */
+	static void run( List<Rule> rules, boolean totals ) {
+		final ArrayList<Target> targets = new ArrayList<Target>( rules.size() );
+		final HashSet<Path> dirs = new HashSet<Path>(); // watched
+		final HashSet<Path> files = new HashSet<Path>(); // found now, for the count only
+		WatchService watcher = null;
+
+		for ( final Rule rule : rules ) {
+			targets.add( new Target( rule ) );
+		}
+
+		try {
+			watcher = FileSystems.getDefault().newWatchService();
+		} catch ( final IOException e ) {
+			System.err.println( "\nfatal: can't watch the files for changes. " + e.getMessage() );
+			Validate.exit( 16 );
+		}
+
+		for ( final Target target : targets ) {
+			for ( final Object entry : target.entries ) {
+
+				if ( entry instanceof FileGlob ) {
+					final Path start = ((FileGlob) entry).start();
+					if ( Files.isDirectory( start ) ) {
+						watch( start, watcher, dirs, targets, files );
+					}
+				} else if ( watch( ((Path) entry).getParent(), watcher, dirs ) && Files.isRegularFile( (Path) entry ) ) {
+					files.add( (Path) entry );
+				}
+			}
+		}
+
+		if ( dirs.isEmpty() ) {
+			System.err.println( "\nwarning: --watch has no directory to watch." );
+			return;
+		}
+
+		System.out.println( "\ninfo: watching <" + files.size() + "> files in <" + dirs.size() + "> directories for changes." );
+		System.out.flush();
+		files.clear();
+
+		while ( true ) {
+			final LinkedHashSet<Path> changed = new LinkedHashSet<Path>();
+
+			try {
+				WatchKey key = watcher.take();
+				final long first = System.currentTimeMillis();
+
+				// gather the burst, a file that is written to without a pause is still validated now and then
+				while ( key != null ) {
+					changed( key, watcher, dirs, targets, changed );
+
+					if ( System.currentTimeMillis() - first > delay * 20 ) {
+						break;
+					}
+					key = watcher.poll( delay, TimeUnit.MILLISECONDS );
+				}
+			} catch ( final InterruptedException e ) {
+				return;
+			}
+
+			if ( ! changed.isEmpty() ) {
+				validate( targets, changed, totals );
+			}
+		}
+	}
+
+	/*
+	 * add the files of the rules the events of key are about to changed, and watch a directory made
+	 * where a glob goes
+	 */
+	private static void changed( WatchKey key, WatchService watcher, Set<Path> dirs, List<Target> targets, Set<Path> changed ) {
+		final Path dir = (Path) key.watchable();
+
+		for ( final WatchEvent<?> event : key.pollEvents() ) {
+
+			if ( event.kind() == StandardWatchEventKinds.OVERFLOW ) {
+				// events were lost, so any file of the directory may have changed
+				watch( dir, watcher, dirs, targets, changed );
+				continue;
+			}
+
+			final Path file = dir.resolve( (Path) event.context() );
+
+			if ( Files.isDirectory( file, LinkOption.NOFOLLOW_LINKS ) ) {
+				// its files may have been written before it is watched, they count as changed
+				if ( walks( targets, file ) && ! dirs.contains( file ) ) {
+					watch( file, watcher, dirs, targets, changed );
+				}
+			} else if ( name( targets, file ) ) {
+				changed.add( file );
+			}
+		}
+
+		if ( ! key.reset() ) {
+			dirs.remove( dir ); // gone, watched again if it is made again
+		}
+	}
+
+	/*
+	 * watch dir and the directories below it a glob goes into, adding the files of the rules in them
+	 * to found
+	 */
+	private static void watch( Path dir, WatchService watcher, Set<Path> dirs, List<Target> targets, Set<Path> found ) {
+
+		if ( ! watch( dir, watcher, dirs ) ) {
+			return;
+		}
+
+		final ArrayList<Path> entries = new ArrayList<Path>();
+		DirectoryStream<Path> ds = null;
+
+		try {
+			ds = Files.newDirectoryStream( dir );
+			for ( final Path p : ds ) {
+				entries.add( p );
+			}
+		} catch ( final IOException e ) {
+			System.err.println( "\nwarning: can't list the directory <" + dir + ">. " + e.getMessage() );
+		} finally {
+			if ( ds != null ) {
+				try {
+					ds.close();
+				} catch ( final IOException ignore ) {
+					// only read
+				}
+			}
+		}
+
+		Collections.sort( entries );
+
+		for ( final Path p : entries ) {
+			if ( Files.isDirectory( p, LinkOption.NOFOLLOW_LINKS ) ) {
+				if ( walks( targets, p ) && ! dirs.contains( p ) ) {
+					watch( p, watcher, dirs, targets, found );
+				}
+			} else if ( Files.isRegularFile( p ) && name( targets, p ) ) {
+				found.add( p );
+			}
+		}
+	}
+
+	/*
+	 * watch dir for files made and changed; false if it can't be
+	 */
+	private static boolean watch( Path dir, WatchService watcher, Set<Path> dirs ) {
+
+		if ( dirs.contains( dir ) ) {
+			return true;
+		}
+
+		try {
+			dir.register( watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY );
+			dirs.add( dir );
+			return true;
+		} catch ( final IOException e ) {
+			System.err.println( "\nwarning: can't watch the directory <" + dir + ">, its files are not validated again." );
+			return false;
+		}
+	}
+
+	private static boolean walks( List<Target> targets, Path dir ) {
+
+		for ( final Target target : targets ) {
+			if ( target.walks( dir ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// true if file is a file of one of the rules
+	private static boolean name( List<Target> targets, Path file ) {
+
+		for ( final Target target : targets ) {
+			if ( target.name( file ) != null ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * one round, each rule that has a changed file validates those files, in config file order
+	 */
+	private static void validate( List<Target> targets, Set<Path> changed, boolean totals ) {
+		Validate.clearTotals();
+
+		final StringBuilder names = new StringBuilder();
+		for ( final Path file : changed ) {
+			names.append( names.length() > 0 ? "," : "" ).append( file );
+		}
+		System.out.println( "\n% CHANGED: " + names );
+
+		try {
+			for ( final Target target : targets ) {
+				final List<String> only = target.names( changed );
+
+				if ( ! only.isEmpty() ) {
+					target.rule.checkIt( only );
+				}
+			}
+
+			if ( totals ) {
+				Validate.printTotalFails();
+			}
+		} catch ( final ExitException e ) {
+			// a fatal error ends this round, it was reported, the next change is validated as usual
+			System.err.println( "\ninfo: exit code <" + e.code + ">, still watching for changes." );
+		}
+
+		System.out.flush();
+		System.err.flush();
+	}
+
+	private static Path path( Rule rule, String fileName ) {
+		return Paths.get( rule.path( fileName ) ).toAbsolutePath().normalize();
+	}
+
+	/*
+	 * the fileList of a rule as --watch tests files against it: the path of each name, or the glob
+	 * compiled but not walked; - (STDIN) is left out
+	 */
+	private static final class Target {
+		final Rule rule;
+		final ArrayList<Object> entries = new ArrayList<Object>(); // a Path or a FileGlob, in fileList order
+		final HashMap<Path, String> names = new HashMap<Path, String>(); // the name of each Path
+
+		Target( Rule rule ) {
+			final String dir = rule.getRuleOption().getDirPathString();
+			this.rule = rule;
+
+			for ( final String name : rule.getFileList() ) {
+
+				if ( FileGlob.isGlob( name, dir ) ) {
+					entries.add( FileGlob.compile( dir, name, rule.err ) );
+				} else if ( ! Rule.STDIN.equals( name ) ) {
+					final Path file = path( rule, name );
+					entries.add( file );
+					names.put( file, name );
+				}
+			}
+		}
+
+		// the name the rule knows file by, null if it is none of its files
+		String name( Path file ) {
+			final String name = names.get( file );
+
+			if ( name != null ) {
+				return name;
+			}
+
+			for ( final Object entry : entries ) {
+				if ( entry instanceof FileGlob ) {
+					final String n = ((FileGlob) entry).nameOf( file );
+					if ( n != null ) {
+						return n;
+					}
+				}
+			}
+			return null;
+		}
+
+		boolean walks( Path dir ) {
+
+			for ( final Object entry : entries ) {
+				if ( entry instanceof FileGlob && ((FileGlob) entry).walks( dir ) ) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/*
+		 * the names of the changed files of the rule, in fileList order, the files of a glob by name
+		 */
+		List<String> names( Set<Path> changed ) {
+			final ArrayList<String> only = new ArrayList<String>();
+
+			for ( final Object entry : entries ) {
+
+				if ( entry instanceof FileGlob ) {
+					final ArrayList<String> matched = new ArrayList<String>();
+					for ( final Path file : changed ) {
+						final String n = ((FileGlob) entry).nameOf( file );
+						if ( n != null ) {
+							matched.add( n );
+						}
+					}
+					Collections.sort( matched );
+					only.addAll( matched );
+				} else if ( changed.contains( entry ) ) {
+					only.add( names.get( entry ) );
+				}
+			}
+
+			return only;
+		}
+	}
+
+}
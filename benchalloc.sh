@@ -0,0 +1,64 @@
+#!/bin/sh
+#
+# benchalloc.sh - heap allocated by a whole run on generated 300k line files: DELIMITED mostly
+# valid, DELIMITED with one line in three invalid, and NAME_VALUE with 50 regexes. Each run uses
+# the Epsilon GC, which never collects, so the heap used at exit is all that was allocated.
+# Give more source directories, e.g. a checkout of an older revision, to compare them.
+#
+#   sh benchalloc.sh [srcdir...]        default: the directory of this script
+#
+# Needs a JDK 11 or later.
+#
+# @author Bill Lanahan
+
+LINES=300000
+DIR=`mktemp -d "${TMPDIR:-/tmp}/benchalloc.XXXXXX"` || exit 1
+trap 'rm -rf "$DIR"' 0 1 2 15
+
+if [ $# -eq 0 ]; then
+	set -- `dirname "$0"`
+fi
+
+awk -v n=$LINES 'BEGIN { for ( i = 0; i < n; i++ ) printf "%d:abc%d:x%d:%d\n", i, i, i % 6, i * 3 }' > "$DIR/valid.txt"
+awk -v n=$LINES 'BEGIN { for ( i = 0; i < n; i++ ) printf "%d:abc%d:x%d:%d\n", i, i, i % 3 == 2 ? 9 : i % 6, i * 3 }' > "$DIR/invalid.txt"
+awk -v n=$LINES 'BEGIN { for ( i = 0; i < n; i++ ) printf "key%d=%d\n", i % 50, i }' > "$DIR/nv.txt"
+
+for DATA in valid invalid; do
+	cat > "$DIR/$DATA.conf" <<EOF
+%% OPTIONS
+errorReportDetails=n
+lineSkipRegex=^#
+lineCheckRegex=.
+%%
+%% RULE d
+file=$DIR/$DATA.txt
+format=DELIMITED
+delimiterRegex=:
+%% REGEX
+^\\d+$
+^abc
+^x[0-5]$
+^\\d+$
+%%
+EOF
+done
+
+{
+	printf '%%%% OPTIONS\nerrorReportDetails=n\nwarnDuplicates=n\n%%%%\n%%%% RULE n\nfile=%s\nformat=NameValue\n%%%% REGEX\n' "$DIR/nv.txt"
+	awk 'BEGIN { for ( i = 0; i < 50; i++ ) printf "key%d=^\\d+$\n", i }'
+	echo '%%'
+} > "$DIR/nv.conf"
+
+N=0
+for SRC in "$@"; do
+	N=`expr $N + 1`
+	mkdir "$DIR/classes$N"
+	javac -nowarn -d "$DIR/classes$N" "$SRC"/*.java || exit 1
+	echo "$SRC"
+
+	for CONF in valid invalid nv; do
+		USED=`java -XX:+UnlockExperimentalVMOptions -XX:+UseEpsilonGC -Xmx4g -Xlog:gc:stderr -cp "$DIR/classes$N" \
+			validate.Validate -c "$DIR/$CONF.conf" 2>&1 > /dev/null | sed -n 's/.* committed, \([0-9]*[KMG]\) .*used.*/\1/p' | tail -1`
+		echo "	$CONF	$USED allocated"
+	done
+done
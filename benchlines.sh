@@ -0,0 +1,82 @@
+#!/bin/sh
+#
+# benchlines.sh - line reading throughput of the data file readers on a generated multi-GB file:
+# MappedLineSource (fileReader=mapped), ReaderLineSource (fileReader=buffered) and a plain
+# BufferedReader, the way the format loops read before LineSource. Lines are only read, not
+# validated, so the regex work that dominates a real run does not hide the difference.
+#
+#   sh benchlines.sh [GB] [runs]        default: sh benchlines.sh 3 3
+#
+# Needs a JDK and GB of free space in $TMPDIR. Each reader and charset is run in a JVM of its
+# own, after the file was just written, so it is read from the page cache when it fits.
+#
+# @author Bill Lanahan
+
+GB=${1:-3}
+RUNS=${2:-3}
+SRC=`dirname "$0"`
+DIR=`mktemp -d "${TMPDIR:-/tmp}/benchlines.XXXXXX"` || exit 1
+trap 'rm -rf "$DIR"' 0 1 2 15
+
+mkdir -p "$DIR/classes" "$DIR/bench/validate"
+cat > "$DIR/bench/validate/LineBench.java" <<'EOF'
+package validate;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+final class LineBench {
+
+	public static void main( String[] args ) throws IOException {
+		final File file = new File( args[ 0 ] );
+		final Charset charset = Charset.forName( args[ 1 ] );
+		final String reader = args[ 2 ];
+		final long start = System.nanoTime();
+		long lines = 0;
+		long chars = 0;
+		String line = null;
+
+		if ( "reader".equals( reader ) ) {
+			final BufferedReader br = new BufferedReader( new InputStreamReader( new FileInputStream( file ), charset ) );
+
+			while ( (line = br.readLine()) != null ) {
+				lines++;
+				chars += line.length();
+			}
+			br.close();
+		} else {
+			final LineSource src = "mapped".equals( reader ) ? new MappedLineSource( file, charset, 0, file.length() )
+					: new ReaderLineSource( file, charset, 0, file.length() );
+
+			while ( (line = src.readLine()) != null ) {
+				lines++;
+				chars += line.length();
+			}
+			src.close();
+		}
+
+		final double secs = (System.nanoTime() - start) / 1e9;
+		System.out.printf( "%-9s %-9s %,d lines %,d chars %6.1fs %5.0f MB/s%n", charset.name(), reader, lines, chars, secs,
+				file.length() / 1048576.0 / secs );
+	}
+}
+EOF
+javac -nowarn -d "$DIR/classes" "$SRC"/*.java "$DIR/bench/validate/LineBench.java" || exit 1
+
+# short and long lines, "\n" and "\r\n" endings, about 20 bytes a line
+yes "`printf 'white:egg-shell:100\nblue:navy:123\nNOTE: a longer line of text for the readers, with some words in it\nx\nred:brick:000\r\nline nine'`" |
+	head -c `expr $GB \* 1073741824` > "$DIR/data.txt"
+
+for CHARSET in US-ASCII UTF-8; do
+	for READER in mapped buffered reader; do
+		RUN=0
+		while [ $RUN -lt $RUNS ]; do
+			java -cp "$DIR/classes" validate.LineBench "$DIR/data.txt" $CHARSET $READER || exit 1
+			RUN=`expr $RUN + 1`
+		done
+	done
+done
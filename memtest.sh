@@ -0,0 +1,98 @@
+#!/bin/sh
+#
+# memtest.sh - validate a generated multi-GB format=line file, then a format=DELIMITED one with
+# errorFieldUnderline=true, under a small heap, once as one stream and once in chunks (-j), to
+# check that memory does not grow with the size of a data file or of its report (see Memory in
+# validate.1). One line in four fails as a line file, three in four as a delimited one (a bad
+# field, a short line and another bad field), so the report is about half the size of the file
+# or more and each chunk has millions of line numbers to hold back. No temporary report file
+# may be left after a run.
+#
+#   sh memtest.sh [GB] [heap] [threads]        default: sh memtest.sh 3 32m 4
+#
+# Needs a JDK and about 3 times GB of free space in $TMPDIR. Prints PASS or FAIL, exits 0 or 1.
+#
+# @author Bill Lanahan
+
+GB=${1:-3}
+HEAP=${2:-32m}
+THREADS=${3:-4}
+SRC=`dirname "$0"`
+DIR=`mktemp -d "${TMPDIR:-/tmp}/memtest.XXXXXX"` || exit 1
+trap 'rm -rf "$DIR"' 0 1 2 15
+
+mkdir "$DIR/classes" "$DIR/tmp"
+javac -nowarn -d "$DIR/classes" "$SRC"/*.java || exit 1
+
+# check format lines fails: validate data.txt with conf, at -j 1 and at -j threads
+check() {
+	for J in 1 $THREADS; do
+		START=`date +%s`
+		java -Xmx$HEAP -Djava.io.tmpdir="$DIR/tmp" -cp "$DIR/classes" validate.Validate -c "$DIR/conf" -j $J > "$DIR/report" 2> "$DIR/err"
+		RC=$?
+		END=`date +%s`
+
+		if [ $RC -eq 2 ] && grep -q "LINES: $2 FAIL: $3 " "$DIR/report" && [ -z "`ls "$DIR/tmp"`" ]; then
+			echo "PASS: $1 -j $J, $GB GB, $2 lines, $3 fail, -Xmx$HEAP, `expr $END - $START`s"
+		else
+			echo "FAIL: $1 -j $J, $GB GB, -Xmx$HEAP, rc $RC"
+			grep "LINES:" "$DIR/report"
+			ls "$DIR/tmp"
+			cat "$DIR/err"
+			STATUS=1
+		fi
+		rm -f "$DIR/report" "$DIR/tmp"/*
+	done
+}
+
+STATUS=0
+
+# 4 lines, 53 bytes, repeated to the size asked for
+BLOCKS=`expr $GB \* 1073741824 / 53`
+yes 'white:egg-shell:100
+blue:navy:123
+line nine
+NOTE: ok' | head -n `expr $BLOCKS \* 4` > "$DIR/data.txt"
+
+cat > "$DIR/conf" <<EOF
+%% OPTIONS
+errorReportDetails=all
+%%
+%% RULE mem
+file=$DIR/data.txt
+format=line
+%% REGEX
+^white:egg-shell:100$
+^blue:navy:123$
+^NOTE: .*$
+%%
+EOF
+
+check line `expr $BLOCKS \* 4` $BLOCKS
+
+# 4 lines, 58 bytes: a good line, a bad third field, too few fields and a bad second field
+BLOCKS=`expr $GB \* 1073741824 / 58`
+yes 'white:egg-shell:100
+blue:navy:12x
+line nine
+red:Brick:000' | head -n `expr $BLOCKS \* 4` > "$DIR/data.txt"
+
+cat > "$DIR/conf" <<EOF
+%% OPTIONS
+errorReportDetails=all
+%%
+%% RULE mem
+file=$DIR/data.txt
+format=DELIMITED
+delimiterRegex=:
+errorFieldUnderline=true
+%% REGEX
+^[a-z]+$
+^[a-z-]+$
+^[0-9]+$
+%%
+EOF
+
+check DELIMITED `expr $BLOCKS \* 4` `expr $BLOCKS \* 3`
+
+exit $STATUS